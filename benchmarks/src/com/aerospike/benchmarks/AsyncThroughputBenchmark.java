@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.policy.Policy;
+
+/**
+ * Asynchronous read throughput benchmark.  A fixed number of reads are kept in flight.
+ * Each completed read starts the next one from its callback, so the benchmark measures
+ * the per-command cost of the async client, including connection borrow and return.
+ * Records do not need to exist.
+ * <p>
+ * Usage: java -cp target/aerospike-benchmarks-*-jar-with-dependencies.jar
+ *        com.aerospike.benchmarks.AsyncThroughputBenchmark [host] [port] [namespace] [concurrency] [seconds]
+ */
+public final class AsyncThroughputBenchmark {
+	public static void main(String[] args) throws Exception {
+		String host = (args.length > 0)? args[0] : "127.0.0.1";
+		int port = (args.length > 1)? Integer.parseInt(args[1]) : 3000;
+		String namespace = (args.length > 2)? args[2] : "test";
+		int concurrency = (args.length > 3)? Integer.parseInt(args[3]) : 100;
+		int seconds = (args.length > 4)? Integer.parseInt(args[4]) : 10;
+
+		AsyncClientPolicy policy = new AsyncClientPolicy();
+		policy.asyncMaxCommands = concurrency;
+
+		AsyncClient client = new AsyncClient(policy, host, port);
+
+		try {
+			System.out.println("host=" + host + ':' + port + " namespace=" + namespace +
+				" concurrency=" + concurrency + " seconds=" + seconds);
+
+			// Run twice so the second pass is measured with a warm JIT and connection pool.
+			for (int i = 0; i < 2; i++) {
+				run(client, namespace, concurrency, seconds);
+			}
+		}
+		finally {
+			client.close();
+		}
+	}
+
+	private static void run(AsyncClient client, String namespace, int concurrency, int seconds) throws Exception {
+		Policy policy = new Policy();
+		policy.timeout = 1000;
+
+		long end = System.nanoTime() + seconds * 1000000000L;
+		CountDownLatch latch = new CountDownLatch(concurrency);
+		AtomicLong count = new AtomicLong();
+		AtomicLong errors = new AtomicLong();
+		long begin = System.nanoTime();
+
+		for (int i = 0; i < concurrency; i++) {
+			new ReadLoop(client, policy, namespace, i, end, latch, count, errors).next();
+		}
+		latch.await();
+
+		double elapsed = (System.nanoTime() - begin) / 1000000000.0;
+		System.out.println(String.format("reads/sec=%,.0f errors=%d", count.get() / elapsed, errors.get()));
+	}
+
+	private static final class ReadLoop implements RecordListener {
+		private final AsyncClient client;
+		private final Policy policy;
+		private final String namespace;
+		private final long end;
+		private final CountDownLatch latch;
+		private final AtomicLong count;
+		private final AtomicLong errors;
+		private int sequence;
+
+		private ReadLoop(AsyncClient client, Policy policy, String namespace, int id, long end, CountDownLatch latch, AtomicLong count, AtomicLong errors) {
+			this.client = client;
+			this.policy = policy;
+			this.namespace = namespace;
+			this.end = end;
+			this.latch = latch;
+			this.count = count;
+			this.errors = errors;
+			this.sequence = id * 10000;
+		}
+
+		private void next() {
+			if (System.nanoTime() >= end) {
+				latch.countDown();
+				return;
+			}
+
+			try {
+				client.get(policy, this, new Key(namespace, "bench", sequence++ % 100000));
+			}
+			catch (AerospikeException ae) {
+				errors.incrementAndGet();
+				latch.countDown();
+			}
+		}
+
+		@Override
+		public void onSuccess(Key key, Record record) {
+			count.incrementAndGet();
+			next();
+		}
+
+		@Override
+		public void onFailure(AerospikeException ae) {
+			errors.incrementAndGet();
+			next();
+		}
+	}
+}
@@ -174,6 +174,10 @@ public class Main implements Log.Callback {
 		options.addOption("T", "timeout", true, "Set read and write transaction timeout in milliseconds.");
 		options.addOption("readTimeout", true, "Set read transaction timeout in milliseconds.");
 		options.addOption("writeTimeout", true, "Set write transaction timeout in milliseconds.");
+		options.addOption("socketTimeout", true, 
+			"Set read and write socket timeout in milliseconds for each attempt. " +
+			"When set, timeout options are total timeouts that include retries."
+			);
 	
 		options.addOption("maxRetries", true, "Maximum number of retries before aborting the current transaction.");
 		options.addOption("sleepBetweenRetries", true, 
@@ -547,6 +551,16 @@ public class Main implements Log.Callback {
 			args.writePolicy.timeout = Integer.parseInt(line.getOptionValue("writeTimeout"));
 		}			 
 
+		if (line.hasOption("socketTimeout")) {
+			int socketTimeout = Integer.parseInt(line.getOptionValue("socketTimeout"));
+			args.readPolicy.socketTimeout = socketTimeout;
+			args.readPolicy.totalTimeout = args.readPolicy.timeout;
+			args.writePolicy.socketTimeout = socketTimeout;
+			args.writePolicy.totalTimeout = args.writePolicy.timeout;
+			args.batchPolicy.socketTimeout = socketTimeout;
+			args.batchPolicy.totalTimeout = args.batchPolicy.timeout;
+		}
+
 		if (line.hasOption("maxRetries")) {
 			int maxRetries = Integer.parseInt(line.getOptionValue("maxRetries"));
 			args.readPolicy.maxRetries = maxRetries;
@@ -739,6 +753,7 @@ public class Main implements Log.Callback {
 	
 		if (args.workload != Workload.INITIALIZE) {
 			System.out.println("read policy: timeout: " + args.readPolicy.timeout
+				+ ", socketTimeout: " + args.readPolicy.socketTimeout
 				+ ", maxRetries: " + args.readPolicy.maxRetries 
 				+ ", sleepBetweenRetries: " + args.readPolicy.sleepBetweenRetries
 				+ ", consistencyLevel: " + args.readPolicy.consistencyLevel
@@ -747,6 +762,7 @@ public class Main implements Log.Callback {
 		}
 
 		System.out.println("write policy: timeout: " + args.writePolicy.timeout
+			+ ", socketTimeout: " + args.writePolicy.socketTimeout
 			+ ", maxRetries: " + args.writePolicy.maxRetries
 			+ ", sleepBetweenRetries: " + args.writePolicy.sleepBetweenRetries
 			+ ", commitLevel: " + args.writePolicy.commitLevel);
@@ -811,6 +827,8 @@ public class Main implements Log.Callback {
 		result.sendKey = writePolicy.sendKey;
 		result.sleepBetweenRetries = writePolicy.sleepBetweenRetries;
 		result.timeout = writePolicy.timeout;
+		result.socketTimeout = writePolicy.socketTimeout;
+		result.totalTimeout = writePolicy.totalTimeout;
 		return result;
 	}
 	
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.cluster.Partitions;
+
+/**
+ * Node routing benchmark.  Compares partition lookups in the namespace indexed
+ * partition table against the previous HashMap of AtomicReferenceArray replicas.
+ * No server is required.
+ * <p>
+ * Usage: java -cp target/aerospike-benchmarks-*-jar-with-dependencies.jar
+ *        com.aerospike.benchmarks.PartitionBenchmark [namespaces] [replicas] [seconds]
+ */
+public final class PartitionBenchmark {
+	public static void main(String[] args) {
+		int namespaceCount = (args.length > 0)? Integer.parseInt(args[0]) : 4;
+		int replicaCount = (args.length > 1)? Integer.parseInt(args[1]) : 2;
+		int seconds = (args.length > 2)? Integer.parseInt(args[2]) : 3;
+
+		String[] namespaces = new String[namespaceCount];
+		
+		for (int i = 0; i < namespaceCount; i++) {
+			// Intern like string literals in application code.
+			namespaces[i] = ("ns" + i).intern();
+		}
+
+		// Build new partition table.
+		Partitions.Builder builder = new Partitions.Builder(new Partitions(), Node.PARTITIONS);
+
+		for (String ns : namespaces) {
+			builder.getNamespaceIndex(ns, replicaCount, true);
+		}
+		Partitions partitions = builder.build();
+
+		// Build previous partition map.
+		HashMap<String,AtomicReferenceArray<Node>[]> map = new HashMap<String,AtomicReferenceArray<Node>[]>();
+
+		for (String ns : namespaces) {
+			@SuppressWarnings("unchecked")
+			AtomicReferenceArray<Node>[] replicas = new AtomicReferenceArray[replicaCount];
+
+			for (int i = 0; i < replicaCount; i++) {
+				replicas[i] = new AtomicReferenceArray<Node>(Node.PARTITIONS);
+			}
+			map.put(ns, replicas);
+		}
+
+		System.out.println("namespaces=" + namespaceCount + " replicas=" + replicaCount + " seconds=" + seconds);
+
+		// Run each twice so the second pass is measured with a warm JIT.
+		for (int i = 0; i < 2; i++) {
+			runMap(map, namespaces, seconds);
+			runPartitions(partitions, namespaces, seconds);
+		}
+	}
+
+	private static void runMap(HashMap<String,AtomicReferenceArray<Node>[]> map, String[] namespaces, int seconds) {
+		long end = System.nanoTime() + seconds * 1000000000L;
+		long count = 0;
+		int found = 0;
+
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < 1000; i++) {
+				String ns = namespaces[i % namespaces.length];
+				AtomicReferenceArray<Node>[] replicas = map.get(ns);
+				Node node = replicas[i % replicas.length].get(i & (Node.PARTITIONS - 1));
+
+				if (node == null) {
+					found++;
+				}
+			}
+			count += 1000;
+		}
+		print("HashMap", count, seconds, found);
+	}
+
+	private static void runPartitions(Partitions partitions, String[] namespaces, int seconds) {
+		long end = System.nanoTime() + seconds * 1000000000L;
+		long count = 0;
+		int found = 0;
+
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < 1000; i++) {
+				String ns = namespaces[i % namespaces.length];
+				Node[][] replicas = partitions.getReplicas(ns);
+				Node node = replicas[i % replicas.length][i & (Node.PARTITIONS - 1)];
+
+				if (node == null) {
+					found++;
+				}
+			}
+			count += 1000;
+		}
+		print("Partitions", count, seconds, found);
+	}
+
+	private static void print(String name, long count, int seconds, int found) {
+		// Print found count so lookups can't be optimized away.
+		System.out.println(String.format("%-12s lookups/sec=%,d (%d)", name, count / seconds, found));
+	}
+}
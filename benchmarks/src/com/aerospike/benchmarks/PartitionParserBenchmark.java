@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import com.aerospike.client.Host;
+import com.aerospike.client.cluster.Cluster;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.cluster.NodeValidator;
+import com.aerospike.client.cluster.PartitionParser;
+import com.aerospike.client.cluster.Partitions;
+import com.aerospike.client.policy.ClientPolicy;
+
+/**
+ * Partition map parsing benchmark.  Measures time and bytes allocated per cluster tend
+ * when every namespace's ownership changes (full parse) and when only one namespace's
+ * ownership changes (diff parse).  Responses are generated, so no server is required.
+ * <p>
+ * Usage: java -cp target/aerospike-benchmarks-*-jar-with-dependencies.jar
+ *        com.aerospike.benchmarks.PartitionParserBenchmark [nodes] [namespaces] [replicas] [tends]
+ */
+public final class PartitionParserBenchmark {
+	private static final char[] Base64Chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	public static void main(String[] args) {
+		int nodeCount = (args.length > 0)? Integer.parseInt(args[0]) : 8;
+		int namespaceCount = (args.length > 1)? Integer.parseInt(args[1]) : 8;
+		int replicaCount = (args.length > 2)? Integer.parseInt(args[2]) : 2;
+		int tends = (args.length > 3)? Integer.parseInt(args[3]) : 2000;
+
+		// Nodes are only used as partition owners.  The cluster is not started.
+		Cluster cluster = new Cluster(new ClientPolicy(), new Host[0]);
+
+		// Two ownership layouts that differ in every namespace.
+		Random random = new Random(1);
+		int[][][] layout1 = createLayout(random, nodeCount, namespaceCount, replicaCount);
+		int[][][] layout2 = createLayout(random, nodeCount, namespaceCount, replicaCount);
+
+		// Layout that only differs from layout1 in the first namespace.
+		int[][][] layout3 = layout1.clone();
+		layout3[0] = layout2[0];
+
+		byte[][] full1 = createResponses(layout1, nodeCount, replicaCount, 1);
+		byte[][] full2 = createResponses(layout2, nodeCount, replicaCount, 2);
+		byte[][] diff = createResponses(layout3, nodeCount, replicaCount, 3);
+
+		System.out.println("nodes=" + nodeCount + " namespaces=" + namespaceCount + " replicas=" + replicaCount +
+			" tends=" + tends + " responseBytes=" + full1[0].length);
+
+		// Run each twice so the second pass is measured with a warm JIT.
+		for (int i = 0; i < 2; i++) {
+			run("full", cluster, full1, full2, tends);
+			run("diff", cluster, full1, diff, tends);
+		}
+	}
+
+	private static int[][][] createLayout(Random random, int nodeCount, int namespaceCount, int replicaCount) {
+		int[][][] layout = new int[namespaceCount][replicaCount][Node.PARTITIONS];
+
+		for (int ns = 0; ns < namespaceCount; ns++) {
+			for (int p = 0; p < Node.PARTITIONS; p++) {
+				int master = random.nextInt(nodeCount);
+
+				for (int r = 0; r < replicaCount; r++) {
+					layout[ns][r][p] = (master + r) % nodeCount;
+				}
+			}
+		}
+		return layout;
+	}
+
+	private static byte[][] createResponses(int[][][] layout, int nodeCount, int replicaCount, int generation) {
+		byte[][] responses = new byte[nodeCount][];
+
+		for (int n = 0; n < nodeCount; n++) {
+			StringBuilder sb = new StringBuilder(layout.length * replicaCount * 700);
+			sb.append("partition-generation\t").append(generation).append("\nreplicas-all\t");
+
+			for (int ns = 0; ns < layout.length; ns++) {
+				if (ns > 0) {
+					sb.append(';');
+				}
+				sb.append("ns").append(ns).append(':').append(replicaCount);
+
+				for (int r = 0; r < replicaCount; r++) {
+					byte[] bitmap = new byte[Node.PARTITIONS / 8];
+
+					for (int p = 0; p < Node.PARTITIONS; p++) {
+						if (layout[ns][r][p] == n) {
+							bitmap[p >> 3] |= 0x80 >> (p & 7);
+						}
+					}
+					sb.append(',');
+					encode(bitmap, sb);
+				}
+			}
+			sb.append('\n');
+			responses[n] = sb.toString().getBytes();
+		}
+		return responses;
+	}
+
+	private static void encode(byte[] bytes, StringBuilder sb) {
+		int i = 0;
+
+		for (; i + 2 < bytes.length; i += 3) {
+			int v = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8) | (bytes[i + 2] & 0xFF);
+			sb.append(Base64Chars[v >> 18]).append(Base64Chars[(v >> 12) & 0x3F]);
+			sb.append(Base64Chars[(v >> 6) & 0x3F]).append(Base64Chars[v & 0x3F]);
+		}
+
+		int remaining = bytes.length - i;
+
+		if (remaining == 1) {
+			int v = (bytes[i] & 0xFF) << 16;
+			sb.append(Base64Chars[v >> 18]).append(Base64Chars[(v >> 12) & 0x3F]).append("==");
+		}
+		else if (remaining == 2) {
+			int v = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8);
+			sb.append(Base64Chars[v >> 18]).append(Base64Chars[(v >> 12) & 0x3F]);
+			sb.append(Base64Chars[(v >> 6) & 0x3F]).append('=');
+		}
+	}
+
+	private static void run(String name, Cluster cluster, byte[][] responses1, byte[][] responses2, int tends) {
+		// New nodes do not have partition bitmaps saved from a previous run.
+		Node[] nodes = new Node[responses1.length];
+
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new Node(cluster, new NodeValidator());
+		}
+
+		Partitions partitions = new Partitions();
+		long allocated = 0;
+		long elapsed = 0;
+
+		for (int t = 0; t < tends; t++) {
+			byte[][] responses = ((t & 1) == 0)? responses1 : responses2;
+			long bytesBegin = getAllocatedBytes();
+			long begin = System.nanoTime();
+
+			Partitions.Builder builder = new Partitions.Builder(partitions, Node.PARTITIONS);
+
+			for (int n = 0; n < nodes.length; n++) {
+				new PartitionParser(responses[n], nodes[n], builder, Node.PARTITIONS, true, false);
+			}
+
+			if (builder.isChanged()) {
+				partitions = builder.build();
+			}
+			elapsed += System.nanoTime() - begin;
+			allocated += getAllocatedBytes() - bytesBegin;
+		}
+
+		String bytes = (getAllocatedBytes() >= 0)? String.format("%,d", allocated / tends) : "unavailable";
+		System.out.println(String.format("%-5s micros/tend=%,.1f bytes/tend=%s", name, elapsed / 1000.0 / tends, bytes));
+	}
+
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
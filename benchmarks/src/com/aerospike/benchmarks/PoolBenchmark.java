@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.benchmarks;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aerospike.client.cluster.Pool;
+
+/**
+ * Connection pool contention benchmark.  Compares the node connection pool against
+ * the ArrayBlockingQueue it replaced.  No server is required.  Each thread repeatedly
+ * borrows an item from the pool and returns it.  Besides throughput, the benchmark
+ * reports how often a thread received the same item it returned last (warm reuse).
+ * <p>
+ * Usage: java -cp target/aerospike-benchmarks-*-jar-with-dependencies.jar
+ *        com.aerospike.benchmarks.PoolBenchmark [threads] [seconds] [poolSize]
+ */
+public final class PoolBenchmark {
+	public static void main(String[] args) throws Exception {
+		int threads = (args.length > 0)? Integer.parseInt(args[0]) : 400;
+		int seconds = (args.length > 1)? Integer.parseInt(args[1]) : 5;
+		int poolSize = (args.length > 2)? Integer.parseInt(args[2]) : 300;
+
+		System.out.println("threads=" + threads + " seconds=" + seconds + " poolSize=" + poolSize);
+
+		// Run each twice so the second pass is measured with a warm JIT.
+		for (int i = 0; i < 2; i++) {
+			run("ArrayBlockingQueue", new QueueAdapter(poolSize), threads, seconds);
+			run("Pool", new PoolAdapter(poolSize), threads, seconds);
+		}
+	}
+
+	private static void run(String name, final Adapter pool, int threadCount, int seconds) throws Exception {
+		final AtomicLong ops = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+		final AtomicLong warm = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] end = new long[1];
+		Thread[] threads = new Thread[threadCount];
+
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					long count = 0;
+					long missCount = 0;
+					long warmCount = 0;
+					Object last = null;
+
+					try {
+						start.await();
+					}
+					catch (InterruptedException ie) {
+						return;
+					}
+
+					while (System.nanoTime() < end[0]) {
+						Object item = pool.poll();
+
+						if (item == null) {
+							// Pool exhausted.  A real node would open a connection or fail here.
+							missCount++;
+							Thread.yield();
+							continue;
+						}
+
+						if (item == last) {
+							warmCount++;
+						}
+						last = item;
+						pool.offer(item);
+						count++;
+					}
+					ops.addAndGet(count);
+					misses.addAndGet(missCount);
+					warm.addAndGet(warmCount);
+				}
+			};
+			threads[i].start();
+		}
+
+		end[0] = System.nanoTime() + seconds * 1000000000L;
+		start.countDown();
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long count = ops.get();
+		System.out.println(String.format("%-20s ops/sec=%,d warm=%.1f%% empty=%,d",
+			name, count / seconds, (count > 0)? warm.get() * 100.0 / count : 0.0, misses.get()));
+	}
+
+	private static interface Adapter {
+		public Object poll();
+		public void offer(Object item);
+	}
+
+	private static final class QueueAdapter implements Adapter {
+		private final ArrayBlockingQueue<Object> queue;
+
+		private QueueAdapter(int size) {
+			queue = new ArrayBlockingQueue<Object>(size);
+
+			for (int i = 0; i < size; i++) {
+				queue.offer(new Object());
+			}
+		}
+
+		public Object poll() {
+			return queue.poll();
+		}
+
+		public void offer(Object item) {
+			queue.offer(item);
+		}
+	}
+
+	private static final class PoolAdapter implements Adapter {
+		private final Pool<Object> pool;
+
+		private PoolAdapter(int size) {
+			pool = new Pool<Object>();
+
+			for (int i = 0; i < size; i++) {
+				pool.offer(new Object());
+			}
+		}
+
+		public Object poll() {
+			return pool.poll();
+		}
+
+		public void offer(Object item) {
+			pool.offer(item);
+		}
+	}
+}
@@ -49,6 +49,8 @@ public abstract class RWTask {
 		
 		writePolicyGeneration = new WritePolicy();
 		writePolicyGeneration.timeout = args.writePolicy.timeout;
+		writePolicyGeneration.socketTimeout = args.writePolicy.socketTimeout;
+		writePolicyGeneration.totalTimeout = args.writePolicy.totalTimeout;
 		writePolicyGeneration.maxRetries = args.writePolicy.maxRetries;
 		writePolicyGeneration.sleepBetweenRetries = args.writePolicy.sleepBetweenRetries;
 		writePolicyGeneration.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
@@ -28,6 +28,7 @@ import com.aerospike.client.admin.Privilege;
 import com.aerospike.client.admin.Role;
 import com.aerospike.client.admin.User;
 import com.aerospike.client.cluster.Cluster;
+import com.aerospike.client.cluster.ClusterStats;
 import com.aerospike.client.cluster.Connection;
 import com.aerospike.client.cluster.Node;
 import com.aerospike.client.command.Batch;
@@ -43,6 +44,7 @@ import com.aerospike.client.command.MultiCommand;
 import com.aerospike.client.command.OperateCommand;
 import com.aerospike.client.command.ReadCommand;
 import com.aerospike.client.command.ReadHeaderCommand;
+import com.aerospike.client.command.ReadHedgeExecutor;
 import com.aerospike.client.command.RegisterCommand;
 import com.aerospike.client.command.ScanCommand;
 import com.aerospike.client.command.TouchCommand;
@@ -293,6 +295,15 @@ public class AerospikeClient implements IAerospikeClient, Closeable {
 		return cluster.getNodes();
 	}
 
+	/**
+	 * Return client wide command counters.
+	 * 
+	 * @return	cluster statistics
+	 */
+	public final ClusterStats getClusterStats() {
+		return cluster.getStats();
+	}
+
 	/**
 	 * Return list of active server node names in the cluster.
 	 * 
@@ -504,6 +515,9 @@ public class AerospikeClient implements IAerospikeClient, Closeable {
 		if (policy == null) {
 			policy = readPolicyDefault;
 		}
+		if (policy.hedgeDelay > 0) {
+			return ReadHedgeExecutor.execute(cluster, policy, key, null);
+		}
 		ReadCommand command = new ReadCommand(cluster, policy, key, null);
 		command.execute();
 		return command.getRecord();
@@ -523,6 +537,9 @@ public class AerospikeClient implements IAerospikeClient, Closeable {
 		if (policy == null) {
 			policy = readPolicyDefault;
 		}
+		if (policy.hedgeDelay > 0) {
+			return ReadHedgeExecutor.execute(cluster, policy, key, binNames);
+		}
 		ReadCommand command = new ReadCommand(cluster, policy, key, binNames);
 		command.execute();
 		return command.getRecord();
@@ -232,4 +232,23 @@ public class AerospikeException extends RuntimeException {
 			super(ResultCode.COMMAND_REJECTED);
 		}
 	}
+
+	/**
+	 * Exception thrown when command was not sent because the node's circuit breaker is open.
+	 */
+	public static final class CircuitOpen extends AerospikeException {
+		private static final long serialVersionUID = 1L;
+
+		public Node node;
+
+		public CircuitOpen(Node node) {
+			super(ResultCode.CIRCUIT_OPEN);
+			this.node = node;
+		}
+
+		@Override
+		public String getMessage() {
+			return "Node " + node + " circuit breaker is open";
+		}
+	}
 }
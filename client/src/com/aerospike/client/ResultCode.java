@@ -21,6 +21,11 @@ package com.aerospike.client;
  * side file proto.h.
  */
 public final class ResultCode {
+	/**
+	 * Node circuit breaker is open.  Commands are not sent to the node until it recovers.
+	 */
+	public static final int CIRCUIT_OPEN = -8;
+
 	/**
 	 * Max connections would be exceeded.  There are no more available connections.
 	 */
@@ -381,6 +386,9 @@ public final class ResultCode {
 	 */
 	public static String getResultString(int resultCode) {
 		switch (resultCode) {
+		case CIRCUIT_OPEN:
+			return "Node circuit breaker is open";
+			
 		case NO_MORE_CONNECTIONS:
 			return "No more available connections";
 			
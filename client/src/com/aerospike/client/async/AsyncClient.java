@@ -26,6 +26,7 @@ import com.aerospike.client.Key;
 import com.aerospike.client.BatchRead;
 import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
 import com.aerospike.client.Value;
 import com.aerospike.client.command.Command;
 import com.aerospike.client.listener.BatchSequenceListener;
@@ -228,6 +229,37 @@ public class AsyncClient extends AerospikeClient implements IAsyncClient {
 		command.execute();
 	}
 
+	/**
+	 * Asynchronously write multiple records.  Each record is written by a separate
+	 * put command, but the commands are handed to the channel selector in one batch.
+	 * The listener is notified once per key.
+	 * <p>
+	 * If a command can not be started, the exception is thrown after commands for previous
+	 * keys have been scheduled.  Commands for remaining keys are not started.
+	 * 
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param listener				where to send results, pass in null for fire and forget
+	 * @param keys					unique record identifiers
+	 * @param bins					bin name/value pairs for each key, bins[i] is written to keys[i]
+	 * @throws AerospikeException	if queue is full
+	 */
+	public final void put(WritePolicy policy, WriteListener listener, Key[] keys, Bin[][] bins) throws AerospikeException {
+		if (keys.length != bins.length) {
+			throw new AerospikeException(ResultCode.PARAMETER_ERROR, "Keys and bins lengths differ: " + keys.length + ',' + bins.length);
+		}
+		
+		if (policy == null) {
+			policy = asyncWritePolicyDefault;
+		}
+		
+		AsyncCommand[] commands = new AsyncCommand[keys.length];
+		
+		for (int i = 0; i < keys.length; i++) {
+			commands[i] = new AsyncWrite(cluster, policy, listener, keys[i], bins[i], Operation.Type.WRITE);
+		}
+		AsyncCommand.execute(commands, commands.length);
+	}
+
 	//-------------------------------------------------------
 	// String Operations
 	//-------------------------------------------------------
@@ -443,7 +475,9 @@ public class AsyncClient extends AerospikeClient implements IAsyncClient {
 		if (policy == null) {
 			policy = asyncReadPolicyDefault;
 		}
-		AsyncRead command = new AsyncRead(cluster, policy, listener, key, null);
+		AsyncRead command = (policy.hedgeDelay > 0)?
+			new AsyncReadHedge(cluster, policy, listener, key, null) :
+			new AsyncRead(cluster, policy, listener, key, null);
 		command.execute();
 	}
 	
@@ -464,7 +498,9 @@ public class AsyncClient extends AerospikeClient implements IAsyncClient {
 		if (policy == null) {
 			policy = asyncReadPolicyDefault;
 		}
-		AsyncRead command = new AsyncRead(cluster, policy, listener, key, binNames);
+		AsyncRead command = (policy.hedgeDelay > 0)?
+			new AsyncReadHedge(cluster, policy, listener, key, binNames) :
+			new AsyncRead(cluster, policy, listener, key, binNames);
 		command.execute();
 	}
 
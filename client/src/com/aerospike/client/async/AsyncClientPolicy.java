@@ -53,6 +53,51 @@ public final class AsyncClientPolicy extends ClientPolicy {
 	 */
 	public int asyncMaxCommands = 200;
 
+	/**
+	 * Maximum number of asynchronous commands waiting for a free command slot when
+	 * asyncMaxCommandAction is QUEUE.  Commands are rejected when the queue is full.
+	 * <p>
+	 * Default: 10000
+	 */
+	public int asyncMaxQueuedCommands = 10000;
+
+	/**
+	 * Minimum number of asynchronous connections allowed per server node.  On each cluster
+	 * tend, a task in {@link #threadPool} opens and authenticates connections until this
+	 * minimum is reached, both when a node is added to the cluster and after idle connections
+	 * have been closed.  Synchronous and asynchronous connections share the limit of 16 new
+	 * connections per node on each tend.
+	 * <p>
+	 * Must be less than or equal to asyncMaxCommands.
+	 * <p>
+	 * Default: 0
+	 */
+	public int asyncMinConnsPerNode;
+
+	/**
+	 * Largest direct buffer in bytes that is pooled for reuse.  Commands and responses that
+	 * do not fit in the 8 KB command buffer use a pooled buffer rounded up to a power of 2.
+	 * Larger buffers are allocated for each command.
+	 * <p>
+	 * Default: 1 MB
+	 */
+	public int asyncMaxPooledBufferSize = 1024 * 1024;
+
+	/**
+	 * Maximum total bytes of idle large buffers kept in the pool.  Buffers returned when
+	 * the pool is full are released to the garbage collector.
+	 * <p>
+	 * This only bounds idle buffers.  Large buffers in use are not limited by the pool.
+	 * When asyncMaxCommandAction is not ACCEPT, direct memory held by large buffers is at
+	 * most this limit plus one buffer per active command, each up to
+	 * asyncMaxPooledBufferSize or the size of the largest record.  Buffers larger than
+	 * asyncMaxPooledBufferSize are allocated for each command and freed by the garbage
+	 * collector, so they should be rare.
+	 * <p>
+	 * Default: 32 MB
+	 */
+	public long asyncBufferPoolSize = 32L * 1024 * 1024;
+
 	/**
 	 * Maximum milliseconds to wait for an asynchronous network selector event.  
 	 * The default value of zero indicates the selector should not timeout.
@@ -95,8 +140,8 @@ public final class AsyncClientPolicy extends ClientPolicy {
 	 * </pre>
 	 * Deadlock can occur when asyncTaskThreadPool is not defined, asyncMaxCommandAction equals
 	 * BLOCK and there are many instances of nested async commands  (one command triggers new
-	 * commands in the user callback).  It is imperative that asyncTaskThreadPool be defined if
-	 * your application is using this scenario.
+	 * commands in the user callback).  It is imperative that asyncTaskThreadPool be defined or
+	 * asyncMaxCommandAction be QUEUE if your application is using this scenario.
 	 */
 	public ExecutorService asyncTaskThreadPool;
 	
@@ -19,43 +19,76 @@ package com.aerospike.client.async;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Host;
 import com.aerospike.client.cluster.Cluster;
 import com.aerospike.client.cluster.Node;
 import com.aerospike.client.cluster.NodeValidator;
+import com.aerospike.client.cluster.TlsContext;
 
 public final class AsyncCluster extends Cluster {
 	// ByteBuffer pool used in asynchronous SocketChannel communications.
 	private final BufferQueue bufferQueue;
 	
+	// Pending command queue.  Only defined when asyncMaxCommandAction is QUEUE.
+	private final QueueBufferQueue commandQueue;
+	
+	// Pool of buffers larger than the fixed size command buffers.
+	private final BufferPool bufferPool;
+	
+	// Encrypted and decrypted TLS buffers released by closed connections.
+	private final ConcurrentLinkedQueue<ByteBuffer> tlsBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+	
+	// Deadlines of commands that wait in a queue before they are sent.
+	private final QueueTimer queueTimer;
+	
 	// Asynchronous network selectors.
 	private final SelectorManagers selectorManagers;
 	
 	// Maximum number of concurrent asynchronous commands.
 	private final int maxCommands;
 	
+	// Minimum number of asynchronous connections kept open per node.
+	private final int minConnsPerNode;
+	
 	public AsyncCluster(AsyncClientPolicy policy, Host[] hosts) throws AerospikeException {
 		super(policy, hosts);
 		maxCommands = policy.asyncMaxCommands;
+		minConnsPerNode = policy.asyncMinConnsPerNode;
+		
+		if (minConnsPerNode > maxCommands) {
+			throw new AerospikeException("Invalid async connection range: " + minConnsPerNode + " - " + maxCommands);
+		}
+		
+		queueTimer = new QueueTimer();
 		
 		switch (policy.asyncMaxCommandAction) {
 		case ACCEPT:
 			bufferQueue = new AcceptBufferQueue();
+			commandQueue = null;
 			break;
 			
 		case REJECT:
 			bufferQueue = new RejectBufferQueue(maxCommands);
+			commandQueue = null;
+			break;
+			
+		case QUEUE:
+			commandQueue = new QueueBufferQueue(maxCommands, policy.asyncMaxQueuedCommands, queueTimer);
+			bufferQueue = commandQueue;
 			break;
 			
 		case BLOCK:
 		default:
 			bufferQueue = new BlockBufferQueue(maxCommands);
+			commandQueue = null;
 			break;
 		}
 		
-		selectorManagers = new SelectorManagers(policy);
+		bufferPool = new BufferPool(policy.asyncMaxPooledBufferSize, policy.asyncBufferPoolSize, getStats());
+		selectorManagers = new SelectorManagers(policy, queueTimer);
 		
 		try {
 			initTendThread(policy.failIfNotConnected);
@@ -75,18 +108,113 @@ public final class AsyncCluster extends Cluster {
 		return bufferQueue.getByteBuffer();
 	}
 	
+	/**
+	 * Return byteBuffer if one is available without blocking.  Otherwise, return null.
+	 */
+	public ByteBuffer pollByteBuffer() {
+		return bufferQueue.pollByteBuffer();
+	}
+
 	public void putByteBuffer(ByteBuffer byteBuffer) {
 		bufferQueue.putByteBuffer(byteBuffer);
 	}
 	
+	/**
+	 * Are commands queued instead of waiting for a byteBuffer.
+	 */
+	boolean isQueueEnabled() {
+		return commandQueue != null;
+	}
+	
+	/**
+	 * Queue command until a byteBuffer is available.  The command may be started by
+	 * the calling thread or by the thread that next releases a byteBuffer.
+	 * 
+	 * @throws AerospikeException.CommandRejected	if the queue is full
+	 */
+	void queueCommand(AsyncCommand command, AsyncNode node) throws AerospikeException {
+		commandQueue.add(command, node);
+	}
+	
+	/**
+	 * Remove queued command that expired before a byteBuffer was available.
+	 */
+	void removeQueuedCommand(AsyncCommand command, AsyncNode node) {
+		commandQueue.remove(command, node);
+	}
+	
+	/**
+	 * Expire command at its deadline if it is still waiting in a queue.
+	 */
+	void addQueueTimer(AsyncCommand command) {
+		queueTimer.add(command);
+	}
+	
+	/**
+	 * Return direct buffer with at least the given capacity for a command that does not
+	 * fit in its command buffer.
+	 */
+	ByteBuffer getLargeBuffer(int size) {
+		return bufferPool.get(size);
+	}
+	
+	void putLargeBuffer(ByteBuffer buffer) {
+		bufferPool.put(buffer);
+	}
+	
+	/**
+	 * Return pooled direct buffer for TLS data with at least the given capacity.
+	 */
+	ByteBuffer getTlsBuffer(int size) {
+		ByteBuffer buffer;
+		
+		while ((buffer = tlsBuffers.poll()) != null) {
+			if (buffer.capacity() >= size) {
+				buffer.clear();
+				return buffer;
+			}
+			// Buffer is too small for the current TLS session.  Let it be collected.
+		}
+		return ByteBuffer.allocateDirect(size);
+	}
+	
+	void putTlsBuffer(ByteBuffer buffer) {
+		tlsBuffers.offer(buffer);
+	}
+	
+	TlsContext getTlsContext() {
+		return tlsContext;
+	}
+	
+	/**
+	 * Return selector for a new command or connection.  A selector thread
+	 * receives itself.
+	 */
 	public SelectorManager getSelectorManager() {
         return selectorManagers.next();
 	}
 	
+	public int getSelectorCount() {
+		return selectorManagers.size();
+	}
+	
 	public int getMaxCommands() {
 		return maxCommands;
 	}
 	
+	@Override
+	protected int getMaxCommandsPerNode() {
+		return Math.max(super.getMaxCommandsPerNode(), maxCommands);
+	}
+
+	public int getMinConnsPerNode() {
+		return minConnsPerNode;
+	}
+	
+	public int getMaxSocketIdleMillis() {
+		return maxSocketIdleMillis;
+	}
+	
 	@Override
 	public void close() {
 		selectorManagers.close();
@@ -95,6 +223,7 @@ public final class AsyncCluster extends Cluster {
 	
 	private static interface BufferQueue {
 		public ByteBuffer getByteBuffer() throws AerospikeException;
+		public ByteBuffer pollByteBuffer();
 		public void putByteBuffer(ByteBuffer byteBuffer);
 	}
 	
@@ -125,6 +254,11 @@ public final class AsyncCluster extends Cluster {
 			}
 		}
 		
+		@Override
+		public ByteBuffer pollByteBuffer() {
+			return bufferQueue.poll();
+		}
+		
 		@Override
 		public void putByteBuffer(ByteBuffer byteBuffer) {
 			bufferQueue.offer(byteBuffer);
@@ -157,12 +291,155 @@ public final class AsyncCluster extends Cluster {
 			return byteBuffer;
 		}
 		
+		@Override
+		public ByteBuffer pollByteBuffer() {
+			return bufferQueue.poll();
+		}
+		
 		@Override
 		public void putByteBuffer(ByteBuffer byteBuffer) {
 			bufferQueue.offer(byteBuffer);
 		}
 	}
 	
+	/**
+	 * Queue buffer queue is bounded and never blocks.  Commands that arrive when all
+	 * buffers are being used wait in per node queues.  When a buffer is released, the
+	 * next command is taken from the nodes in round-robin order and started by the
+	 * releasing thread.  Queued commands are failed at their deadline by the queue timer
+	 * without being sent.
+	 */
+	private static final class QueueBufferQueue implements BufferQueue {
+		private final ArrayBlockingQueue<ByteBuffer> bufferQueue;
+		private final ConcurrentLinkedQueue<AsyncNode> nodes;
+		private final AtomicInteger queued;
+		private final AtomicInteger dispatchCount;
+		private final QueueTimer timer;
+		private final int maxQueued;
+
+		private QueueBufferQueue(int maxCommands, int maxQueued, QueueTimer timer) {		
+			// Preallocate byteBuffers.
+			bufferQueue = new ArrayBlockingQueue<ByteBuffer>(maxCommands);		
+			for (int i = 0; i < maxCommands; i++) {
+				bufferQueue.add(ByteBuffer.allocateDirect(8192));
+			}
+			nodes = new ConcurrentLinkedQueue<AsyncNode>();
+			queued = new AtomicInteger();
+			dispatchCount = new AtomicInteger();
+			this.timer = timer;
+			this.maxQueued = maxQueued;
+		}
+		
+		@Override
+		public ByteBuffer getByteBuffer() throws AerospikeException {			
+			ByteBuffer byteBuffer = pollByteBuffer();
+			if (byteBuffer == null) {
+				throw new AerospikeException.CommandRejected();
+			}
+			return byteBuffer;
+		}
+		
+		@Override
+		public ByteBuffer pollByteBuffer() {
+			// Do not let optional commands pass queued commands.
+			if (queued.get() > 0) {
+				return null;
+			}
+			return bufferQueue.poll();
+		}
+		
+		@Override
+		public void putByteBuffer(ByteBuffer byteBuffer) {
+			bufferQueue.offer(byteBuffer);
+			dispatch();
+		}
+		
+		private void add(AsyncCommand command, AsyncNode node) throws AerospikeException {
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				throw new AerospikeException.CommandRejected();
+			}
+			node.queuedCommands.offer(command);
+			
+			if (node.inCommandQueue.compareAndSet(false, true)) {
+				nodes.offer(node);
+			}
+			timer.add(command);
+			dispatch();
+		}
+		
+		private void remove(AsyncCommand command, AsyncNode node) {
+			queued.decrementAndGet();
+			
+			// Expired commands are usually near the head of the queue.
+			node.queuedCommands.remove(command);
+		}
+		
+		/**
+		 * Start queued commands while buffers are available.  Only one thread dispatches
+		 * at a time.  Calls made during a dispatch, including those from commands started
+		 * or failed by the dispatch, cause the dispatching thread to check again.
+		 */
+		private void dispatch() {
+			if (dispatchCount.getAndIncrement() != 0) {
+				return;
+			}
+			
+			int missed = 1;
+			
+			do {
+				while (queued.get() > 0) {
+					ByteBuffer byteBuffer = bufferQueue.poll();
+					
+					if (byteBuffer == null) {
+						break;
+					}
+					
+					AsyncCommand command = next();
+					
+					if (command == null) {
+						bufferQueue.offer(byteBuffer);
+						break;
+					}
+					command.executeQueued(byteBuffer);
+				}
+				missed = dispatchCount.addAndGet(-missed);
+			} while (missed != 0);
+		}
+		
+		/**
+		 * Return next command that has not timed out, or null if there are none.
+		 */
+		private AsyncCommand next() {
+			long now = System.currentTimeMillis();
+			AsyncNode node;
+			
+			while ((node = nodes.poll()) != null) {
+				AsyncCommand command = node.queuedCommands.poll();
+				
+				// Move node to the end of the round-robin list if it has more commands.
+				node.inCommandQueue.set(false);
+				
+				if (! node.queuedCommands.isEmpty() && node.inCommandQueue.compareAndSet(false, true)) {
+					nodes.offer(node);
+				}
+				
+				if (command == null || ! command.dequeue()) {
+					// Command has already expired.
+					continue;
+				}
+				queued.decrementAndGet();
+				
+				if (command.isQueueExpired(now)) {
+					command.expireQueued();
+					continue;
+				}
+				return command;
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * Accept buffer queue is unbounded and never blocks.  
 	 * Buffers are allocated whenever they are not available.
@@ -188,6 +465,11 @@ public final class AsyncCluster extends Cluster {
 			return byteBuffer;
 		}
 		
+		@Override
+		public ByteBuffer pollByteBuffer() {
+			return getByteBuffer();
+		}
+		
 		@Override
 		public void putByteBuffer(ByteBuffer byteBuffer) {
 			bufferQueue.offer(byteBuffer);
@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.admin.AdminCommand;
+import com.aerospike.client.command.Buffer;
 import com.aerospike.client.command.Command;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.util.ThreadLocalData;
@@ -33,21 +34,37 @@ public abstract class AsyncCommand extends Command implements Runnable {
 	private static final int IN_PROGRESS = 0;
 	private static final int TIMEOUT_DELAY = 1;
 	private static final int COMPLETE = 2;
+	private static final int IN_BUFFER_QUEUE = 3;
+	private static final int IN_PERMIT_QUEUE = 4;
 
 	protected AsyncConnection conn;
 	protected ByteBuffer byteBuffer;
+	private ByteBuffer commandBuffer;
 	protected AsyncNode node;
 	protected final AsyncCluster cluster;
 	protected final Policy policy;
 	private final AtomicInteger state = new AtomicInteger();
+	private final int socketTimeout;
+	private final int totalTimeout;
+	private long deadline;
 	private long limit;
+	private long begin;
+	private long hedgeTime;
+	long retryTime;
+	long timerTick;
+	long queueDeadline;
+	boolean inQueueTimer;
+	private AerospikeException retryException;
 	private int iterations;
+	private boolean hasPermit;
 	protected boolean inAuthenticate;
 	protected boolean inHeader = true;
 	
 	public AsyncCommand(AsyncCluster cluster, Policy policy) {
 		this.cluster = cluster;
 		this.policy = policy;	
+		this.socketTimeout = getSocketTimeout(policy);
+		this.totalTimeout = getTotalTimeout(policy);
 	}
 
 	public AsyncCommand(AsyncCommand other) {
@@ -55,26 +72,376 @@ public abstract class AsyncCommand extends Command implements Runnable {
 		this.cluster = other.cluster;
 		this.policy = other.policy;
 		this.byteBuffer = other.byteBuffer;
+		this.commandBuffer = other.commandBuffer;
+		this.socketTimeout = other.socketTimeout;
+		this.totalTimeout = other.totalTimeout;
+		this.deadline = other.deadline;
 		this.limit = other.limit;
+		this.hedgeTime = other.hedgeTime;
 		this.iterations = other.iterations + 1;
 		this.sequence = other.sequence;
 	}
 
 	public final void execute() {
-		if (policy.timeout > 0) {
-			limit = System.currentTimeMillis() + policy.timeout;
+		if (cluster.isQueueEnabled()) {
+			// Start directly when a buffer is free and no other command is queued.
+			ByteBuffer buffer = cluster.pollByteBuffer();
+			
+			if (buffer == null) {
+				enqueue();
+				return;
+			}
+			prepare(buffer);
+			executeCommand();
+			return;
+		}
+		prepare(cluster.getByteBuffer());
+		executeCommand();
+	}
+
+	/**
+	 * Execute commands[0] to commands[length - 1] and hand them to the selector in
+	 * batches, so each selector is woken at most once per batch.  All commands must
+	 * belong to the same cluster.  Commands run on the calling selector thread, or a
+	 * single round-robin selector for other threads, unless a connection owned by
+	 * another selector is used.
+	 * <p>
+	 * If a command fails to start, the commands already started are still submitted
+	 * before the exception is thrown.  Remaining commands are not started.
+	 */
+	public static void execute(AsyncCommand[] commands, int length) {
+		if (length == 0) {
+			return;
+		}
+		
+		AsyncCluster cluster = commands[0].cluster;
+		boolean queue = cluster.isQueueEnabled();
+		SelectorManager manager = cluster.getSelectorManager();
+		Batch batch = new Batch(length);
+		
+		try {
+			for (int i = 0; i < length; i++) {
+				AsyncCommand command = commands[i];
+				ByteBuffer buffer = cluster.pollByteBuffer();
+				
+				if (buffer == null) {
+					if (queue) {
+						command.enqueue();
+						continue;
+					}
+					// Submit started commands before waiting, so they can complete
+					// and release their buffers.
+					batch.flush();
+					buffer = cluster.getByteBuffer();
+				}
+				command.prepare(buffer);
+				
+				if (command.startCommand(manager)) {
+					batch.add(command);
+				}
+			}
+		}
+		finally {
+			batch.flush();
+		}
+	}
+
+	private void prepare(ByteBuffer buffer) {
+		startTimeout();
+		setBuffer(buffer);
+	}
+
+	private void setBuffer(ByteBuffer buffer) {
+		int hedgeDelay = getHedgeDelay();
+		
+		if (hedgeDelay > 0) {
+			hedgeTime = System.currentTimeMillis() + hedgeDelay;
+		}
+		byteBuffer = buffer;
+		commandBuffer = buffer;
+	}
+
+	/**
+	 * Queue command until a byteBuffer is available.  Time spent in the queue counts
+	 * against the command's timeout.
+	 */
+	private void enqueue() {
+		startTimeout();
+		node = (AsyncNode)getNode();
+		state.set(IN_BUFFER_QUEUE);
+		cluster.queueCommand(this, node);
+	}
+
+	/**
+	 * Take command out of the buffer queue.  Return false if the queue timer has
+	 * already expired the command.
+	 */
+	final boolean dequeue() {
+		return state.compareAndSet(IN_BUFFER_QUEUE, IN_PROGRESS);
+	}
+
+	/**
+	 * Has queued command reached its timeout.
+	 */
+	final boolean isQueueExpired(long now) {
+		return (limit > 0 && now >= limit) || (deadline > 0 && now >= deadline);
+	}
+
+	/**
+	 * Return time when queued command times out, or zero if it has no timeout.
+	 */
+	final long getQueueDeadline() {
+		if (limit > 0 && (deadline == 0 || limit < deadline)) {
+			return limit;
+		}
+		return deadline;
+	}
+
+	/**
+	 * Fail command if it is still queued and has reached its timeout.  Called by the
+	 * queue timer.  Return true if the command is still queued and must be checked
+	 * again at its new deadline.
+	 */
+	final boolean checkQueueTimeout(long now) {
+		int status = state.get();
+		
+		if (status != IN_BUFFER_QUEUE && status != IN_PERMIT_QUEUE) {
+			return false;
+		}
+		
+		if (! isQueueExpired(now)) {
+			return true;
+		}
+		
+		if (state.compareAndSet(status, COMPLETE)) {
+			if (status == IN_BUFFER_QUEUE) {
+				cluster.removeQueuedCommand(this, node);
+			}
+			else {
+				node.removePermitWaiter(this);
+				releaseBuffer();
+			}
+			expireQueued();
+		}
+		return false;
+	}
+
+	/**
+	 * Fail queued command that reached its timeout before a byteBuffer was available.
+	 * The command was never sent.
+	 */
+	final void expireQueued() {
+		state.set(COMPLETE);
+		onFailure(new AerospikeException.Timeout(node, getTimeout(), 0, 0, 0));
+	}
+
+	/**
+	 * Start queued command with the given byteBuffer.  Called by the thread that
+	 * released the buffer, so it never blocks.  Errors are passed to the listener.
+	 */
+	final void executeQueued(ByteBuffer buffer) {
+		resetLimit(System.currentTimeMillis());
+		setBuffer(buffer);
+		
+		try {
+			executeCommand();
+		}
+		catch (AerospikeException ae) {
+			// Command has already been cleaned up.
+			onFailure(ae);
+		}
+		catch (Exception e) {
+			onFailure(new AerospikeException(e));
+		}
+	}
+
+	/**
+	 * Execute command only if a byteBuffer is immediately available.  This method
+	 * never blocks, so it can be called from a selector thread.  Return false if the
+	 * command was not started.
+	 */
+	protected final boolean executeNoWait() {
+		byteBuffer = cluster.pollByteBuffer();
+		
+		if (byteBuffer == null) {
+			return false;
 		}
-		byteBuffer = cluster.getByteBuffer();
+		commandBuffer = byteBuffer;
+		
+		startTimeout();
 		executeCommand();
+		return true;
+	}
+
+	private void startTimeout() {
+		long now = System.currentTimeMillis();
+		
+		if (totalTimeout > 0) {
+			deadline = now + totalTimeout;
+		}
+		resetLimit(now);
+	}
+
+	/**
+	 * Set time limit of the next attempt.  The socket timeout is not allowed to pass
+	 * the total timeout deadline.
+	 */
+	private void resetLimit(long now) {
+		if (socketTimeout > 0) {
+			limit = now + socketTimeout;
+			
+			if (deadline > 0 && limit > deadline) {
+				limit = deadline;
+			}
+		}
 	}
 
+	/**
+	 * Return milliseconds to wait before the next retry.  Async retries only back off
+	 * when sleepMultiplier is enabled.
+	 */
+	private int getRetrySleep() {
+		return (policy.sleepMultiplier > 1.0)? getRetrySleep(policy, iterations + 1) : 0;
+	}
+
+	/**
+	 * Can command be retried after sleep milliseconds.  The total timeout deadline must
+	 * not be reached and the client wide retry budget must not be exhausted.
+	 */
+	private boolean canRetry(int sleep) {
+		return iterations < policy.maxRetries &&
+			(deadline == 0 || System.currentTimeMillis() + sleep < deadline) &&
+			cluster.tryRetry();
+	}
+
+	/**
+	 * Retry command with its clone.  Return false if retry is not allowed.
+	 */
+	private boolean retry(AsyncCommand command, AerospikeException ae) {
+		int sleep = getRetrySleep();
+
+		if (! canRetry(sleep)) {
+			return false;
+		}
+		closeConnection();
+
+		if (sleep > 0) {
+			command.schedule(sleep, ae);
+			return true;
+		}
+		command.resetLimit(System.currentTimeMillis());
+
+		try {
+			command.executeCommand();
+		}
+		catch (Exception e) {
+			// Command has already been cleaned up.
+			// Notify user with original error.
+			onFailure(ae);
+		}
+		return true;
+	}
+
+	/**
+	 * Run retry on a selector thread after sleep milliseconds, so the current thread
+	 * is not blocked.
+	 */
+	private void schedule(int sleep, AerospikeException ae) {
+		retryTime = System.currentTimeMillis() + sleep;
+		retryException = ae;
+		cluster.getSelectorManager().schedule(this);
+	}
+
+	/**
+	 * Run scheduled retry.  Called by selector thread.
+	 */
+	final void executeRetry() {
+		resetLimit(System.currentTimeMillis());
+
+		try {
+			executeCommand();
+		}
+		catch (Exception e) {
+			// Command has already been cleaned up.
+			// Notify user with original error.
+			onFailure(retryException);
+		}
+	}
+
+	/**
+	 * Start command.  The calling thread never waits for a node concurrency permit.
+	 */
 	private void executeCommand() {
+		if (startCommand(cluster.getSelectorManager())) {
+			conn.execute(this);
+		}
+	}
+
+	/**
+	 * Get connection and write command to buffer.  Return true if the command must
+	 * then be registered with its connection's selector.  Return false if the command
+	 * is waiting for a node concurrency permit or a retry has been scheduled instead.
+	 */
+	private boolean startCommand(SelectorManager manager) {
 		try {
 			node = (AsyncNode)getNode();
-			conn = node.getAsyncConnection(byteBuffer);
+			node.checkCircuit();
+			
+			if (! node.tryAcquirePermit()) {
+				if (! cluster.waitOnLimit()) {
+					throw new AerospikeException.CommandRejected();
+				}
+				// Keep buffer and wait without blocking.  The command is started by
+				// the thread that returns a permit, or fails at its timeout.
+				state.set(IN_PERMIT_QUEUE);
+				node.addPermitWaiter(this);
+				cluster.addQueueTimer(this);
+				return false;
+			}
+		}
+		catch (RuntimeException re) {
+			cleanup();
+			throw re;
+		}
+		hasPermit = true;
+		return connect(manager);
+	}
+
+	/**
+	 * Start command that was waiting for a node concurrency permit.  The permit has
+	 * already been taken.  Return false if the command has already expired.
+	 */
+	final boolean resumeWithPermit() {
+		if (! state.compareAndSet(IN_PERMIT_QUEUE, IN_PROGRESS)) {
+			return false;
+		}
+		hasPermit = true;
+		
+		try {
+			if (connect(cluster.getSelectorManager())) {
+				conn.execute(this);
+			}
+		}
+		catch (AerospikeException ae) {
+			// Command has already been cleaned up.
+			onFailure(ae);
+		}
+		catch (Exception e) {
+			onFailure(new AerospikeException(e));
+		}
+		return true;
+	}
+
+	/**
+	 * Get connection for command that holds a permit and write command to buffer.
+	 */
+	private boolean connect(SelectorManager manager) {
+		try {
+			// Prefer connections owned by the given selector.
+			conn = node.getAsyncConnection(manager.getIndex(), byteBuffer);
 			
 			if (conn == null) {
-				conn = new AsyncConnection(node.getAddress(), cluster);
+				conn = node.createAsyncConnection(manager);
 			
 				if (cluster.getUser() != null) {
 					inAuthenticate = true;
@@ -84,23 +451,31 @@ public abstract class AsyncCommand extends Command implements Runnable {
 					byteBuffer.clear();
 					byteBuffer.put(dataBuffer, 0, dataOffset);
 					byteBuffer.flip();
-					conn.execute(this);
-					return;
+					return true;
 				}
 			}
 			writeCommand();
-			conn.execute(this);
+			begin = System.nanoTime();
+			return true;
 		}
 		catch (AerospikeException.Connection aec) {
+			if (node != null) {
+				node.addError();
+			}
+			
 			// Attempt retry on failed connection.
-			if (iterations < policy.maxRetries && (policy.retryOnTimeout || limit == 0 || System.currentTimeMillis() < limit)) {
+			int sleep = getRetrySleep();
+			
+			if (canRetry(sleep)) {
 				closeConnection();
 				iterations++;
 				
-				if (policy.timeout > 0 && policy.retryOnTimeout) {
-					limit = System.currentTimeMillis() + policy.timeout;
+				if (sleep > 0) {
+					schedule(sleep, aec);
+					return false;
 				}
-				executeCommand();  // recursive call
+				resetLimit(System.currentTimeMillis());
+				return startCommand(manager);  // recursive call
 			}
 			else {
 				cleanup();
@@ -116,8 +491,13 @@ public abstract class AsyncCommand extends Command implements Runnable {
 	protected final void writeCommand() {	
 		writeBuffer();
 		
+		if (deadline > 0) {
+			// Send remaining time to server, so it does not work past the client deadline.
+			Buffer.intToBytes((int)Math.max(deadline - System.currentTimeMillis(), 1L), dataBuffer, 22);
+		}
+		
 		if (dataOffset > byteBuffer.capacity()) {
-			byteBuffer = ByteBuffer.allocateDirect(dataOffset);
+			resizeByteBuffer(dataOffset);
 		}
 		
 		byteBuffer.clear();
@@ -135,6 +515,7 @@ public abstract class AsyncCommand extends Command implements Runnable {
 			throw new AerospikeException(resultCode);
 		}
 		writeCommand();
+		begin = System.nanoTime();
 		conn.setWriteable();
 	}
 
@@ -142,6 +523,25 @@ public abstract class AsyncCommand extends Command implements Runnable {
 		conn.write(byteBuffer);
 	}
 
+	/**
+	 * Should command be placed on selector's timeout queue.
+	 */
+	final boolean useTimeoutQueue() {
+		return limit > 0 || hedgeTime > 0;
+	}
+
+	/**
+	 * Return time in milliseconds when the selector should next check this command.
+	 */
+	final long getTimerDeadline() {
+		long deadline = limit;
+		
+		if (hedgeTime > 0 && (deadline == 0 || hedgeTime < deadline)) {
+			deadline = hedgeTime;
+		}
+		return deadline;
+	}
+
 	protected final boolean checkTimeout() {
 		int status = state.get();
 		
@@ -149,6 +549,15 @@ public abstract class AsyncCommand extends Command implements Runnable {
 			return false;
 		}
 		
+		if (hedgeTime > 0 && System.currentTimeMillis() >= hedgeTime) {
+			// Hedge is only attempted once.
+			hedgeTime = 0;
+			
+			if (status == IN_PROGRESS) {
+				onHedge();
+			}
+		}
+		
 		if (limit > 0 && System.currentTimeMillis() > limit) {
 			// Check if timeouts are allowed in the current state.
 			// Do not timeout if the command is currently reading data in an offloaded task thread.
@@ -157,6 +566,10 @@ public abstract class AsyncCommand extends Command implements Runnable {
 			if (conn.allowTimeout()) {
 				// Command has timed out in timeout queue thread.
 				// At this point, we know another thread can't be modifying this command's state.
+				if (status == IN_PROGRESS) {
+					node.addError();
+				}
+				
 				if (policy.timeoutDelay > 0) {
 					if (status == IN_PROGRESS) {
 						if (state.compareAndSet(IN_PROGRESS, TIMEOUT_DELAY)) {
@@ -165,7 +578,7 @@ public abstract class AsyncCommand extends Command implements Runnable {
 							// because that would require a new byte buffer which could possibly
 							// result in deadlock.
 							limit = System.currentTimeMillis() + policy.timeoutDelay;
-							onFailure(new AerospikeException.Timeout(node, policy.timeout, iterations + 1, 0, 0));
+							onFailure(new AerospikeException.Timeout(node, getTimeout(), iterations + 1, 0, 0));
 							return true;
 						}											
 					}
@@ -183,33 +596,21 @@ public abstract class AsyncCommand extends Command implements Runnable {
 					if (state.compareAndSet(IN_PROGRESS, COMPLETE)) {
 						// We know the task has not been offloaded to another thread,
 						// so we can close safely here.
-						// Attempt retry.
-						if (iterations < policy.maxRetries && policy.retryOnTimeout) {
-							AsyncCommand command = cloneCommand();
-
-							if (command != null) {
-								closeConnection();							
-								command.limit = System.currentTimeMillis() + policy.timeout;
-								
-								try {
-									command.executeCommand();
-								}
-								catch (Exception e) {
-									// Command has already been cleaned up.
-									// Notify user with original error.
-									onFailure(new AerospikeException.Timeout(node, policy.timeout, iterations + 1, 0, 0));
-								}
-								return false;
-							}							
-						}					
+						// Attempt retry if socket timeout was reached before total timeout.
+						AerospikeException ae = new AerospikeException.Timeout(node, getTimeout(), iterations + 1, 0, 0);
+						AsyncCommand command = cloneCommand();
+
+						if (command != null && retry(command, ae)) {
+							return false;
+						}
 						cleanup();
-						onFailure(new AerospikeException.Timeout(node, policy.timeout, iterations + 1, 0, 0));
+						onFailure(ae);
 					}
 				}
 				return false;  // Do not put back on timeout queue.
 			}
 		}
-		return true;
+		return limit > 0 || hedgeTime > 0;
 	}
 	
 	public void run() {
@@ -240,9 +641,8 @@ public abstract class AsyncCommand extends Command implements Runnable {
 		// Finish could be called from a separate asyncTaskThreadPool thread.
 		// Make sure SelectorManager thread has not already caused a transaction timeout.
 		if (state.compareAndSet(IN_PROGRESS, COMPLETE)) {
-			conn.unregister();
-			node.putAsyncConnection(conn);
-			cluster.putByteBuffer(byteBuffer);
+			putConnection();
+			addLatency(node, begin);
 			
 			try {
 				onSuccess();
@@ -262,36 +662,20 @@ public abstract class AsyncCommand extends Command implements Runnable {
 		else if (state.compareAndSet(TIMEOUT_DELAY, COMPLETE)) {
 			// User has already been notified of timeout.
 			// Put connection back into pool and discard response.
-			conn.unregister();
-			node.putAsyncConnection(conn);
-			cluster.putByteBuffer(byteBuffer);
+			putConnection();
 		}
 	}
 
 	protected final void onNetworkError(AerospikeException ae) {
 		// Ensure that command succeeds or fails, but not both.
 		if (state.compareAndSet(IN_PROGRESS, COMPLETE)) {			
+			node.addError();
+			
 			// Attempt retry.
-			if (iterations < policy.maxRetries && (policy.retryOnTimeout || limit == 0 || System.currentTimeMillis() < limit)) {
-				AsyncCommand command = cloneCommand();
+			AsyncCommand command = cloneCommand();
 
-				if (command != null) {
-					closeConnection();
-					
-					if (policy.timeout > 0 && policy.retryOnTimeout) {
-						command.limit = System.currentTimeMillis() + policy.timeout;
-					}
-					
-					try {				
-						command.executeCommand();
-					}
-					catch (Exception e) {
-						// Command has already been cleaned up.
-						// Notify user with original error.
-						onFailure(ae);
-					}
-					return;
-				}
+			if (command != null && retry(command, ae)) {
+				return;
 			}
 			cleanup();
 			onFailure(ae);
@@ -308,9 +692,11 @@ public abstract class AsyncCommand extends Command implements Runnable {
 		if (notify || state.compareAndSet(TIMEOUT_DELAY, COMPLETE)) {			
 			if (ae.keepConnection()) {
 				// Put connection back in pool.
-				conn.unregister();
-				node.putAsyncConnection(conn);
-				cluster.putByteBuffer(byteBuffer);
+				putConnection();
+				
+				if (notify) {
+					addLatency(node, begin);
+				}
 			}
 			else {
 				// Close socket to flush out possible garbage.
@@ -325,18 +711,114 @@ public abstract class AsyncCommand extends Command implements Runnable {
 
 	private void cleanup() {
 		closeConnection();
-		cluster.putByteBuffer(byteBuffer);
+		releaseBuffer();
+	}
+
+	private void putConnection() {
+		conn.unregister();
+		node.putAsyncConnection(conn);
+		releaseBuffer();
+		releasePermit();
+	}
+
+	/**
+	 * Replace byteBuffer with a pooled buffer that holds at least size bytes.
+	 * Buffer contents are not copied.
+	 */
+	protected final void resizeByteBuffer(int size) {
+		if (byteBuffer != commandBuffer) {
+			cluster.putLargeBuffer(byteBuffer);
+		}
+		byteBuffer = cluster.getLargeBuffer(size);
+	}
+
+	private void releaseBuffer() {
+		if (byteBuffer != commandBuffer) {
+			cluster.putLargeBuffer(byteBuffer);
+			byteBuffer = commandBuffer;
+		}
+		cluster.putByteBuffer(commandBuffer);
 	}
 
 	private void closeConnection() {
 		if (conn != null) {
-			conn.close();
+			node.closeAsyncConnection(conn);
 			conn = null;
 		}
+		releasePermit();
+	}
+
+	private void releasePermit() {
+		// Command may complete in either the selector thread or the timeout thread, but
+		// the state transitions ensure only one of them returns the connection.
+		if (hasPermit) {
+			hasPermit = false;
+			node.releasePermit();
+		}
+	}
+
+	private int getTimeout() {
+		return (totalTimeout > 0)? totalTimeout : socketTimeout;
+	}
+
+	/**
+	 * Return milliseconds to wait for a response before {@link #onHedge()} is called.
+	 * Zero disables hedging.
+	 */
+	protected int getHedgeDelay() {
+		return 0;
+	}
+
+	/**
+	 * Called by the selector thread when the hedge delay has passed and the command
+	 * is still in progress.  This method must not block.
+	 */
+	protected void onHedge() {
 	}
 
 	protected abstract AsyncCommand cloneCommand();
 	protected abstract void read() throws AerospikeException, IOException;
 	protected abstract void onSuccess();
 	protected abstract void onFailure(AerospikeException ae);
+
+	/**
+	 * Started commands waiting to be handed to their selectors.
+	 */
+	private static final class Batch {
+		private final AsyncCommand[] commands;
+		private int count;
+		
+		private Batch(int capacity) {
+			commands = new AsyncCommand[capacity];
+		}
+		
+		private void add(AsyncCommand command) {
+			commands[count++] = command;
+		}
+		
+		/**
+		 * Submit commands grouped by the selector that owns their connection.
+		 */
+		private void flush() {
+			int offset = 0;
+			
+			while (offset < count) {
+				// Move commands for the first remaining selector to the front.
+				SelectorManager manager = commands[offset].conn.getSelectorManager();
+				int end = offset;
+				
+				for (int i = offset; i < count; i++) {
+					AsyncCommand command = commands[i];
+					
+					if (command.conn.getSelectorManager() == manager) {
+						commands[i] = commands[end];
+						commands[end++] = command;
+					}
+				}
+				manager.execute(commands, offset, end - offset);
+				offset = end;
+			}
+			count = 0;
+		}
+	}
 }
@@ -19,6 +19,7 @@ package com.aerospike.client.async;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
@@ -29,6 +30,8 @@ import java.nio.channels.SocketChannel;
 
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Log;
+import com.aerospike.client.admin.AdminCommand;
+import com.aerospike.client.util.ThreadLocalData;
 import com.aerospike.client.util.Util;
 
 /**
@@ -37,10 +40,29 @@ import com.aerospike.client.util.Util;
 public final class AsyncConnection implements Closeable{
 	private final SocketChannel socketChannel;
 	private final SelectorManager manager;
+	private final TlsChannel tls;
 	private SelectionKey key;
+	private volatile long lastUsed;
+	private volatile boolean stale;
 	
 	public AsyncConnection(InetSocketAddress address, AsyncCluster cluster) throws AerospikeException.Connection {
-		this.manager = cluster.getSelectorManager();
+		this(address, null, cluster);
+	}
+
+	/**
+	 * Start non-blocking connect.  If TLS is enabled, the handshake is performed by the
+	 * selector thread after the connection completes.
+	 */
+	public AsyncConnection(InetSocketAddress address, String tlsName, AsyncCluster cluster) throws AerospikeException.Connection {
+		this(address, tlsName, cluster, cluster.getSelectorManager());
+	}
+
+	/**
+	 * Start non-blocking connect on the given selector.  The connection is always
+	 * registered with this selector.
+	 */
+	public AsyncConnection(InetSocketAddress address, String tlsName, AsyncCluster cluster, SelectorManager manager) throws AerospikeException.Connection {
+		this.manager = manager;
 		
 		try {
 			socketChannel = SocketChannel.open();
@@ -62,20 +84,191 @@ public final class AsyncConnection implements Closeable{
 			// socket.setSoLinger(true, 0);
 			
 			socketChannel.connect(address);
+			tls = (cluster.getTlsContext() != null)? new TlsChannel(cluster, socketChannel, address, tlsName) : null;
 		}
 		catch (Exception e) {
 			close();
 			throw new AerospikeException.Connection("SocketChannel init error: " + e.getMessage());
 		}
+		lastUsed = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Connect and authenticate in blocking mode, then switch to non-blocking mode.
+	 * This is used by the cluster tend thread to pre-warm the connection pool.
+	 */
+	public AsyncConnection(InetSocketAddress address, AsyncCluster cluster, int timeoutMillis) throws AerospikeException.Connection {
+		this(address, null, cluster, timeoutMillis);
+	}
+
+	/**
+	 * Connect, perform TLS handshake and authenticate before returning.  The socket is
+	 * in non-blocking mode when this constructor returns.
+	 */
+	public AsyncConnection(InetSocketAddress address, String tlsName, AsyncCluster cluster, int timeoutMillis) throws AerospikeException.Connection {
+		this(address, tlsName, cluster, cluster.getSelectorManager(), timeoutMillis);
+	}
+
+	/**
+	 * Connect, perform TLS handshake and authenticate before returning.  The connection
+	 * is registered with the given selector when used.
+	 */
+	public AsyncConnection(InetSocketAddress address, String tlsName, AsyncCluster cluster, SelectorManager manager, int timeoutMillis) throws AerospikeException.Connection {
+		this.manager = manager;
+		
+		try {
+			socketChannel = SocketChannel.open();
+		}
+		catch (Exception e) {
+			throw new AerospikeException.Connection("SocketChannel open error: " + e.getMessage());
+		}
+
+		try {
+			Socket socket = socketChannel.socket();
+			socket.setTcpNoDelay(true);
+			
+			if (timeoutMillis <= 0) {
+				// Do not wait indefinitely on connection if no timeout is specified.
+				timeoutMillis = 2000;
+			}
+			socket.setSoTimeout(timeoutMillis);
+			socket.connect(address, timeoutMillis);
+			
+			if (cluster.getTlsContext() != null) {
+				// Socket timeouts do not apply to channels, so complete the handshake
+				// and authentication in non-blocking mode with a deadline.
+				socketChannel.configureBlocking(false);
+				tls = new TlsChannel(cluster, socketChannel, address, tlsName);
+				startTls(cluster, timeoutMillis);
+			}
+			else {
+				tls = null;
+
+				if (cluster.getUser() != null) {
+					authenticate(socket, cluster.getUser(), cluster.getPassword());
+				}
+				socketChannel.configureBlocking(false);
+			}
+		}
+		catch (AerospikeException ae) {
+			close();
+			throw ae;
+		}
+		catch (Exception e) {
+			close();
+			throw new AerospikeException.Connection("SocketChannel init error: " + e.getMessage());
+		}
+		lastUsed = System.currentTimeMillis();
+	}
+	
+	private static void authenticate(Socket socket, byte[] user, byte[] password) throws IOException {
+		byte[] buffer = ThreadLocalData.getBuffer();
+		AdminCommand command = new AdminCommand(buffer);
+		int length = command.setAuthenticate(user, password);
+		socket.getOutputStream().write(buffer, 0, length);
+		
+		// Read 8 byte proto header and 16 byte admin header.
+		InputStream in = socket.getInputStream();
+		int pos = 0;
+		
+		while (pos < 24) {
+			int count = in.read(buffer, pos, 24 - pos);
+			
+			if (count < 0) {
+				throw new EOFException();
+			}
+			pos += count;
+		}
+		
+		// Result code is the second byte of the admin header.
+		int resultCode = buffer[9] & 0xFF;
+		
+		if (resultCode != 0) {
+			throw new AerospikeException(resultCode, "Authentication failed");
+		}
+	}
+	
+	private void startTls(AsyncCluster cluster, int timeoutMillis) throws Exception {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		Selector selector = Selector.open();
+		
+		try {
+			SelectionKey sk = socketChannel.register(selector, 0);
+			
+			while (! tls.handshake()) {
+				waitFor(selector, sk, tls.getHandshakeOps(), deadline);
+			}
+			
+			if (cluster.getUser() != null) {
+				byte[] buffer = ThreadLocalData.getBuffer();
+				AdminCommand command = new AdminCommand(buffer);
+				int length = command.setAuthenticate(cluster.getUser(), cluster.getPassword());
+				ByteBuffer bb = ByteBuffer.wrap(buffer, 0, length);
+				
+				while (! tls.write(bb)) {
+					waitFor(selector, sk, SelectionKey.OP_WRITE, deadline);
+				}
+				
+				// Read 8 byte proto header and 16 byte admin header.
+				bb = ByteBuffer.wrap(buffer, 0, 24);
+
+				while (! tls.read(bb)) {
+					waitFor(selector, sk, SelectionKey.OP_READ, deadline);
+				}
+
+				// Result code is the second byte of the admin header.
+				int resultCode = buffer[9] & 0xFF;
+				
+				if (resultCode != 0) {
+					throw new AerospikeException(resultCode, "Authentication failed");
+				}
+			}
+		}
+		finally {
+			// Closing the selector deregisters the channel, so it can be registered
+			// with a selector manager later.
+			selector.close();
+		}
+	}
+	
+	private static void waitFor(Selector selector, SelectionKey key, int ops, long deadline) throws IOException {
+		key.interestOps(ops);
+		long wait = deadline - System.currentTimeMillis();
+		
+		if (wait <= 0 || selector.select(wait) == 0) {
+			throw new AerospikeException.Connection("TLS connect timeout");
+		}
+		selector.selectedKeys().clear();
 	}
 	
 	public void execute(AsyncCommand command) {
 		manager.execute(command);
 	}
+	
+	/**
+	 * Return selector that owns this connection.
+	 */
+	public SelectorManager getSelectorManager() {
+		return manager;
+	}
 
 	public void finishConnect() throws IOException {		
 		socketChannel.finishConnect();
-		key.interestOps(SelectionKey.OP_WRITE);
+		key.interestOps((tls != null)? tls.getHandshakeOps() : SelectionKey.OP_WRITE);
+	}
+	
+	/**
+	 * Is TLS handshake still in progress.
+	 */
+	public boolean inHandshake() {
+		return tls != null && ! tls.isHandshakeComplete();
+	}
+	
+	/**
+	 * Advance TLS handshake.  When the handshake completes, the command is written.
+	 */
+	public void handshake() throws Exception {
+		key.interestOps(tls.handshake()? SelectionKey.OP_WRITE : tls.getHandshakeOps());
 	}
 	
 	public void register(AsyncCommand command, Selector selector) throws ClosedChannelException {
@@ -84,13 +277,32 @@ public final class AsyncConnection implements Closeable{
 			key.interestOps(SelectionKey.OP_WRITE);
 		}
 		else {
-			key = socketChannel.register(selector, SelectionKey.OP_CONNECT, command);    		
+			// Connections opened by the tend thread are already connected.
+			int ops = socketChannel.isConnected()? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT;
+			key = socketChannel.register(selector, ops, command);    		
 		}
     }
     
+    /**
+     * Detach command.  The idle connection stays registered for reads, so the selector
+     * notices when the server closes the socket or sends unexpected data.
+     */
     public void unregister() {
+    	key.attach(this);
+    	key.interestOps(SelectionKey.OP_READ);
+    }
+    
+    /**
+     * Called by the selector thread when an idle connection is readable.  A closed socket
+     * or unexpected data marks the connection stale, so it is not used again.
+     */
+    void checkIdle() {
+    	if (tls != null && tls.isValid()) {
+    		// Post-handshake message was consumed.
+    		return;
+    	}
+    	stale = true;
     	key.interestOps(0);
-    	key.attach(null);
     }
 
     public void write(ByteBuffer byteBuffer) throws IOException {
@@ -105,6 +317,15 @@ public final class AsyncConnection implements Closeable{
 		}
 		*/
 
+		if (tls != null) {
+			if (tls.write(byteBuffer)) {
+				byteBuffer.clear();
+				byteBuffer.limit(8);
+				key.interestOps(SelectionKey.OP_READ);
+			}
+			return;
+		}
+		
 		socketChannel.write(byteBuffer);
     	
 		if (! byteBuffer.hasRemaining()) {
@@ -120,13 +341,31 @@ public final class AsyncConnection implements Closeable{
 
     public void setReadable() {   	
 		key.interestOps(SelectionKey.OP_READ);
+		
+		if (tls != null && tls.hasBufferedInput()) {
+			// Decrypted data will not trigger a select.
+			manager.addPendingRead(key);
+			return;
+		}
 		manager.wakeup();
     }
+    
+    /**
+     * Is connection waiting to read data that has already been received.  This only
+     * happens with TLS, where a socket read may receive more than one record.
+     */
+    public boolean hasPendingRead() {
+    	return tls != null && key != null && key.isValid() && key.interestOps() == SelectionKey.OP_READ && tls.hasBufferedInput();
+    }
 
     /**
      * Read till byteBuffer limit reached or received would-block.
      */
     public boolean read(ByteBuffer byteBuffer) throws IOException {
+    	if (tls != null) {
+    		return tls.read(byteBuffer);
+    	}
+    	
 		while (byteBuffer.hasRemaining()) {
 			int len = socketChannel.read(byteBuffer);
 			
@@ -148,6 +387,17 @@ public final class AsyncConnection implements Closeable{
      * Return false, if not connected, socket read error or has data in it's buffer.
      */
     public boolean isValid(ByteBuffer byteBuffer) {
+    	if (key != null) {
+    		// Connection has been registered with its selector, which watches the socket
+    		// while it is idle.  No socket read is necessary.
+    		return ! stale;
+    	}
+    	
+    	// Connection opened by the tend thread has not been used yet.
+    	if (tls != null) {
+    		return tls.isValid();
+    	}
+    	
 		// Do not use socketChannel.isOpen() or socketChannel.isConnected() because
     	// they do not take server actions on socket into account.
 		byteBuffer.position(0);
@@ -163,6 +413,24 @@ public final class AsyncConnection implements Closeable{
 		}
     }
 	
+    /**
+     * Has selector found the socket closed or unexpected data while the connection was idle.
+     */
+    public boolean isStale() {
+    	return stale;
+    }
+	
+    /**
+     * Has connection been used within the specified idle limit.
+     */
+    public boolean isCurrent(long maxSocketIdleMillis) {
+		return (System.currentTimeMillis() - lastUsed) <= maxSocketIdleMillis;
+    }
+    
+	public void updateLastUsed() {
+		lastUsed = System.currentTimeMillis();
+	}
+
 	/**
 	 * Should command be allowed to timeout.  If command is currently reading data in an offloaded
 	 * task thread, the interestOps is set to zero.  Make sure non-zero because we can't timeout 
@@ -190,5 +458,9 @@ public final class AsyncConnection implements Closeable{
 				Log.debug("Error closing socket: " + Util.getErrorMessage(e));
 			}
 		}
+		
+		if (tls != null) {
+			tls.close();
+		}
 	}
 }
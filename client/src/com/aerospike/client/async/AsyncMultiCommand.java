@@ -35,7 +35,6 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 	
 	private final AsyncMultiExecutor parent;
 	protected final AsyncNode node;
-	protected byte[] receiveBuffer;
 	protected int receiveSize;
 	protected int receiveOffset;
 	protected int resultCode;
@@ -59,6 +58,11 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 		return null;
 	}
 
+	@Override
+	protected final boolean isSingleRecord() {
+		return false;
+	}
+
 	protected final Node getNode() {	
 		return node;
 	}
@@ -79,14 +83,12 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 		        	return;
 		        }
 		        
-		        if (receiveBuffer == null || receiveSize > receiveBuffer.length) {
-		        	receiveBuffer = new byte[receiveSize];
+		        // Read whole group into byteBuffer, so records are parsed in place.
+		        if (receiveSize > byteBuffer.capacity()) {
+		        	resizeByteBuffer(receiveSize);
 		        }
 				byteBuffer.clear();
-	
-				if (receiveSize < byteBuffer.capacity()) {
-					byteBuffer.limit(receiveSize);
-				}
+				byteBuffer.limit(receiveSize);
 				inHeader = false;
 				
 				// In the interest of fairness, only one group of records should be read at a time.
@@ -108,30 +110,15 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 				return;
 			}
 
-			// Copy byteBuffer to byte[].
-			byteBuffer.position(0);
-			byteBuffer.get(receiveBuffer, receiveOffset, byteBuffer.limit());
-			receiveOffset += byteBuffer.limit();
-			byteBuffer.clear();
-			
-			if (receiveOffset >= receiveSize) {
-				if (parseGroup()) {
-					finish();
-					return;
-				}
-				// Prepare for next group.
-				byteBuffer.limit(8);
-				receiveOffset = 0;
-				inHeader = true;
-				groups++;
-			}
-			else {
-				int remaining = receiveSize - receiveOffset;
-					
-				if (remaining < byteBuffer.capacity()) {
-					byteBuffer.limit(remaining);
-				}
+			if (parseGroup()) {
+				finish();
+				return;
 			}
+			// Prepare for next group.
+			byteBuffer.clear();
+			byteBuffer.limit(8);
+			inHeader = true;
+			groups++;
 		}
 	}
 		
@@ -140,7 +127,7 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 		receiveOffset = 0;
 		
 		while (receiveOffset < receiveSize) {
-			resultCode = receiveBuffer[receiveOffset + 5] & 0xFF;
+			resultCode = byteBuffer.get(receiveOffset + 5) & 0xFF;
 
 			if (resultCode != 0) {
 				if (resultCode == ResultCode.KEY_NOT_FOUND_ERROR) {
@@ -154,14 +141,14 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 			}
 
 			// If this is the end marker of the response, do not proceed further
-			if ((receiveBuffer[receiveOffset + 3] & Command.INFO3_LAST) != 0) {
+			if ((byteBuffer.get(receiveOffset + 3) & Command.INFO3_LAST) != 0) {
 				return true;
 			}			
-			generation = Buffer.bytesToInt(receiveBuffer, receiveOffset + 6);
-			expiration = Buffer.bytesToInt(receiveBuffer, receiveOffset + 10);
-			batchIndex = Buffer.bytesToInt(receiveBuffer, receiveOffset + 14);
-			fieldCount = Buffer.bytesToShort(receiveBuffer, receiveOffset + 18);
-			opCount = Buffer.bytesToShort(receiveBuffer, receiveOffset + 20);
+			generation = byteBuffer.getInt(receiveOffset + 6);
+			expiration = byteBuffer.getInt(receiveOffset + 10);
+			batchIndex = byteBuffer.getInt(receiveOffset + 14);
+			fieldCount = byteBuffer.getShort(receiveOffset + 18) & 0xFFFF;
+			opCount = byteBuffer.getShort(receiveOffset + 20) & 0xFFFF;
 
 			receiveOffset += Command.MSG_REMAINING_HEADER_SIZE;
 			
@@ -181,33 +168,32 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 		Value userKey = null;
 		
 		for (int i = 0; i < fieldCount; i++) {
-			int fieldlen = Buffer.bytesToInt(receiveBuffer, receiveOffset);
+			int fieldlen = byteBuffer.getInt(receiveOffset);
 			receiveOffset += 4;
 			
-			int fieldtype = receiveBuffer[receiveOffset++];
+			int fieldtype = byteBuffer.get(receiveOffset++);
 			int size = fieldlen - 1;
 			
 			switch (fieldtype) {
 			case FieldType.DIGEST_RIPE:
-				digest = new byte[size];
-				System.arraycopy(receiveBuffer, receiveOffset, digest, 0, size);
+				digest = Buffer.copyBytes(byteBuffer, receiveOffset, size);
 				receiveOffset += size;
 				break;
 			
 			case FieldType.NAMESPACE:
-				namespace = Buffer.utf8ToString(receiveBuffer, receiveOffset, size);
+				namespace = Buffer.utf8ToString(byteBuffer, receiveOffset, size);
 				receiveOffset += size;
 				break;
 				
 			case FieldType.TABLE:
-				setName = Buffer.utf8ToString(receiveBuffer, receiveOffset, size);
+				setName = Buffer.utf8ToString(byteBuffer, receiveOffset, size);
 				receiveOffset += size;
 				break;
 
 			case FieldType.KEY:
-				int type = receiveBuffer[receiveOffset++];
+				int type = byteBuffer.get(receiveOffset++);
 				size--;
-				userKey = Buffer.bytesToKeyValue(type, receiveBuffer, receiveOffset, size);
+				userKey = Buffer.bytesToKeyValue(type, byteBuffer, receiveOffset, size);
 				receiveOffset += size;
 				break;
 			}
@@ -219,14 +205,14 @@ public abstract class AsyncMultiCommand extends AsyncCommand {
 		Map<String,Object> bins = null;
 		
 		for (int i = 0 ; i < opCount; i++) {
-			int opSize = Buffer.bytesToInt(receiveBuffer, receiveOffset);
-			byte particleType = receiveBuffer[receiveOffset+5];
-			byte nameSize = receiveBuffer[receiveOffset+7];
-			String name = Buffer.utf8ToString(receiveBuffer, receiveOffset+8, nameSize);
+			int opSize = byteBuffer.getInt(receiveOffset);
+			byte particleType = byteBuffer.get(receiveOffset+5);
+			byte nameSize = byteBuffer.get(receiveOffset+7);
+			String name = Buffer.utf8ToString(byteBuffer, receiveOffset+8, nameSize);
 			receiveOffset += 4 + 4 + nameSize;
 	
 			int particleBytesSize = (int) (opSize - (4 + nameSize));
-	        Object value = Buffer.bytesToParticle(particleType, receiveBuffer, receiveOffset, particleBytesSize);
+	        Object value = Buffer.bytesToParticle(particleType, byteBuffer, receiveOffset, particleBytesSize);
 			receiveOffset += particleBytesSize;
 
 			if (bins == null) {
@@ -32,9 +32,8 @@ public abstract class AsyncMultiExecutor {
 		this.commands = commands;
 		this.maxConcurrent = (maxConcurrent == 0 || maxConcurrent >= commands.length) ? commands.length : maxConcurrent;
 		
-		for (int i = 0; i < this.maxConcurrent; i++) {
-			commands[i].execute();
-		}
+		// Hand the initial commands to the selectors in one batch.
+		AsyncCommand.execute(commands, this.maxConcurrent);
 	}
 	
 	protected final void childSuccess() {
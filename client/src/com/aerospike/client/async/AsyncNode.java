@@ -18,16 +18,33 @@ package com.aerospike.client.async;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.aerospike.client.Log;
 import com.aerospike.client.cluster.Node;
 import com.aerospike.client.cluster.NodeValidator;
+import com.aerospike.client.util.Util;
 
 /**
  * Asynchronous server node representation.
  */
 public final class AsyncNode extends Node {
 
-	private final ArrayBlockingQueue<AsyncConnection> asyncConnQueue;
+	private final AsyncCluster asyncCluster;
+	private final ArrayBlockingQueue<AsyncConnection>[] asyncConnQueues;
+	private final AtomicInteger asyncConnCount;
+	
+	// Commands waiting for a command slot when asyncMaxCommandAction is QUEUE.
+	final ConcurrentLinkedQueue<AsyncCommand> queuedCommands = new ConcurrentLinkedQueue<AsyncCommand>();
+	
+	// Is node in the cluster's round-robin list of nodes with queued commands.
+	final AtomicBoolean inCommandQueue = new AtomicBoolean();
+	
+	// Commands waiting for an adaptive concurrency permit when adaptiveLimitAction is WAIT.
+	private final ConcurrentLinkedQueue<AsyncCommand> permitWaiters = new ConcurrentLinkedQueue<AsyncCommand>();
+	private final AtomicInteger permitDrainCount = new AtomicInteger();
 
 	/**
 	 * Initialize server node with connection parameters.
@@ -35,38 +52,206 @@ public final class AsyncNode extends Node {
 	 * @param cluster			collection of active server nodes 
 	 * @param nv				connection parameters
 	 */
+	@SuppressWarnings("unchecked")
 	public AsyncNode(AsyncCluster cluster, NodeValidator nv) {
 		super(cluster, nv);
-		asyncConnQueue = new ArrayBlockingQueue<AsyncConnection>(cluster.getMaxCommands());
+		asyncCluster = cluster;
+		
+		// Connections are bound to the selector that registers them, so each selector
+		// has its own pool.
+		asyncConnQueues = (ArrayBlockingQueue<AsyncConnection>[])new ArrayBlockingQueue<?>[cluster.getSelectorCount()];
+		
+		for (int i = 0; i < asyncConnQueues.length; i++) {
+			asyncConnQueues[i] = new ArrayBlockingQueue<AsyncConnection>(cluster.getMaxCommands());
+		}
+		asyncConnCount = new AtomicInteger();
 	}
 	
 	/**
 	 * Get asynchronous socket connection from connection pool for the server node.
+	 * The pool of the given selector is tried first.  If it is empty, a connection
+	 * owned by another selector is returned and the command runs on that selector.
+	 * 
+	 * @param selectorIndex		index of the preferred selector
+	 * @param byteBuffer		buffer used to check for unexpected data on a connection
+	 * 							that has not been registered with a selector yet
 	 */
-	public AsyncConnection getAsyncConnection(ByteBuffer byteBuffer) {
+	public AsyncConnection getAsyncConnection(int selectorIndex, ByteBuffer byteBuffer) {
+		int maxSocketIdleMillis = asyncCluster.getMaxSocketIdleMillis();
+		
 		// Try to find connection in pool.
-		AsyncConnection conn;
+		for (int i = 0; i < asyncConnQueues.length; i++) {
+			ArrayBlockingQueue<AsyncConnection> queue = asyncConnQueues[(selectorIndex + i) % asyncConnQueues.length];
+			AsyncConnection conn;
 
-		while ((conn = asyncConnQueue.poll()) != null) {		
-			if (conn.isValid(byteBuffer)) {
-				return conn;
+			while ((conn = queue.poll()) != null) {		
+				if (conn.isCurrent(maxSocketIdleMillis) && conn.isValid(byteBuffer)) {
+					return conn;
+				}
+				closeAsyncConnection(conn);
 			}
-			conn.close();
 		}
 		return null;
 	}
 	
 	/**
-	 * Put asynchronous connection back into connection pool.
+	 * Open new asynchronous connection on the given selector.  The connect is completed
+	 * in the selector thread.
+	 */
+	public AsyncConnection createAsyncConnection(SelectorManager manager) {
+		AsyncConnection conn = new AsyncConnection(address, getHost().tlsName, asyncCluster, manager);
+		asyncConnCount.getAndIncrement();
+		return conn;
+	}
+	
+	/**
+	 * Put asynchronous connection back into the connection pool of its selector.
 	 * 
 	 * @param conn				socket connection
 	 */
 	public void putAsyncConnection(AsyncConnection conn) {
-		if (! active || ! asyncConnQueue.offer(conn)) {
-			conn.close();
+		conn.updateLastUsed();
+		
+		if (! active || ! asyncConnQueues[conn.getSelectorManager().getIndex()].offer(conn)) {
+			closeAsyncConnection(conn);
 		}
 	}
 	
+	/**
+	 * Close asynchronous connection and decrement connection count.
+	 */
+	public void closeAsyncConnection(AsyncConnection conn) {
+		asyncConnCount.getAndDecrement();
+		conn.close();
+	}
+	
+	/**
+	 * Close idle asynchronous connections in addition to idle synchronous connections.
+	 * The synchronous and asynchronous pools are pre-warmed by the same background task.
+	 */
+	@Override
+	protected void balanceConnections() {
+		if (! active) {
+			return;
+		}
+		
+		// Each queue is FIFO, so the connection idle the longest is at the head.
+		int maxSocketIdleMillis = asyncCluster.getMaxSocketIdleMillis();
+		AsyncConnection conn;
+		
+		for (ArrayBlockingQueue<AsyncConnection> queue : asyncConnQueues) {
+			while ((conn = queue.peek()) != null && ! conn.isCurrent(maxSocketIdleMillis)) {
+				// Connection may have been taken by a command since peek().
+				if (queue.remove(conn)) {
+					closeAsyncConnection(conn);
+				}
+			}
+			
+			// Close connections that the selector found closed by the server.
+			for (AsyncConnection idle : queue) {
+				if (idle.isStale() && queue.remove(idle)) {
+					closeAsyncConnection(idle);
+				}
+			}
+		}
+		
+		// Start the pre-warm task after reaping, so it sees the current connection count.
+		super.balanceConnections();
+	}
+
+	@Override
+	protected boolean needsConnections() {
+		return super.needsConnections() || asyncConnCount.get() < asyncCluster.getMinConnsPerNode();
+	}
+
+	/**
+	 * Open synchronous connections, then asynchronous connections with the remaining
+	 * allowance.  Asynchronous connections are connected and authenticated in the
+	 * calling pool thread before they are handed to a selector.
+	 */
+	@Override
+	protected int createConnections(int max) {
+		max = super.createConnections(max);
+		
+		int count = Math.min(asyncCluster.getMinConnsPerNode() - asyncConnCount.get(), max);
+		
+		for (int i = 0; i < count; i++) {
+			if (! active) {
+				return 0;
+			}
+			
+			// Spread new connections over the selectors in round-robin order.
+			SelectorManager manager = asyncCluster.getSelectorManager();
+			AsyncConnection conn;
+			
+			try {
+				conn = new AsyncConnection(address, getHost().tlsName, asyncCluster, manager, asyncCluster.getConnectionTimeout());
+			}
+			catch (Exception e) {
+				if (Log.debugEnabled()) {
+					Log.debug("Node " + this + " create async connection failed: " + Util.getErrorMessage(e));
+				}
+				return 0;
+			}
+			asyncConnCount.getAndIncrement();
+			
+			if (! active || ! asyncConnQueues[manager.getIndex()].offer(conn)) {
+				closeAsyncConnection(conn);
+				return 0;
+			}
+		}
+		return max - Math.max(count, 0);
+	}
+	
+	/**
+	 * Add command that is waiting for an adaptive concurrency permit.  The command is
+	 * started when a permit is returned.
+	 */
+	void addPermitWaiter(AsyncCommand command) {
+		permitWaiters.offer(command);
+		
+		// A permit may have been returned before the command was added.
+		drainPermitWaiters();
+	}
+
+	/**
+	 * Remove command that reached its timeout while waiting for a permit.
+	 */
+	void removePermitWaiter(AsyncCommand command) {
+		permitWaiters.remove(command);
+	}
+
+	@Override
+	protected void onPermitRelease() {
+		if (! permitWaiters.isEmpty()) {
+			drainPermitWaiters();
+		}
+	}
+
+	/**
+	 * Start waiting commands while permits are available.  Only one thread drains at
+	 * a time.  Other callers only request another pass, so this method never blocks.
+	 */
+	private void drainPermitWaiters() {
+		if (permitDrainCount.getAndIncrement() != 0) {
+			return;
+		}
+		
+		int missed = 1;
+		
+		do {
+			while (! permitWaiters.isEmpty() && tryAcquirePermit()) {
+				AsyncCommand command = permitWaiters.poll();
+				
+				if (command == null || ! command.resumeWithPermit()) {
+					// Command has already expired.
+					releasePermit();
+				}
+			}
+			missed = permitDrainCount.addAndGet(-missed);
+		} while (missed != 0);
+	}
+	
 	/**
 	 * Close all asynchronous connections in the pool.
 	 */
@@ -74,9 +259,11 @@ public final class AsyncNode extends Node {
 	protected void closeConnections() {
 		super.closeConnections();
 		
-		AsyncConnection conn;
-		while ((conn = asyncConnQueue.poll()) != null) {			
-			conn.close();
+		for (ArrayBlockingQueue<AsyncConnection> queue : asyncConnQueues) {
+			AsyncConnection conn;
+			while ((conn = queue.poll()) != null) {			
+				closeAsyncConnection(conn);
+			}
 		}
 	}
 }
@@ -30,13 +30,12 @@ import com.aerospike.client.command.Buffer;
 import com.aerospike.client.command.Command;
 import com.aerospike.client.listener.RecordListener;
 import com.aerospike.client.policy.Policy;
-import com.aerospike.client.util.ThreadLocalData;
 
 public class AsyncRead extends AsyncSingleCommand {
-	private final RecordListener listener;
+	protected final RecordListener listener;
 	protected final Key key;
 	protected final Partition partition;
-	private final String[] binNames;
+	protected final String[] binNames;
 	protected Record record;
 	
 	public AsyncRead(AsyncCluster cluster, Policy policy, RecordListener listener, Key key, String[] binNames) {
@@ -72,20 +71,12 @@ public class AsyncRead extends AsyncSingleCommand {
 
 	@Override
 	protected final void parseResult(ByteBuffer byteBuffer) {
-		dataBuffer = ThreadLocalData.getBuffer();
-		
-		if (receiveSize > dataBuffer.length) {
-			dataBuffer = ThreadLocalData.resizeBuffer(receiveSize);
-		}
-		// Copy entire message to dataBuffer.
-		byteBuffer.position(0);
-		byteBuffer.get(dataBuffer, 0, receiveSize);
-			
-		int resultCode = dataBuffer[5] & 0xFF;
-		int generation = Buffer.bytesToInt(dataBuffer, 6);
-		int expiration = Buffer.bytesToInt(dataBuffer, 10);
-		int fieldCount = Buffer.bytesToShort(dataBuffer, 18);
-		int opCount = Buffer.bytesToShort(dataBuffer, 20);
+		// Parse message directly from byteBuffer without copying it to dataBuffer.
+		int resultCode = byteBuffer.get(5) & 0xFF;
+		int generation = byteBuffer.getInt(6);
+		int expiration = byteBuffer.getInt(10);
+		int fieldCount = byteBuffer.getShort(18) & 0xFFFF;
+		int opCount = byteBuffer.getShort(20) & 0xFFFF;
 		dataOffset = Command.MSG_REMAINING_HEADER_SIZE;
 		        
         if (resultCode == 0) {
@@ -94,7 +85,7 @@ public class AsyncRead extends AsyncSingleCommand {
             	record = new Record(null, generation, expiration);
             }
             else {
-            	record = parseRecord(opCount, fieldCount, generation, expiration);
+            	record = parseRecord(byteBuffer, opCount, fieldCount, generation, expiration);
             }
         }
         else {
@@ -108,6 +99,7 @@ public class AsyncRead extends AsyncSingleCommand {
 	}
 		
 	private final Record parseRecord(
+		ByteBuffer byteBuffer,
 		int opCount, 
 		int fieldCount, 
 		int generation,
@@ -118,7 +110,7 @@ public class AsyncRead extends AsyncSingleCommand {
 		if (fieldCount > 0) {
 			// Just skip over all the fields
 			for (int i = 0; i < fieldCount; i++) {
-				int fieldSize = Buffer.bytesToInt(dataBuffer, dataOffset);
+				int fieldSize = byteBuffer.getInt(dataOffset);
 				dataOffset += 4 + fieldSize;
 			}
 		}
@@ -126,16 +118,16 @@ public class AsyncRead extends AsyncSingleCommand {
 		Map<String,Object> bins = null;
 		
 		for (int i = 0 ; i < opCount; i++) {
-			int opSize = Buffer.bytesToInt(dataBuffer, dataOffset);
-			byte particleType = dataBuffer[dataOffset+5];
-			byte nameSize = dataBuffer[dataOffset+7];
-			String name = Buffer.utf8ToString(dataBuffer, dataOffset+8, nameSize);
+			int opSize = byteBuffer.getInt(dataOffset);
+			byte particleType = byteBuffer.get(dataOffset+5);
+			byte nameSize = byteBuffer.get(dataOffset+7);
+			String name = Buffer.utf8ToString(byteBuffer, dataOffset+8, nameSize);
 			dataOffset += 4 + 4 + nameSize;
 	
 			int particleBytesSize = (int) (opSize - (4 + nameSize));
 	        Object value = null;
 	        
-			value = Buffer.bytesToParticle(particleType, dataBuffer, dataOffset, particleBytesSize);
+			value = Buffer.bytesToParticle(particleType, byteBuffer, dataOffset, particleBytesSize);
 			dataOffset += particleBytesSize;
 	
 			if (bins == null) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Log;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.util.Util;
+
+/**
+ * Asynchronous hedged read.  If the original read has not completed within
+ * {@link Policy#hedgeDelay}, the same read is sent to another replica.  The listener
+ * receives the first successful response.  The other response is discarded.
+ */
+public final class AsyncReadHedge extends AsyncRead {
+	private final Hedge hedge;
+	private final Node hedgeNode;
+
+	public AsyncReadHedge(AsyncCluster cluster, Policy policy, RecordListener listener, Key key, String[] binNames) {
+		super(cluster, policy, listener, key, binNames);
+		this.hedge = new Hedge();
+		this.hedgeNode = null;
+		cluster.getStats().addHedgeRead();
+	}
+
+	private AsyncReadHedge(AsyncReadHedge original, Node hedgeNode) {
+		// Hedge constructor.
+		super(original.cluster, original.policy, original.listener, original.key, original.binNames);
+		this.hedge = original.hedge;
+		this.hedgeNode = hedgeNode;
+	}
+
+	private AsyncReadHedge(AsyncReadHedge other) {
+		// Retry constructor.
+		super(other);
+		this.hedge = other.hedge;
+		this.hedgeNode = other.hedgeNode;
+	}
+
+	@Override
+	protected AsyncCommand cloneCommand() {
+		return new AsyncReadHedge(this);
+	}
+
+	@Override
+	protected Node getNode() {
+		return (hedgeNode != null)? hedgeNode : super.getNode();
+	}
+
+	@Override
+	protected int getHedgeDelay() {
+		// Only the original read can be hedged.
+		return (hedgeNode == null)? policy.hedgeDelay : 0;
+	}
+
+	@Override
+	protected void onHedge() {
+		if (hedge.done.get()) {
+			return;
+		}
+
+		Node target = cluster.getReplicaNode(partition, node);
+
+		if (target == null) {
+			return;
+		}
+
+		hedge.pending.incrementAndGet();
+
+		try {
+			AsyncReadHedge command = new AsyncReadHedge(this, target);
+
+			if (command.executeNoWait()) {
+				cluster.getStats().addHedgeSent();
+				return;
+			}
+			// All buffers are in use.  Do not hedge.
+			hedge.pending.decrementAndGet();
+		}
+		catch (Exception e) {
+			// Hedge command has already been cleaned up.
+			if (Log.debugEnabled()) {
+				Log.debug("Hedge read to " + target + " failed: " + Util.getErrorMessage(e));
+			}
+			hedge.pending.decrementAndGet();
+		}
+	}
+
+	@Override
+	protected void onSuccess() {
+		if (hedge.done.compareAndSet(false, true)) {
+			if (hedgeNode != null) {
+				cluster.getStats().addHedgeWin();
+			}
+			super.onSuccess();
+		}
+	}
+
+	@Override
+	protected void onFailure(AerospikeException ae) {
+		// Keep first failure.  Only notify listener when no other read is outstanding.
+		if (hedge.exception == null) {
+			hedge.exception = ae;
+		}
+
+		if (hedge.pending.decrementAndGet() == 0 && hedge.done.compareAndSet(false, true)) {
+			super.onFailure(hedge.exception);
+		}
+	}
+
+	/**
+	 * State shared between the original read, its hedge and their retries.
+	 */
+	private static final class Hedge {
+		private final AtomicInteger pending = new AtomicInteger(1);
+		private final AtomicBoolean done = new AtomicBoolean();
+		private volatile AerospikeException exception;
+	}
+}
@@ -41,13 +41,11 @@ public abstract class AsyncSingleCommand extends AsyncCommand {
 			byteBuffer.position(0);
 			receiveSize = ((int) (byteBuffer.getLong() & 0xFFFFFFFFFFFFL));
 				        
-			if (receiveSize <= byteBuffer.capacity()) {
-				byteBuffer.clear();
-				byteBuffer.limit(receiveSize);
-			}
-			else {
-				byteBuffer = ByteBuffer.allocateDirect(receiveSize);
+			if (receiveSize > byteBuffer.capacity()) {
+				resizeByteBuffer(receiveSize);
 			}
+			byteBuffer.clear();
+			byteBuffer.limit(receiveSize);
 			inHeader = false;
 		}
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aerospike.client.cluster.ClusterStats;
+
+/**
+ * Pool of direct buffers for commands that do not fit in the fixed size command buffer.
+ * <p>
+ * Buffers are rounded up to a power of 2 size class, from 16 KB up to a maximum class
+ * size.  A returned buffer is kept for reuse by its size class while the total size of
+ * idle buffers stays within the pool limit.  Otherwise, it is released to the garbage
+ * collector.  Buffers larger than the maximum class size are never pooled.
+ * <p>
+ * Only idle buffers are bounded.  Buffers in use are limited by the number of active
+ * commands, since each command holds at most one large buffer.
+ */
+final class BufferPool {
+	private static final int MIN_CLASS_SHIFT = 14;
+	
+	private final ArrayBlockingQueue<ByteBuffer>[] classes;
+	private final ClusterStats stats;
+	private final AtomicLong idleBytes = new AtomicLong();
+	private final long maxIdleBytes;
+	private final int maxClassSize;
+
+	@SuppressWarnings("unchecked")
+	BufferPool(int maxBufferSize, long maxIdleBytes, ClusterStats stats) {
+		this.stats = stats;
+		this.maxIdleBytes = maxIdleBytes;
+		
+		int count = Math.max(classIndex(maxBufferSize) + 1, 1);
+		this.maxClassSize = 1 << (MIN_CLASS_SHIFT + count - 1);
+		this.classes = (ArrayBlockingQueue<ByteBuffer>[])new ArrayBlockingQueue<?>[count];
+		
+		for (int i = 0; i < count; i++) {
+			// Each class can hold the whole idle limit.
+			long capacity = maxIdleBytes >> (MIN_CLASS_SHIFT + i);
+			classes[i] = new ArrayBlockingQueue<ByteBuffer>((int)Math.max(Math.min(capacity, Integer.MAX_VALUE), 1));
+		}
+	}
+
+	/**
+	 * Return direct buffer with at least the given capacity.  Position is zero and limit
+	 * is the capacity.
+	 */
+	ByteBuffer get(int size) {
+		if (size > maxClassSize) {
+			stats.addBufferMiss(size);
+			return ByteBuffer.allocateDirect(size);
+		}
+		
+		int index = classIndex(size);
+		ByteBuffer buffer = classes[index].poll();
+		
+		if (buffer != null) {
+			idleBytes.addAndGet(-buffer.capacity());
+			stats.addBufferHit();
+			buffer.clear();
+			return buffer;
+		}
+		
+		int classSize = 1 << (MIN_CLASS_SHIFT + index);
+		stats.addBufferMiss(classSize);
+		return ByteBuffer.allocateDirect(classSize);
+	}
+
+	/**
+	 * Return buffer obtained from {@link #get(int)}.
+	 */
+	void put(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		
+		int index = classIndex(capacity);
+		
+		// Only buffers created by this pool have a class size.
+		if (capacity <= maxClassSize && capacity == 1 << (MIN_CLASS_SHIFT + index)) {
+			// Reserve idle space before the offer, so concurrent puts can not pass the limit.
+			if (idleBytes.addAndGet(capacity) <= maxIdleBytes && classes[index].offer(buffer)) {
+				return;
+			}
+			idleBytes.addAndGet(-capacity);
+		}
+		// Release buffer to the garbage collector.
+		stats.addBufferReleased(capacity);
+	}
+
+	/**
+	 * Return size class of a buffer.  Size classes are powers of 2 starting at 16 KB.
+	 */
+	private static int classIndex(int size) {
+		if (size <= (1 << MIN_CLASS_SHIFT)) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring of commands waiting to be registered
+ * with a selector.  Slots are allocated once, so enqueue does not allocate.
+ * A producer can claim a run of slots for a batch of commands with a single CAS.
+ * <p>
+ * Each slot has a sequence number.  A slot is free for position p when its sequence
+ * is p and is published when its sequence is p + 1.  The consumer frees slots in order.
+ * When the ring is full, commands are added to an unbounded overflow queue, so
+ * commands are never rejected.  Later commands follow them into the overflow queue until
+ * it is drained, and the overflow queue is only polled when the ring is empty, so the
+ * commands of each producer are polled in the order they were added.
+ */
+final class CommandRing {
+	private final AtomicReferenceArray<AsyncCommand> commands;
+	private final AtomicLongArray sequences;
+	private final ConcurrentLinkedQueue<AsyncCommand> overflow = new ConcurrentLinkedQueue<AsyncCommand>();
+	private final AtomicLong tail = new AtomicLong();
+	private final int capacity;
+	private final int mask;
+	private long head;
+
+	CommandRing(int size) {
+		// Round capacity up to a power of 2.
+		capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+		mask = capacity - 1;
+		commands = new AtomicReferenceArray<AsyncCommand>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Add command.  Called by any thread.
+	 */
+	void add(AsyncCommand command) {
+		if (overflow.isEmpty()) {
+			long pos = claim(1);
+			
+			if (pos >= 0) {
+				publish(pos, command);
+				return;
+			}
+		}
+		overflow.add(command);
+	}
+
+	/**
+	 * Add commands[offset] to commands[offset + length - 1].  Called by any thread.
+	 */
+	void add(AsyncCommand[] list, int offset, int length) {
+		while (length > 0 && overflow.isEmpty()) {
+			int count = Math.min(length, capacity);
+			long pos = claim(count);
+			
+			if (pos < 0) {
+				break;
+			}
+			
+			for (int i = 0; i < count; i++) {
+				publish(pos + i, list[offset + i]);
+			}
+			offset += count;
+			length -= count;
+		}
+		
+		// Ring is full or earlier commands overflowed.  Keep remaining commands in order
+		// in the overflow queue.
+		for (int i = 0; i < length; i++) {
+			overflow.add(list[offset + i]);
+		}
+	}
+
+	/**
+	 * Remove next command or return null if empty.  Only called by the selector thread.
+	 */
+	AsyncCommand poll() {
+		int index = (int)(head & mask);
+		
+		if (sequences.get(index) == head + 1) {
+			AsyncCommand command = commands.get(index);
+			commands.lazySet(index, null);
+			sequences.lazySet(index, head + capacity);
+			head++;
+			return command;
+		}
+		
+		if (head != tail.get()) {
+			// Next slot is claimed but not yet published.  Later commands, including
+			// overflow commands, are returned after it on a later poll.
+			return null;
+		}
+		return overflow.poll();
+	}
+
+	/**
+	 * Claim count consecutive slots.  Return first position or -1 if the ring
+	 * does not have count free slots.
+	 */
+	private long claim(int count) {
+		while (true) {
+			long pos = tail.get();
+			long last = pos + count - 1;
+			
+			// Slots are freed in order, so the batch fits if its last slot is free.
+			long seq = sequences.get((int)(last & mask));
+			
+			if (seq < last) {
+				return -1;
+			}
+			
+			if (seq == last && tail.compareAndSet(pos, pos + count)) {
+				return pos;
+			}
+		}
+	}
+
+	private void publish(long pos, AsyncCommand command) {
+		int index = (int)(pos & mask);
+		commands.lazySet(index, command);
+		sequences.set(index, pos + 1);
+	}
+}
@@ -83,6 +83,20 @@ public interface IAsyncClient extends IAerospikeClient {
 	public void put(WritePolicy policy, WriteListener listener, Key key, Bin... bins)
 		throws AerospikeException;
 
+	/**
+	 * Asynchronously write multiple records.  Each record is written by a separate
+	 * put command, but the commands are handed to the channel selector in one batch.
+	 * The listener is notified once per key.
+	 * 
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param listener				where to send results, pass in null for fire and forget
+	 * @param keys					unique record identifiers
+	 * @param bins					bin name/value pairs for each key, bins[i] is written to keys[i]
+	 * @throws AerospikeException	if queue is full
+	 */
+	public void put(WritePolicy policy, WriteListener listener, Key[] keys, Bin[][] bins)
+		throws AerospikeException;
+
 	//-------------------------------------------------------
 	// String Operations
 	//-------------------------------------------------------
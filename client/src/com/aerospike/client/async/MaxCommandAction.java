@@ -34,4 +34,14 @@ public enum MaxCommandAction {
 	 * Block until a previous command completes. 
 	 */
 	BLOCK,
+
+	/**
+	 * Queue command until a previous command completes.  The calling thread never blocks.
+	 * Queued commands are started in round-robin order across nodes.  Commands that reach
+	 * their timeout while queued fail without being sent.  Commands are rejected when
+	 * {@link AsyncClientPolicy#asyncMaxQueuedCommands} commands are already queued.
+	 * Node concurrency limits are handled separately by
+	 * {@link com.aerospike.client.policy.ClientPolicy#adaptiveLimitAction}.
+	 */
+	QUEUE,
 }
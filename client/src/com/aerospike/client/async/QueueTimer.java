@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Deadlines of commands waiting in a queue before they are sent.  Queued commands can be
+ * added by any thread, so they can not use a selector's timing wheel.
+ * <p>
+ * Commands are not removed when they leave their queue.  When a deadline is reached,
+ * the command itself decides if it is still queued and has expired.  Commands are
+ * expired by one selector thread.
+ */
+final class QueueTimer {
+	private static final Comparator<AsyncCommand> DeadlineComparator = new Comparator<AsyncCommand>() {
+		@Override
+		public int compare(AsyncCommand c1, AsyncCommand c2) {
+			return (c1.queueDeadline < c2.queueDeadline)? -1 : (c1.queueDeadline == c2.queueDeadline)? 0 : 1;
+		}
+	};
+
+	private final PriorityQueue<AsyncCommand> queue = new PriorityQueue<AsyncCommand>(64, DeadlineComparator);
+	private final ArrayDeque<AsyncCommand> expired = new ArrayDeque<AsyncCommand>();
+	private volatile long nextDeadline = Long.MAX_VALUE;
+	private volatile SelectorManager manager;
+
+	/**
+	 * Set selector that expires commands.
+	 */
+	void setSelectorManager(SelectorManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Track queued command's deadline.  Commands without a timeout are not tracked.
+	 */
+	void add(AsyncCommand command) {
+		long deadline = command.getQueueDeadline();
+
+		if (deadline == 0) {
+			return;
+		}
+
+		boolean wakeup = false;
+
+		synchronized (this) {
+			if (command.inQueueTimer) {
+				// Already tracked.  The command is checked again when the old deadline is reached.
+				return;
+			}
+			command.inQueueTimer = true;
+			command.queueDeadline = deadline;
+			queue.add(command);
+
+			if (deadline < nextDeadline) {
+				nextDeadline = deadline;
+				wakeup = true;
+			}
+		}
+
+		if (wakeup) {
+			// The selector may be waiting without a timeout.
+			SelectorManager m = manager;
+
+			if (m != null) {
+				m.wakeup();
+			}
+		}
+	}
+
+	/**
+	 * Expire commands whose deadline has been reached.  Called by the selector thread.
+	 */
+	void expire(long now) {
+		if (now < nextDeadline) {
+			return;
+		}
+
+		synchronized (this) {
+			AsyncCommand command;
+
+			while ((command = queue.peek()) != null && command.queueDeadline <= now) {
+				queue.poll();
+				command.inQueueTimer = false;
+				expired.addLast(command);
+			}
+			nextDeadline = (command != null)? command.queueDeadline : Long.MAX_VALUE;
+		}
+
+		// Run callbacks outside the lock.
+		AsyncCommand command;
+
+		while ((command = expired.pollFirst()) != null) {
+			if (command.checkQueueTimeout(now)) {
+				// Still queued with a later deadline.
+				add(command);
+			}
+		}
+	}
+
+	/**
+	 * Return milliseconds until the next deadline, or zero if no commands are tracked.
+	 */
+	long getDelay(long now) {
+		long deadline = nextDeadline;
+
+		if (deadline == Long.MAX_VALUE) {
+			return 0;
+		}
+		long delay = deadline - now;
+		return (delay > 0)? delay : 1;
+	}
+}
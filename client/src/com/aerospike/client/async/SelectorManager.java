@@ -33,22 +33,57 @@ import com.aerospike.client.Log;
 import com.aerospike.client.util.Util;
 
 public final class SelectorManager extends Thread implements Closeable {
-    private final ConcurrentLinkedQueue<AsyncCommand> commandQueue = new ConcurrentLinkedQueue<AsyncCommand>();
-    private final ArrayDeque<AsyncCommand> timeoutQueue;
+	// Timing wheel resolution.  Timeouts may fire up to one tick late.
+	private static final int TIMER_TICK_MILLIS = 5;
+	private static final int TIMER_SLOTS = 512;
+	
+    private final CommandRing commandQueue;
+    private final ConcurrentLinkedQueue<AsyncCommand> retryQueue = new ConcurrentLinkedQueue<AsyncCommand>();
+    private final ConcurrentLinkedQueue<SelectionKey> pendingReads = new ConcurrentLinkedQueue<SelectionKey>();
+    private final TimingWheel timer;
+    private final ArrayDeque<AsyncCommand> expired = new ArrayDeque<AsyncCommand>();
+    private final ArrayDeque<AsyncCommand> deferred = new ArrayDeque<AsyncCommand>();
+    private final QueueTimer queueTimer;
     private final Selector selector;
 	private final ExecutorService taskThreadPool;
+	private final int index;
     private final AtomicBoolean awakened = new AtomicBoolean();
     private final long selectorTimeout;
 	private volatile boolean valid;
+	private boolean processingKeys;
     
-    public SelectorManager(AsyncClientPolicy policy, SelectorProvider provider) throws IOException {
+    /**
+     * Create selector.  If queueTimer is not null, this selector also expires commands
+     * that are waiting in a queue.
+     */
+    public SelectorManager(AsyncClientPolicy policy, SelectorProvider provider, int index, QueueTimer queueTimer) throws IOException {
+    	this.index = index;
+    	this.queueTimer = queueTimer;
     	this.selectorTimeout = policy.asyncSelectorTimeout;
     	this.taskThreadPool = policy.asyncTaskThreadPool;
+    	this.commandQueue = new CommandRing(policy.asyncMaxCommands);
     	selector = provider.openSelector();
-    	timeoutQueue = new ArrayDeque<AsyncCommand>(policy.asyncMaxCommands);
+    	timer = new TimingWheel(TIMER_SLOTS, TIMER_TICK_MILLIS, System.currentTimeMillis());
     }
     
+    /**
+     * Return position of this selector in the cluster's selectors.  Each node keeps
+     * a separate connection pool for every selector.
+     */
+    public int getIndex() {
+    	return index;
+    }
+    
+    /**
+     * Register command with the selector.  Commands started in this selector's thread
+     * are registered immediately, or after the selected keys have been processed.
+     * Other threads queue the command and wake the selector.
+     */
     public void execute(AsyncCommand command) {
+    	if (Thread.currentThread() == this) {
+    		registerLocal(command);
+    		return;
+    	}
     	commandQueue.add(command);
     	
         if (awakened.compareAndSet(false, true)) {
@@ -56,8 +91,60 @@ public final class SelectorManager extends Thread implements Closeable {
         }
     }
     
+    /**
+     * Register commands[offset] to commands[offset + length - 1] with the selector.
+     * Other threads queue the whole batch and wake the selector at most once.
+     */
+    public void execute(AsyncCommand[] commands, int offset, int length) {
+    	if (Thread.currentThread() == this) {
+    		for (int i = 0; i < length; i++) {
+    			registerLocal(commands[offset + i]);
+    		}
+    		return;
+    	}
+    	commandQueue.add(commands, offset, length);
+    	
+        if (awakened.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+    
+    /**
+     * Run command retry after its retry time has been reached.
+     */
+    public void schedule(AsyncCommand command) {
+    	if (Thread.currentThread() == this) {
+    		timer.schedule(command, command.retryTime);
+    		return;
+    	}
+    	retryQueue.add(command);
+    	
+        if (awakened.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+    
 	public void wakeup() {
-		selector.wakeup();
+		// The selector thread sees interest changes on its next select.
+		if (Thread.currentThread() != this) {
+			selector.wakeup();
+		}
+	}
+	
+	/**
+	 * Read key's connection on the next selector iteration even if the socket is not
+	 * readable.  Used when TLS input has already been received and decrypted.
+	 */
+	public void addPendingRead(SelectionKey key) {
+		pendingReads.add(key);
+		
+		if (Thread.currentThread() == this) {
+			return;
+		}
+		
+        if (awakened.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
 	}
 
     public void run() {
@@ -80,86 +167,198 @@ public final class SelectorManager extends Thread implements Closeable {
     }
     
     private void runCommands() throws Exception {
+    	addRetries();
     	checkTimeouts();
     	registerCommands();
     	awakened.set(false);
-        selector.select(selectorTimeout);
+    	
+    	// Wake up in time for the next timer tick when commands are scheduled.
+    	long now = System.currentTimeMillis();
+    	long timeout = selectorTimeout;
+    	long tickDelay = timer.getTickDelay(now);
+    	
+    	if (tickDelay > 0 && (timeout == 0 || tickDelay < timeout)) {
+    		timeout = tickDelay;
+    	}
+    	
+    	if (queueTimer != null) {
+    		long queueDelay = queueTimer.getDelay(now);
+    		
+    		if (queueDelay > 0 && (timeout == 0 || queueDelay < timeout)) {
+    			timeout = queueDelay;
+    		}
+    	}
+    	
+    	if (pendingReads.isEmpty()) {
+    		selector.select(timeout);
+    	}
+    	else {
+    		// Buffered TLS input is ready now.  Do not wait for socket events.
+    		selector.selectNow();
+    	}
         
         if (awakened.get()) {
             selector.wakeup();
         }
         
         final Set<SelectionKey> keys = selector.selectedKeys();
-
-        if (keys.isEmpty()) {
-            return;
-        }
+        processingKeys = true;
         
         try {
-	        Iterator<SelectionKey> iter = keys.iterator();
-	        
-	        while (valid && iter.hasNext()) {
-	        	SelectionKey key = iter.next();
-
-	        	if (! key.isValid()) {
-	        		continue;
-	            }	        	
-	        	processKey(key);
-	        }
+        	if (! keys.isEmpty()) {
+		        try {
+			        Iterator<SelectionKey> iter = keys.iterator();
+			        
+			        while (valid && iter.hasNext()) {
+			        	SelectionKey key = iter.next();
+		
+			        	if (! key.isValid()) {
+			        		continue;
+			            }	        	
+			        	processKey(key, key.readyOps());
+			        }
+		        }
+		        finally {
+		        	keys.clear();
+		        }
+        	}
+	        runPendingReads();
         }
         finally {
-        	keys.clear();
+        	processingKeys = false;
+        	registerDeferred();
         }
     }
     
+    private void runPendingReads() {
+    	// Only process keys queued before this call.  Keys queued again are
+    	// processed on the next iteration, so sockets are still polled.
+    	int count = pendingReads.size();
+    	SelectionKey key;
+    	
+    	while (valid && count-- > 0 && (key = pendingReads.poll()) != null) {
+    		if (key.isValid() && key.attachment() instanceof AsyncCommand && (key.interestOps() & SelectionKey.OP_READ) != 0) {
+    			processKey(key, SelectionKey.OP_READ);
+    		}
+    	}
+    }
+    
     private void registerCommands() {
     	AsyncCommand command;
     	
     	while ((command = commandQueue.poll()) != null) {
-	    	try {
-	    		if (command.policy.timeout > 0) {
-		    		if (command.checkTimeout()) {
-		    			// The command should only be added to the timeout
-		    			// queue once because retries are not supported.
-		    			timeoutQueue.addLast(command);
-		    		}
-		    		else {
-		    			continue;
-		    		}
-	    		}	    		
-		    	command.conn.register(command, selector);
-	    	}
-    		catch (Exception e) {
-            	command.onNetworkError(new AerospikeException(e));
-    		}	    	
+    		registerCommand(command);
     	}    	
     }
+    
+    /**
+     * Register command started in this selector's thread.  A callback may reuse a pooled
+     * connection whose key is already selected with a stale ready set, so commands started
+     * while keys are processed are registered after the selected keys have been cleared.
+     */
+    private void registerLocal(AsyncCommand command) {
+    	if (processingKeys) {
+    		deferred.addLast(command);
+    		return;
+    	}
+    	registerCommand(command);
+    }
+    
+    private void registerDeferred() {
+    	AsyncCommand command;
+    	
+    	while ((command = deferred.pollFirst()) != null) {
+    		registerCommand(command);
+    	}
+    }
+    
+    private void registerCommand(AsyncCommand command) {
+    	try {
+    		if (command.useTimeoutQueue()) {
+	    		if (command.checkTimeout()) {
+	    			timer.schedule(command, command.getTimerDeadline());
+	    		}
+	    		else {
+	    			return;
+	    		}
+    		}	    		
+	    	command.conn.register(command, selector);
+    	}
+		catch (Exception e) {
+        	command.onNetworkError(new AerospikeException(e));
+		}	    	
+    }
 
+    /**
+     * Schedule retries queued by other threads on the timer.
+     */
+    private void addRetries() {
+    	AsyncCommand command;
+    	
+    	while ((command = retryQueue.poll()) != null) {
+    		timer.schedule(command, command.retryTime);
+    	}
+    }
+
+    /**
+     * Run delayed retries and check timeouts of commands whose timer has expired.
+     * Only expired commands are examined.
+     */
     private void checkTimeouts() {
-    	AsyncCommand last = timeoutQueue.peekLast();
+    	long now = System.currentTimeMillis();
+    	
+    	if (queueTimer != null) {
+    		queueTimer.expire(now);
+    	}
+    	timer.expire(now, expired);
+    	
     	AsyncCommand command;
    	
-    	while ((command = timeoutQueue.pollFirst()) != null) {
-    		if (command.checkTimeout()) {
-    			timeoutQueue.addLast(command);
+    	while ((command = expired.pollFirst()) != null) {
+    		if (command.retryTime > 0) {
+    			command.retryTime = 0;
+    			command.executeRetry();
+    			continue;
     		}
     		
-    		if (command == last) {
-    			break;
+    		if (command.checkTimeout()) {
+    			// Hedge time passed or timeout delay started.  Check again at the next deadline.
+    			timer.schedule(command, command.getTimerDeadline());
     		}
     	}
     }
 
-    private void processKey(SelectionKey key) {
-		AsyncCommand command = (AsyncCommand)key.attachment();
+    private void processKey(SelectionKey key, int ops) {
+		Object attachment = key.attachment();
+		
+		if (! (attachment instanceof AsyncCommand)) {
+			if (attachment != null) {
+				// Idle pooled connection is readable.
+				((AsyncConnection)attachment).checkIdle();
+			}
+			return;
+		}
+		
+		AsyncCommand command = (AsyncCommand)attachment;
 
 		try {
-        	int ops = key.readyOps();
-    	
-        	if ((ops & SelectionKey.OP_READ) != 0) {
+        	if ((ops & SelectionKey.OP_CONNECT) != 0) {
+        		command.conn.finishConnect();
+        	}
+        	else if (command.conn.inHandshake()) {
+        		// TLS handshake runs in this selector's thread.
+        		command.conn.handshake();
+        	}
+        	else if ((ops & SelectionKey.OP_READ) != 0) {
         		if (taskThreadPool == null || command.inAuthenticate) {
         			// Read in this selector's thread.
         			command.read();
+        			
+        			AsyncConnection conn = command.conn;
+        			
+        			if (conn != null && conn.hasPendingRead()) {
+        				pendingReads.add(key);
+        			}
         		}
         		else {
         			// Offload read and user callback to a task pool thread.
@@ -170,9 +369,6 @@ public final class SelectorManager extends Thread implements Closeable {
         	else if ((ops & SelectionKey.OP_WRITE) != 0) {
         		command.write();
         	}
-        	else if ((ops & SelectionKey.OP_CONNECT) != 0) {
-        		command.conn.finishConnect();
-        	}
         }
         catch (AerospikeException.Connection ac) {
         	command.onNetworkError(ac);
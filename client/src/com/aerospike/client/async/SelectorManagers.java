@@ -29,14 +29,17 @@ public final class SelectorManagers implements Closeable {
 	private final SelectorManager[] managers;
     private final AtomicInteger current = new AtomicInteger();
 	
-	public SelectorManagers(AsyncClientPolicy policy) throws AerospikeException {
+	/**
+	 * Create selectors.  The first selector expires commands tracked by queueTimer.
+	 */
+	public SelectorManagers(AsyncClientPolicy policy, QueueTimer queueTimer) throws AerospikeException {
 		managers = new SelectorManager[policy.asyncSelectorThreads];
 		
 		SelectorProvider provider = SelectorProvider.provider();
 		
 		for (int i = 0; i < policy.asyncSelectorThreads; i++) {
 			try {
-				managers[i] = new SelectorManager(policy, provider);
+				managers[i] = new SelectorManager(policy, provider, i, (i == 0)? queueTimer : null);
 			}
 			catch (IOException ioe) {
                 for (int j = 0; j < i; j++) {
@@ -46,6 +49,8 @@ public final class SelectorManagers implements Closeable {
 			}
 		}
 		
+		queueTimer.setSelectorManager(managers[0]);
+		
 		int count = 0;
 		
 		for (SelectorManager manager : managers) {
@@ -56,10 +61,29 @@ public final class SelectorManagers implements Closeable {
 		}
 	}
 		
+	/**
+	 * Return selector manager for a new command.  Commands started from one of these
+	 * selector threads stay on that selector, so they can be registered without queueing.
+	 * Other threads are assigned selectors in round-robin order.
+	 */
 	public SelectorManager next() {
+		Thread thread = Thread.currentThread();
+		
+		if (thread instanceof SelectorManager) {
+			SelectorManager manager = (SelectorManager)thread;
+			int index = manager.getIndex();
+			
+			if (index < managers.length && managers[index] == manager) {
+				return manager;
+			}
+		}
         return managers[Math.abs(current.getAndIncrement() % managers.length)];
 	}
 	
+	public int size() {
+		return managers.length;
+	}
+	
 	public void close() {		
 		for (SelectorManager manager : managers) {
 			manager.close();
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import java.util.ArrayDeque;
+
+/**
+ * Hashed timing wheel used by a selector thread to track command timeouts, hedge times
+ * and delayed retries.
+ * <p>
+ * Time is divided into ticks.  A command scheduled for a deadline is placed in the slot
+ * of the first tick at or after the deadline, so scheduling is O(1) and each tick only
+ * examines the commands in its own slot.  Deadlines more than one wheel revolution away
+ * stay in their slot until the revolution in which they expire.  Commands never expire
+ * early, but may expire up to one tick late.
+ * <p>
+ * This class is not thread safe.  It must only be accessed by its selector thread.
+ */
+final class TimingWheel {
+	private final ArrayDeque<AsyncCommand>[] slots;
+	private final int mask;
+	private final long tickMillis;
+	private long currentTick;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	TimingWheel(int slotCount, long tickMillis, long now) {
+		// Round slot count up to a power of 2.
+		int count = Integer.highestOneBit(Math.max(slotCount, 2) - 1) << 1;
+		
+		this.slots = (ArrayDeque<AsyncCommand>[])new ArrayDeque<?>[count];
+		this.mask = count - 1;
+		this.tickMillis = tickMillis;
+		this.currentTick = now / tickMillis;
+		
+		for (int i = 0; i < count; i++) {
+			slots[i] = new ArrayDeque<AsyncCommand>();
+		}
+	}
+
+	/**
+	 * Schedule command to expire at deadline in milliseconds.  A command can only be
+	 * scheduled once until it expires.
+	 */
+	void schedule(AsyncCommand command, long deadline) {
+		if (command.timerTick != 0) {
+			// Already scheduled.  The existing entry will expire and be rescheduled.
+			return;
+		}
+		
+		long tick = (deadline + tickMillis - 1) / tickMillis;
+		
+		if (tick <= currentTick) {
+			// Deadline has already passed.  Expire on the next tick.
+			tick = currentTick + 1;
+		}
+		command.timerTick = tick;
+		slots[(int)(tick & mask)].addLast(command);
+		size++;
+	}
+
+	/**
+	 * Move commands whose deadline has been reached to expired.
+	 */
+	void expire(long now, ArrayDeque<AsyncCommand> expired) {
+		long target = now / tickMillis;
+
+		if (size == 0) {
+			// Skip idle ticks.
+			if (currentTick < target) {
+				currentTick = target;
+			}
+			return;
+		}
+
+		while (currentTick < target) {
+			currentTick++;
+			
+			ArrayDeque<AsyncCommand> slot = slots[(int)(currentTick & mask)];
+			int count = slot.size();
+			
+			for (int i = 0; i < count; i++) {
+				AsyncCommand command = slot.pollFirst();
+				
+				if (command.timerTick <= currentTick) {
+					command.timerTick = 0;
+					expired.addLast(command);
+					size--;
+				}
+				else {
+					// Expires in a later revolution.
+					slot.addLast(command);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return milliseconds until the next tick, or zero if no commands are scheduled.
+	 */
+	long getTickDelay(long now) {
+		if (size == 0) {
+			return 0;
+		}
+		long delay = (currentTick + 1) * tickMillis - now;
+		return (delay > 0)? delay : 1;
+	}
+
+	int size() {
+		return size;
+	}
+}
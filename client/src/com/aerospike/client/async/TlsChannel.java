@@ -0,0 +1,372 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import com.aerospike.client.cluster.TlsContext;
+
+/**
+ * TLS layer for an asynchronous socket channel.  The handshake, reads and writes never
+ * block when the channel is in non-blocking mode.  Encrypted and decrypted data is
+ * buffered in direct buffers that are returned to the cluster pool on close.
+ */
+final class TlsChannel {
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private final SocketChannel channel;
+	private final SSLEngine engine;
+	private final AsyncCluster cluster;
+	private final TlsContext context;
+	private final String tlsName;
+	
+	// Encrypted bytes read from socket.  Kept in write mode.
+	private ByteBuffer netIn;
+	
+	// Encrypted bytes waiting to be written to socket.  Kept in read mode.
+	private ByteBuffer netOut;
+	
+	// Decrypted bytes not yet consumed by a command.  Kept in read mode.
+	private ByteBuffer appIn;
+	
+	private final long beginMillis;
+	private final long beginNanos;
+	private boolean handshakeComplete;
+	private boolean underflow;
+	private boolean closed;
+
+	TlsChannel(AsyncCluster cluster, SocketChannel channel, InetSocketAddress address, String tlsName) throws Exception {
+		this.cluster = cluster;
+		this.channel = channel;
+		this.context = cluster.getTlsContext();
+		this.tlsName = tlsName;
+		
+		// The node address identifies the session to resume.
+		engine = context.createEngine(address);
+
+		SSLSession session = engine.getSession();
+		netIn = cluster.getTlsBuffer(session.getPacketBufferSize());
+		netOut = cluster.getTlsBuffer(session.getPacketBufferSize());
+		netOut.flip();
+		appIn = cluster.getTlsBuffer(session.getApplicationBufferSize());
+		appIn.flip();
+		beginMillis = System.currentTimeMillis();
+		beginNanos = System.nanoTime();
+		engine.beginHandshake();
+	}
+
+	boolean isHandshakeComplete() {
+		return handshakeComplete;
+	}
+
+	/**
+	 * Advance handshake.  Return true if the handshake has completed.  Otherwise, the
+	 * channel should wait for {@link #getHandshakeOps()}.
+	 */
+	boolean handshake() throws Exception {
+		while (true) {
+			if (! flush()) {
+				return false;
+			}
+			
+			HandshakeStatus status = engine.getHandshakeStatus();
+
+			switch (status) {
+			case NEED_WRAP:
+				wrap(EMPTY);
+				break;
+				
+			case NEED_UNWRAP:
+				SSLEngineResult result = unwrap();
+
+				if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW || 
+					(result.bytesConsumed() == 0 && result.bytesProduced() == 0)) {
+					if (! readNet()) {
+						return false;
+					}
+				}
+				break;
+				
+			case NEED_TASK:
+				runTasks();
+				break;
+
+			case FINISHED:
+			case NOT_HANDSHAKING:
+				context.onHandshake(engine.getSession(), tlsName, beginMillis, beginNanos);
+				handshakeComplete = true;
+				return true;
+				
+			default:
+				throw new SSLException("Unexpected TLS handshake status: " + status);
+			}
+		}
+	}
+
+	/**
+	 * Return selection key operation the handshake is waiting on.
+	 */
+	int getHandshakeOps() {
+		return netOut.hasRemaining()? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+	}
+
+	/**
+	 * Encrypt and write byteBuffer.  Return true when all data has been written
+	 * to the socket.
+	 */
+	boolean write(ByteBuffer byteBuffer) throws IOException {
+		while (true) {
+			if (! flush()) {
+				return false;
+			}
+			
+			if (! byteBuffer.hasRemaining()) {
+				return true;
+			}
+			wrap(byteBuffer);
+		}
+	}
+
+	/**
+	 * Read and decrypt till byteBuffer limit reached or received would-block.
+	 */
+	boolean read(ByteBuffer byteBuffer) throws IOException {
+		while (byteBuffer.hasRemaining()) {
+			if (appIn.hasRemaining()) {
+				transfer(appIn, byteBuffer);
+				continue;
+			}
+
+			SSLEngineResult result = unwrap();
+			
+			if (result.getStatus() == SSLEngineResult.Status.OK && 
+				(result.bytesConsumed() > 0 || result.bytesProduced() > 0)) {
+				checkHandshakeStatus();
+				continue;
+			}
+
+			if (! readNet()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Does the connection have input that can be processed without waiting for the socket.
+	 * The selector does not report these bytes as readable.
+	 */
+	boolean hasBufferedInput() {
+		return appIn.hasRemaining() || (netIn.position() > 0 && ! underflow);
+	}
+
+	/**
+	 * Return true if socket is connected and has no unread data.  Records that do not
+	 * contain application data, like post-handshake messages, are consumed.
+	 */
+	boolean isValid() {
+		try {
+			if (appIn.hasRemaining()) {
+				return false;
+			}
+			
+			if (channel.read(netIn) < 0) {
+				return false;
+			}
+
+			while (netIn.position() > 0) {
+				SSLEngineResult result = unwrap();
+				
+				// Application data or a partial record is not expected on an idle connection.
+				if (appIn.hasRemaining() || result.getStatus() != SSLEngineResult.Status.OK || result.bytesConsumed() == 0) {
+					return false;
+				}
+				checkHandshakeStatus();
+			}
+			return true;
+		}
+		catch (Exception e) {
+			return false;
+		}
+	}
+
+	private boolean readNet() throws IOException {
+		if (! netIn.hasRemaining()) {
+			// Record is larger than the buffer.
+			netIn = enlarge(netIn, engine.getSession().getPacketBufferSize(), false);
+		}
+
+		int len = channel.read(netIn);
+
+		if (len < 0) {
+			throw new EOFException();
+		}
+		
+		if (len == 0) {
+			return false;
+		}
+		underflow = false;
+		return true;
+	}
+
+	private boolean flush() throws IOException {
+		while (netOut.hasRemaining()) {
+			if (channel.write(netOut) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void wrap(ByteBuffer src) throws IOException {
+		while (true) {
+			netOut.compact();
+			SSLEngineResult result;
+			
+			try {
+				result = engine.wrap(src, netOut);
+			}
+			finally {
+				netOut.flip();
+			}
+
+			switch (result.getStatus()) {
+			case OK:
+				if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+					runTasks();
+				}
+				return;
+				
+			case BUFFER_OVERFLOW:
+				netOut = enlarge(netOut, engine.getSession().getPacketBufferSize(), true);
+				break;
+				
+			default:
+				throw new EOFException("TLS connection closed");
+			}
+		}
+	}
+
+	private SSLEngineResult unwrap() throws IOException {
+		while (true) {
+			netIn.flip();
+			appIn.compact();
+			SSLEngineResult result;
+			
+			try {
+				result = engine.unwrap(netIn, appIn);
+			}
+			finally {
+				netIn.compact();
+				appIn.flip();
+			}
+
+			switch (result.getStatus()) {
+			case OK:
+				underflow = false;
+				
+				if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+					runTasks();
+				}
+				return result;
+				
+			case BUFFER_UNDERFLOW:
+				underflow = true;
+				return result;
+				
+			case BUFFER_OVERFLOW:
+				appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize(), true);
+				break;
+				
+			default:
+				throw new EOFException("TLS connection closed");
+			}
+		}
+	}
+
+	private void checkHandshakeStatus() throws SSLException {
+		HandshakeStatus status = engine.getHandshakeStatus();
+		
+		if (status == HandshakeStatus.NEED_TASK) {
+			runTasks();
+		}
+		else if (status == HandshakeStatus.NEED_WRAP) {
+			// Server initiated renegotiation is not supported.
+			throw new SSLException("TLS renegotiation not supported");
+		}
+	}
+
+	private void runTasks() {
+		// Handshake tasks are short computations, so run them in the selector thread.
+		Runnable task;
+		
+		while ((task = engine.getDelegatedTask()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Replace buffer with a larger pooled buffer, preserving its contents.
+	 */
+	private ByteBuffer enlarge(ByteBuffer buffer, int size, boolean readMode) {
+		ByteBuffer larger = cluster.getTlsBuffer(Math.max(size, buffer.capacity() * 2));
+		
+		if (! readMode) {
+			buffer.flip();
+		}
+		larger.put(buffer);
+		
+		if (readMode) {
+			larger.flip();
+		}
+		cluster.putTlsBuffer(buffer);
+		return larger;
+	}
+
+	private static void transfer(ByteBuffer src, ByteBuffer dst) {
+		int len = Math.min(src.remaining(), dst.remaining());
+		int limit = src.limit();
+		src.limit(src.position() + len);
+		dst.put(src);
+		src.limit(limit);
+	}
+
+	/**
+	 * Return buffers to pool.  The channel itself is closed by the caller.
+	 */
+	void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		engine.closeOutbound();
+		cluster.putTlsBuffer(netIn);
+		cluster.putTlsBuffer(netOut);
+		cluster.putTlsBuffer(appIn);
+	}
+}
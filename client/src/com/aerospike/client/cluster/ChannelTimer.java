@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.aerospike.client.util.Util;
+
+/**
+ * Close socket channels whose read deadline has passed.  Blocking channel reads have no
+ * timeout of their own, so one daemon thread checks the deadlines of all open channels
+ * every few milliseconds.  The thread exits when no channels are open.
+ */
+final class ChannelTimer implements Runnable {
+	private static final int INTERVAL_MILLIS = 5;
+	private static final Set<SyncChannel> channels = Collections.newSetFromMap(new ConcurrentHashMap<SyncChannel,Boolean>());
+	private static Thread thread;
+
+	static void add(SyncChannel channel) {
+		synchronized (ChannelTimer.class) {
+			channels.add(channel);
+
+			if (thread == null) {
+				thread = new Thread(new ChannelTimer());
+				thread.setName("channel-timer");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	static void remove(SyncChannel channel) {
+		channels.remove(channel);
+	}
+
+	public void run() {
+		while (true) {
+			Util.sleep(INTERVAL_MILLIS);
+
+			long now = System.currentTimeMillis();
+
+			for (SyncChannel channel : channels) {
+				channel.checkTimeout(now);
+			}
+
+			synchronized (ChannelTimer.class) {
+				if (channels.isEmpty()) {
+					thread = null;
+					return;
+				}
+			}
+		}
+	}
+}
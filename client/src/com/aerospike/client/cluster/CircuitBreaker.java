@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.aerospike.client.Log;
+import com.aerospike.client.listener.CircuitBreakerListener;
+
+/**
+ * Node circuit breaker driven by the ratio of timeouts and network errors to all commands
+ * in a fixed time window.
+ * <p>
+ * The circuit opens when the error percentage in the current window reaches the configured
+ * threshold.  Commands are not sent to the node while the circuit is open.  After the open
+ * period, a single probe command is allowed (half-open).  The circuit closes if the probe
+ * succeeds and opens again if the probe fails.
+ */
+public final class CircuitBreaker {
+	/**
+	 * Circuit breaker state.
+	 */
+	public static enum State {
+		/**
+		 * Commands are allowed.
+		 */
+		CLOSED,
+
+		/**
+		 * Commands are rejected.
+		 */
+		OPEN,
+
+		/**
+		 * A single probe command is allowed.
+		 */
+		HALF_OPEN
+	}
+
+	private final Node node;
+	private final CircuitBreakerListener listener;
+	private final int errorPercent;
+	private final int minCommands;
+	private final int windowMillis;
+	private final int openMillis;
+	private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+	private final AtomicInteger commands = new AtomicInteger();
+	private final AtomicInteger errors = new AtomicInteger();
+	private volatile long windowEnd;
+	private volatile long openEnd;
+
+	public CircuitBreaker(Node node, Cluster cluster) {
+		this.node = node;
+		this.listener = cluster.circuitBreakerListener;
+		this.errorPercent = cluster.circuitBreakerErrorPercent;
+		this.minCommands = cluster.circuitBreakerMinCommands;
+		this.windowMillis = cluster.circuitBreakerWindowMillis;
+		this.openMillis = cluster.circuitBreakerOpenMillis;
+	}
+
+	/**
+	 * Return current state.
+	 */
+	public State getState() {
+		return state.get();
+	}
+
+	/**
+	 * Should commands avoid this node.  This method does not change state, so it
+	 * can be used when choosing between replicas.
+	 */
+	public boolean isOpen() {
+		switch (state.get()) {
+		case OPEN:
+			// Allow probe after open period.
+			return System.currentTimeMillis() < openEnd;
+
+		case HALF_OPEN:
+			// Probe is outstanding.
+			return System.currentTimeMillis() < openEnd + openMillis;
+
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Return if command is allowed.  When the open period has passed, the first caller
+	 * is allowed to send a probe command.
+	 */
+	public boolean allowCommand() {
+		State current = state.get();
+
+		if (current == State.CLOSED) {
+			return true;
+		}
+
+		long now = System.currentTimeMillis();
+
+		if (current == State.OPEN) {
+			return now >= openEnd && transition(State.OPEN, State.HALF_OPEN);
+		}
+
+		// Half-open.  Allow another probe if previous probe never reported a result.
+		if (now >= openEnd + openMillis) {
+			openEnd = now;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record successful command.
+	 */
+	public void onSuccess() {
+		if (errorPercent <= 0) {
+			return;
+		}
+
+		State current = state.get();
+
+		if (current == State.HALF_OPEN) {
+			if (transition(State.HALF_OPEN, State.CLOSED)) {
+				resetWindow(System.currentTimeMillis());
+			}
+			return;
+		}
+
+		if (current == State.CLOSED) {
+			checkWindow(System.currentTimeMillis());
+			commands.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Record timeout or network error.
+	 */
+	public void onError() {
+		if (errorPercent <= 0) {
+			return;
+		}
+
+		State current = state.get();
+		long now = System.currentTimeMillis();
+
+		if (current == State.HALF_OPEN) {
+			// Probe failed.
+			openEnd = now + openMillis;
+			transition(State.HALF_OPEN, State.OPEN);
+			return;
+		}
+
+		if (current == State.CLOSED) {
+			checkWindow(now);
+
+			int total = commands.incrementAndGet();
+			int failed = errors.incrementAndGet();
+
+			if (total >= minCommands && failed * 100L >= (long)errorPercent * total) {
+				openEnd = now + openMillis;
+				transition(State.CLOSED, State.OPEN);
+			}
+		}
+	}
+
+	private void checkWindow(long now) {
+		if (now >= windowEnd) {
+			resetWindow(now);
+		}
+	}
+
+	private void resetWindow(long now) {
+		// Counters are not reset atomically with the window.  A few samples may be
+		// counted in the wrong window, which does not matter for a ratio.
+		windowEnd = now + windowMillis;
+		commands.set(0);
+		errors.set(0);
+	}
+
+	private boolean transition(State oldState, State newState) {
+		if (! state.compareAndSet(oldState, newState)) {
+			return false;
+		}
+
+		if (Log.infoEnabled() && newState != State.HALF_OPEN) {
+			Log.info("Node " + node + " circuit breaker " + oldState + " -> " + newState);
+		}
+
+		if (listener != null) {
+			try {
+				listener.onStateChange(node, oldState, newState);
+			}
+			catch (Exception e) {
+				if (Log.warnEnabled()) {
+					Log.warn("Circuit breaker listener failed: " + e);
+				}
+			}
+		}
+		return true;
+	}
+}
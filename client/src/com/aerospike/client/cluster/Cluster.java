@@ -22,9 +22,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
@@ -34,9 +35,10 @@ import com.aerospike.client.Log;
 import com.aerospike.client.Value;
 import com.aerospike.client.admin.AdminCommand;
 import com.aerospike.client.command.Buffer;
+import com.aerospike.client.listener.CircuitBreakerListener;
 import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.policy.LimitAction;
 import com.aerospike.client.policy.Replica;
-import com.aerospike.client.policy.TlsPolicy;
 import com.aerospike.client.util.Environment;
 import com.aerospike.client.util.Util;
 
@@ -61,13 +63,13 @@ public class Cluster implements Runnable, Closeable {
 	private volatile Node[] nodes;	
 
 	// Hints for best node for a partition
-	public volatile HashMap<String,AtomicReferenceArray<Node>[]> partitionMap;
+	public volatile Partitions partitions;
 	
 	// IP translations.
 	protected final Map<String,String> ipMap;
 
-    // TLS connection policy.
-	protected final TlsPolicy tlsPolicy;
+    // TLS context shared by all connections.  Null if TLS is disabled.
+	protected final TlsContext tlsContext;
 
     // User name in UTF-8 encoded bytes.
 	protected final byte[] user;
@@ -81,12 +83,25 @@ public class Cluster implements Runnable, Closeable {
 	// Random partition replica index. 
 	private final AtomicInteger replicaIndex;
 
+	// Client wide command counters.
+	private final ClusterStats stats;
+
+	// Client wide limit on retries.
+	final RetryBudget retryBudget;
+
 	// Thread pool used in batch, scan and query commands.
 	private final ExecutorService threadPool;
 	
+	// Thread pool used to send tend info requests to nodes in parallel.
+	// Null when tend requests are sent sequentially by the tend thread.
+	private final ExecutorService tendThreadPool;
+	
 	// Size of node's synchronous connection pool.
 	protected final int connectionQueueSize;
 	
+	// Minimum number of synchronous connections kept open per node.
+	protected final int minConnsPerNode;
+	
 	// Initial connection timeout.
 	private final int connectionTimeout;
 
@@ -106,9 +121,37 @@ public class Cluster implements Runnable, Closeable {
 	// Request prole replicas in addition to master replicas?
 	protected boolean requestProleReplicas;
 
+	// Request rack ids with partition replicas?
+	protected final boolean rackAware;
+
+	// Rack where this client resides.
+	protected final int rackId;
+
+	// Percentage of adaptive replica reads that are distributed round-robin.
+	private final int adaptiveExplorePercent;
+
+	// Node circuit breaker settings.
+	protected final int circuitBreakerErrorPercent;
+	protected final int circuitBreakerMinCommands;
+	protected final int circuitBreakerWindowMillis;
+	protected final int circuitBreakerOpenMillis;
+	protected final CircuitBreakerListener circuitBreakerListener;
+
+	// Node adaptive concurrency limit settings.
+	protected final boolean adaptiveLimit;
+	protected final int adaptiveLimitMin;
+	protected final LimitAction adaptiveLimitAction;
+
 	// Should use "services-alternate" instead of "services" in info request?
 	protected final boolean useServicesAlternate;
 
+	// Use socket channels for command connections.
+	protected final boolean useSocketChannel;
+
+	// Pipelined connection settings.
+	protected final int pipelineDepth;
+	protected final int pipelineConnsPerNode;
+
 	public Cluster(ClientPolicy policy, Host[] hosts) throws AerospikeException {
 		this.clusterName = policy.clusterName;
 
@@ -147,8 +190,12 @@ public class Cluster implements Runnable, Closeable {
 			this.user = null;
 		}
 		
-		tlsPolicy = policy.tlsPolicy;
 		connectionQueueSize = policy.maxConnsPerNode;
+		minConnsPerNode = policy.minConnsPerNode;
+		
+		if (minConnsPerNode > connectionQueueSize) {
+			throw new AerospikeException("Invalid connection range: " + minConnsPerNode + " - " + connectionQueueSize);
+		}
 		connectionTimeout = policy.timeout;
 		maxSocketIdleMillis = 1000 * ((policy.maxSocketIdle <= MaxSocketIdleSecondLimit)? policy.maxSocketIdle : MaxSocketIdleSecondLimit);
 		tendInterval = policy.tendInterval;
@@ -161,15 +208,40 @@ public class Cluster implements Runnable, Closeable {
 			threadPool = policy.threadPool;
 		}
 		sharedThreadPool = policy.sharedThreadPool;
-		requestProleReplicas = policy.requestProleReplicas;
+		
+		if (policy.tendThreads > 1) {
+			tendThreadPool = Executors.newFixedThreadPool(policy.tendThreads, new ThreadDaemonFactory());
+		}
+		else {
+			tendThreadPool = null;
+		}
+		// Rack aware reads need to know all replicas.
+		requestProleReplicas = policy.requestProleReplicas || policy.rackAware;
+		rackAware = policy.rackAware;
+		rackId = policy.rackId;
+		adaptiveExplorePercent = policy.adaptiveExplorePercent;
+		circuitBreakerErrorPercent = policy.circuitBreakerErrorPercent;
+		circuitBreakerMinCommands = policy.circuitBreakerMinCommands;
+		circuitBreakerWindowMillis = policy.circuitBreakerWindowMillis;
+		circuitBreakerOpenMillis = policy.circuitBreakerOpenMillis;
+		circuitBreakerListener = policy.circuitBreakerListener;
+		adaptiveLimit = policy.adaptiveLimit;
+		adaptiveLimitMin = policy.adaptiveLimitMin;
+		adaptiveLimitAction = policy.adaptiveLimitAction;
 		useServicesAlternate = policy.useServicesAlternate;
+		useSocketChannel = policy.useSocketChannel;
+		pipelineDepth = policy.pipelineDepth;
+		pipelineConnsPerNode = Math.max(1, policy.pipelineConnsPerNode);
 		
 		aliases = new HashMap<Host,Node>();
 		nodesMap = new HashMap<String,Node>();
 		nodes = new Node[0];	
-		partitionMap = new HashMap<String,AtomicReferenceArray<Node>[]>();		
+		partitions = new Partitions();		
 		nodeIndex = new AtomicInteger();
 		replicaIndex = new AtomicInteger();
+		stats = new ClusterStats();
+		tlsContext = (policy.tlsPolicy != null)? new TlsContext(policy.tlsPolicy, stats) : null;
+		retryBudget = new RetryBudget(policy.retryBudgetPercent, policy.retryBudgetBurst);
 	}
 	
 	public void initTendThread(boolean failIfNotConnected) throws AerospikeException {		
@@ -303,10 +375,13 @@ public class Cluster implements Runnable, Closeable {
 		}
 
 		// Initialize tend iteration node statistics.
-		Peers peers = new Peers(nodes.length + 16, 16);
+		Peers peers = new Peers(16);
+		
+		// Must copy array reference for copy on write semantics to work.
+		Node[] nodeArray = nodes;
 		
 		// Clear node reference counts.
-		for (Node node : nodes) {
+		for (Node node : nodeArray) {
 			node.referenceCount = 0;
 			node.partitionChanged = false;
 			
@@ -316,7 +391,15 @@ public class Cluster implements Runnable, Closeable {
 		}
 		
 		// Refresh all known nodes.
-		for (Node node : nodes) {
+		final boolean usePeers = peers.usePeers;
+		
+		request(nodeArray, new TendRequest() {
+			public void request(Node node) {
+				node.requestRefresh(usePeers);
+			}
+		});
+		
+		for (Node node : nodeArray) {
 			node.refresh(peers);
 		}
 		
@@ -325,15 +408,46 @@ public class Cluster implements Runnable, Closeable {
 			// Refresh peers for all nodes that responded the first time even if only one node's peers changed.
 			peers.refreshCount = 0;
 			
-			for (Node node : nodes) {
+			request(nodeArray, new TendRequest() {
+				public void request(Node node) {
+					node.requestPeers();
+				}
+			});
+
+			for (Node node : nodeArray) {
 				node.refreshPeers(peers);				
 			}
 		}
 		
 		// Refresh partition map when necessary.
-		for (Node node : nodes) {			
+		ArrayList<Node> changedList = new ArrayList<Node>();
+		
+		for (Node node : nodeArray) {			
 			if (node.partitionChanged) {
-				node.refreshPartitions(peers);
+				changedList.add(node);
+			}
+		}
+		
+		if (changedList.size() > 0) {
+			Node[] changed = changedList.toArray(new Node[changedList.size()]);
+			final Peers tendPeers = peers;
+			
+			request(changed, new TendRequest() {
+				public void request(Node node) {
+					node.requestPartitions(tendPeers);
+				}
+			});
+			
+			// Partition map updates are applied sequentially to a single copy of the partition map.
+			Partitions.Builder builder = new Partitions.Builder(partitions, Node.PARTITIONS);
+			
+			for (Node node : changed) {
+				node.refreshPartitions(builder);
+			}
+			
+			if (builder.isChanged()) {
+				// Publish new partition map snapshot.
+				partitions = builder.build();
 			}
 		}
 
@@ -351,6 +465,50 @@ public class Cluster implements Runnable, Closeable {
 		if (peers.nodes.size() > 0) {
 			addNodes(peers.nodes);
 		}
+		
+		// Reap idle connections and pre-warm connection pools, including pools of nodes just added.
+		request(nodes, new TendRequest() {
+			public void request(Node node) {
+				node.balanceConnections();
+			}
+		});
+	}
+	
+	/**
+	 * Send info requests to nodes.  Requests are sent in parallel when a tend thread pool
+	 * is defined.  Each request only modifies its own node's tend state.  Responses are 
+	 * processed afterwards by the tend thread.
+	 */
+	private final void request(Node[] nodeArray, final TendRequest request) {
+		if (tendThreadPool == null || nodeArray.length <= 1) {
+			for (Node node : nodeArray) {
+				request.request(node);
+			}
+			return;
+		}
+		
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nodeArray.length);
+		
+		for (final Node node : nodeArray) {
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					request.request(node);
+					return null;
+				}
+			});
+		}
+		
+		try {
+			// Wait for all requests to complete.
+			tendThreadPool.invokeAll(tasks);
+		}
+		catch (InterruptedException ie) {
+			throw new AerospikeException("Cluster tend interrupted");
+		}
+	}
+	
+	private static interface TendRequest {
+		public void request(Node node);
 	}
 	
 	private final boolean seedNodes(boolean failIfNotConnected) throws AerospikeException {
@@ -450,7 +608,7 @@ public class Cluster implements Runnable, Closeable {
 					// Check if node responded to info request.
 					if (node.failures == 0) {
 						// Node is alive, but not referenced by other nodes.  Check if mapped.
-						if (! findNodeInPartitionMap(node)) {
+						if (node.getPartitionsOwned() == 0) {
 							// Node doesn't have any partitions mapped to it.
 							// There is no point in keeping it in the cluster.
 							removeList.add(node);							
@@ -467,23 +625,6 @@ public class Cluster implements Runnable, Closeable {
 		return removeList;
 	}
 	
-	private final boolean findNodeInPartitionMap(Node filter) {
-		for (AtomicReferenceArray<Node>[] replicasArray : partitionMap.values()) {
-			for (AtomicReferenceArray<Node> nodeArray : replicasArray) {
-				int max = nodeArray.length();
-				
-				for (int i = 0; i < max; i++) {
-					Node node = nodeArray.get(i);
-					// Use reference equality for performance.
-					if (node == filter) {
-						return true;
-					}
-				}
-			}
-		}
-		return false;
-	}
-	
 	/**
 	 * Add nodes using copy on write semantics.
 	 */
@@ -618,16 +759,21 @@ public class Cluster implements Runnable, Closeable {
 		
 		case RANDOM:
 			return getRandomNode();			
+
+		case PREFER_RACK:
+			return getRackNode(partition);
+
+		case ADAPTIVE:
+			return getAdaptiveNode(partition);
 		}
 	}
 
 	public final Node getMasterNode(Partition partition) throws AerospikeException.InvalidNode {		
-		// Must copy hashmap reference for copy on write semantics to work.
-		HashMap<String,AtomicReferenceArray<Node>[]> map = partitionMap;
-		AtomicReferenceArray<Node>[] replicaArray = map.get(partition.namespace);
+		// Must copy reference for copy on write semantics to work.
+		Node[][] replicas = partitions.getReplicas(partition.namespace);
 		
-		if (replicaArray != null) {
-			Node node = replicaArray[0].get(partition.partitionId);
+		if (replicas != null) {
+			Node node = replicas[0][partition.partitionId];
 			
 			if (node != null && node.isActive()) {
 				return node;
@@ -642,14 +788,13 @@ public class Cluster implements Runnable, Closeable {
 	}
 
 	public final Node getMasterProlesNode(Partition partition) throws AerospikeException.InvalidNode {		
-		// Must copy hashmap reference for copy on write semantics to work.
-		HashMap<String,AtomicReferenceArray<Node>[]> map = partitionMap;
-		AtomicReferenceArray<Node>[] replicaArray = map.get(partition.namespace);
-		
-		if (replicaArray != null) {
-			for (int i = 0; i < replicaArray.length; i++) {
-				int index = Math.abs(replicaIndex.getAndIncrement() % replicaArray.length);						
-				Node node = replicaArray[index].get(partition.partitionId);
+		// Must copy reference for copy on write semantics to work.
+		Node[][] replicas = partitions.getReplicas(partition.namespace);
+		
+		if (replicas != null) {
+			for (int i = 0; i < replicas.length; i++) {
+				int index = Math.abs(replicaIndex.getAndIncrement() % replicas.length);						
+				Node node = replicas[index][partition.partitionId];
 				
 				if (node != null && node.isActive()) {
 					return node;
@@ -664,6 +809,89 @@ public class Cluster implements Runnable, Closeable {
 		return getRandomNode();
 	}
 
+	public final Node getRackNode(Partition partition) throws AerospikeException.InvalidNode {		
+		// Must copy reference for copy on write semantics to work.
+		Node[][] replicas = partitions.getReplicas(partition.namespace);
+		
+		if (replicas != null) {
+			Node master = null;
+			
+			// Replicas are ordered with master first, so the master is preferred
+			// when multiple replicas are in the client's rack.
+			for (int i = 0; i < replicas.length; i++) {
+				Node node = replicas[i][partition.partitionId];
+				
+				if (node != null && node.isActive()) {
+					if (node.hasRack(partition.namespace, rackId)) {
+						return node;
+					}
+					
+					if (i == 0) {
+						master = node;
+					}
+				}
+			}
+			
+			if (master != null) {
+				return master;
+			}
+		}
+		return getRandomNode();
+	}
+
+	public final Node getAdaptiveNode(Partition partition) throws AerospikeException.InvalidNode {		
+		if (adaptiveExplorePercent > 0 && ThreadLocalRandom.current().nextInt(100) < adaptiveExplorePercent) {
+			return getMasterProlesNode(partition);
+		}
+		
+		// Must copy reference for copy on write semantics to work.
+		Node[][] replicas = partitions.getReplicas(partition.namespace);
+		
+		if (replicas != null) {
+			Node best = null;
+			double bestScore = 0.0;
+			
+			for (int i = 0; i < replicas.length; i++) {
+				Node node = replicas[i][partition.partitionId];
+				
+				if (node != null && node.isActive()) {
+					double score = node.getStats().getScore();
+					
+					if (best == null || score < bestScore) {
+						best = node;
+						bestScore = score;
+					}
+				}
+			}
+			
+			if (best != null) {
+				return best;
+			}
+		}
+		return getRandomNode();
+	}
+
+	/**
+	 * Return active node that owns a master or prole replica of the partition, is not the
+	 * excluded node, does not have an open circuit breaker and has not reached its concurrency
+	 * limit.  Return null if no such node exists.
+	 */
+	public final Node getReplicaNode(Partition partition, Node exclude) {
+		// Must copy reference for copy on write semantics to work.
+		Node[][] replicas = partitions.getReplicas(partition.namespace);
+		
+		if (replicas != null) {
+			for (int i = 0; i < replicas.length; i++) {
+				Node node = replicas[i][partition.partitionId];
+				
+				if (node != null && node != exclude && node.isActive() && ! node.isCircuitOpen() && ! node.isLimitReached()) {
+					return node;
+				}
+			}
+		}
+		return null;
+	}
+
 	public final Node getRandomNode() throws AerospikeException.InvalidNode {
 		// Must copy array reference for copy on write semantics to work.
 		Node[] nodeArray = nodes;
@@ -710,17 +938,48 @@ public class Cluster implements Runnable, Closeable {
 		return null;
 	}
 
+	/**
+	 * Return copy of the current partition map, keyed by namespace.  Each namespace maps
+	 * to one node array per replica (0 = master), indexed by partition id.  The copy is
+	 * not updated when partition ownership changes.
+	 * 
+	 * @deprecated	The partitionMap field was replaced by {@link #partitions}.  Use
+	 * 				{@link Partitions#getReplicas(String)} instead, which does not copy.
+	 */
+	@Deprecated
+	@SuppressWarnings("unchecked")
+	public final HashMap<String,AtomicReferenceArray<Node>[]> getPartitionMap() {
+		// Must copy reference for copy on write semantics to work.
+		Partitions p = partitions;
+		int max = p.size();
+		HashMap<String,AtomicReferenceArray<Node>[]> map = new HashMap<String,AtomicReferenceArray<Node>[]>(max * 2);
+		
+		for (int n = 0; n < max; n++) {
+			Node[][] replicas = p.getReplicas(n);
+			AtomicReferenceArray<Node>[] array = (AtomicReferenceArray<Node>[])new AtomicReferenceArray<?>[replicas.length];
+			
+			for (int i = 0; i < replicas.length; i++) {
+				array[i] = new AtomicReferenceArray<Node>(replicas[i]);
+			}
+			map.put(p.getNamespace(n), array);
+		}
+		return map;
+	}
+
 	public final void printPartitionMap() {
-		for (Entry<String,AtomicReferenceArray<Node>[]> entry : partitionMap.entrySet()) {
-			String namespace = entry.getKey();
-			AtomicReferenceArray<Node>[] replicaArray = entry.getValue();
+		// Must copy reference for copy on write semantics to work.
+		Partitions p = partitions;
+		int max = p.size();
+		
+		for (int n = 0; n < max; n++) {
+			String namespace = p.getNamespace(n);
+			Node[][] replicas = p.getReplicas(n);
 			
-			for (int i = 0; i < replicaArray.length; i++) {
-				AtomicReferenceArray<Node> nodeArray = replicaArray[i];
-				int max = nodeArray.length();
+			for (int i = 0; i < replicas.length; i++) {
+				Node[] nodeArray = replicas[i];
 				
-				for (int j = 0; j < max; j++) {
-					Node node = nodeArray.get(j);
+				for (int j = 0; j < nodeArray.length; j++) {
+					Node node = nodeArray[j];
 					
 					if (node != null) {
 						Log.info(namespace + ',' + i + ',' + j + ',' + node);
@@ -736,10 +995,52 @@ public class Cluster implements Runnable, Closeable {
 		}
 	}
 
+	/**
+	 * Return upper bound of each node's adaptive concurrency limit.
+	 */
+	protected int getMaxCommandsPerNode() {
+		return connectionQueueSize;
+	}
+
+	/**
+	 * Should reads be routed to another replica when a node's concurrency limit is reached.
+	 */
+	public final boolean rerouteOnLimit() {
+		return adaptiveLimit && adaptiveLimitAction == LimitAction.REROUTE;
+	}
+
+	/**
+	 * Should commands wait for a permit when a node's adaptive limit has been reached.
+	 */
+	public final boolean waitOnLimit() {
+		return adaptiveLimit && adaptiveLimitAction == LimitAction.WAIT;
+	}
+
 	public final ExecutorService getThreadPool() {
 		return threadPool;
 	}
 
+	public final ClusterStats getStats() {
+		return stats;
+	}
+
+	public final RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	/**
+	 * Take a token from the retry budget.  Return false if the command should not be
+	 * retried because the budget is exhausted.
+	 */
+	public final boolean tryRetry() {
+		if (retryBudget.tryWithdraw()) {
+			stats.addRetry();
+			return true;
+		}
+		stats.addRetryBudgetExhausted();
+		return false;
+	}
+
 	public final int getConnectionTimeout() {
 		return connectionTimeout;
 	}
@@ -757,6 +1058,10 @@ public class Cluster implements Runnable, Closeable {
 			threadPool.shutdown();
 		}
 		
+		if (tendThreadPool != null) {
+			tendThreadPool.shutdownNow();
+		}
+		
 		tendValid = false;
 		tendThread.interrupt();
 		
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client wide command counters.  Counters are cumulative since the client was created.
+ */
+public final class ClusterStats {
+	private final AtomicLong hedgeReads = new AtomicLong();
+	private final AtomicLong hedgesSent = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong retryBudgetExhausted = new AtomicLong();
+	private final AtomicLong tlsHandshakes = new AtomicLong();
+	private final AtomicLong tlsHandshakesResumed = new AtomicLong();
+	private final AtomicLong tlsHandshakeNanos = new AtomicLong();
+	private final AtomicLong bufferHits = new AtomicLong();
+	private final AtomicLong bufferMisses = new AtomicLong();
+	private final AtomicLong bufferReservedBytes = new AtomicLong();
+
+	/**
+	 * Count read that is eligible for hedging ({@link com.aerospike.client.policy.Policy#hedgeDelay} > 0).
+	 */
+	public void addHedgeRead() {
+		hedgeReads.incrementAndGet();
+	}
+
+	/**
+	 * Count hedge read sent to another replica.
+	 */
+	public void addHedgeSent() {
+		hedgesSent.incrementAndGet();
+	}
+
+	/**
+	 * Count hedge read that returned before the original read.
+	 */
+	public void addHedgeWin() {
+		hedgeWins.incrementAndGet();
+	}
+
+	/**
+	 * Count command retry.
+	 */
+	public void addRetry() {
+		retries.incrementAndGet();
+	}
+
+	/**
+	 * Count retry that was not attempted because the retry budget was exhausted.
+	 */
+	public void addRetryBudgetExhausted() {
+		retryBudgetExhausted.incrementAndGet();
+	}
+
+	/**
+	 * Count completed TLS handshake and its elapsed time.
+	 */
+	public void addTlsHandshake(long nanos, boolean resumed) {
+		tlsHandshakes.incrementAndGet();
+		tlsHandshakeNanos.addAndGet(nanos);
+		
+		if (resumed) {
+			tlsHandshakesResumed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Count large async buffer request that was served by a pooled buffer.
+	 */
+	public void addBufferHit() {
+		bufferHits.incrementAndGet();
+	}
+
+	/**
+	 * Count large async buffer request that allocated a new direct buffer.
+	 */
+	public void addBufferMiss(int bytes) {
+		bufferMisses.incrementAndGet();
+		bufferReservedBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Count large async buffer that was released instead of pooled.
+	 */
+	public void addBufferReleased(int bytes) {
+		bufferReservedBytes.addAndGet(-bytes);
+	}
+
+	/**
+	 * Return number of reads that were eligible for hedging.
+	 */
+	public long getHedgeReads() {
+		return hedgeReads.get();
+	}
+
+	/**
+	 * Return number of hedge reads sent.
+	 */
+	public long getHedgesSent() {
+		return hedgesSent.get();
+	}
+
+	/**
+	 * Return number of hedge reads that returned before the original read.
+	 */
+	public long getHedgeWins() {
+		return hedgeWins.get();
+	}
+
+	/**
+	 * Return number of command retries.
+	 */
+	public long getRetries() {
+		return retries.get();
+	}
+
+	/**
+	 * Return number of retries that were not attempted because the retry budget was exhausted.
+	 */
+	public long getRetryBudgetExhausted() {
+		return retryBudgetExhausted.get();
+	}
+
+	/**
+	 * Return number of completed TLS handshakes.
+	 */
+	public long getTlsHandshakes() {
+		return tlsHandshakes.get();
+	}
+
+	/**
+	 * Return number of TLS handshakes that resumed a cached session.
+	 */
+	public long getTlsHandshakesResumed() {
+		return tlsHandshakesResumed.get();
+	}
+
+	/**
+	 * Return total elapsed time of all TLS handshakes in microseconds.
+	 */
+	public long getTlsHandshakeMicros() {
+		return tlsHandshakeNanos.get() / 1000;
+	}
+
+	/**
+	 * Return average TLS handshake time in microseconds.
+	 */
+	public double getTlsHandshakeAverageMicros() {
+		long count = tlsHandshakes.get();
+		return (count > 0)? tlsHandshakeNanos.get() / 1000.0 / count : 0.0;
+	}
+
+	/**
+	 * Return number of large async buffer requests served by a pooled buffer.
+	 */
+	public long getBufferHits() {
+		return bufferHits.get();
+	}
+
+	/**
+	 * Return number of large async buffer requests that allocated a new direct buffer.
+	 */
+	public long getBufferMisses() {
+		return bufferMisses.get();
+	}
+
+	/**
+	 * Return bytes of large async direct buffers that are in use or pooled.
+	 */
+	public long getBufferReservedBytes() {
+		return bufferReservedBytes.get();
+	}
+
+	/**
+	 * Return fraction of eligible reads that sent a hedge read.
+	 */
+	public double getHedgeRate() {
+		long reads = hedgeReads.get();
+		return (reads > 0)? (double)hedgesSent.get() / reads : 0.0;
+	}
+
+	/**
+	 * Return fraction of hedge reads that returned before the original read.
+	 */
+	public double getHedgeWinRate() {
+		long sent = hedgesSent.get();
+		return (sent > 0)? (double)hedgeWins.get() / sent : 0.0;
+	}
+
+	@Override
+	public String toString() {
+		return "hedgeReads=" + hedgeReads.get() + " hedgesSent=" + hedgesSent.get() + " hedgeWins=" + hedgeWins.get() +
+			" retries=" + retries.get() + " retryBudgetExhausted=" + retryBudgetExhausted.get() +
+			" tlsHandshakes=" + tlsHandshakes.get() + " tlsHandshakesResumed=" + tlsHandshakesResumed.get() +
+			" tlsHandshakeMicros=" + getTlsHandshakeMicros() +
+			" bufferHits=" + bufferHits.get() + " bufferMisses=" + bufferMisses.get() +
+			" bufferReservedBytes=" + bufferReservedBytes.get();
+	}
+}
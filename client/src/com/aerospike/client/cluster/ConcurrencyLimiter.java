@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aerospike.client.AerospikeException;
+
+/**
+ * Adaptive limit of concurrent commands on a server node.
+ * <p>
+ * The limit follows additive increase, multiplicative decrease (AIMD).  While average
+ * latency stays within a tolerance of the lowest latency observed, the limit grows by
+ * about one for every limit commands that complete, but only when the current limit
+ * is actually being used.  When latency rises above the tolerance or a command times
+ * out or fails on the network, the limit is cut by a constant ratio.  Cuts are spaced
+ * apart so a burst of failures from the same overload only counts once.
+ */
+public final class ConcurrencyLimiter {
+	private static final double BACKOFF_RATIO = 0.9;
+	private static final double LATENCY_TOLERANCE = 2.0;
+	private static final double BASELINE_ALPHA = 0.001;
+	private static final long DECREASE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long QUEUE_POLL_MILLIS = 10;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong limit;
+	private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+	private volatile double baseline;
+	private volatile int waiters;
+
+	public ConcurrencyLimiter(int minLimit, int maxLimit) {
+		this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+		this.maxLimit = Math.max(1, maxLimit);
+
+		// Start at the static maximum, so the limiter only restricts a node once it struggles.
+		this.limit = new AtomicLong(Double.doubleToRawLongBits(this.maxLimit));
+	}
+
+	/**
+	 * Return current concurrency limit.
+	 */
+	public int getLimit() {
+		return (int)getLimitValue();
+	}
+
+	/**
+	 * Return number of commands currently holding a permit.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Has the concurrency limit been reached.
+	 */
+	public boolean isFull() {
+		return inFlight.get() >= getLimit();
+	}
+
+	/**
+	 * Take permit if limit has not been reached.  Return true if permit was taken.
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int count = inFlight.get();
+
+			if (count >= getLimit()) {
+				return false;
+			}
+
+			if (inFlight.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Take permit, waiting until one becomes available or timeout is reached.
+	 * A timeout of zero waits indefinitely.  Return true if permit was taken.
+	 */
+	public boolean acquire(int timeoutMillis) {
+		if (tryAcquire()) {
+			return true;
+		}
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		synchronized (this) {
+			waiters++;
+
+			try {
+				while (! tryAcquire()) {
+					long wait = QUEUE_POLL_MILLIS;
+
+					if (timeoutMillis > 0) {
+						long remaining = deadline - System.currentTimeMillis();
+
+						if (remaining <= 0) {
+							return false;
+						}
+
+						if (remaining < wait) {
+							wait = remaining;
+						}
+					}
+					// The limit can also grow without a release, so do not wait indefinitely.
+					wait(wait);
+				}
+				return true;
+			}
+			catch (InterruptedException ie) {
+				throw new AerospikeException("Concurrency limit wait interrupted");
+			}
+			finally {
+				waiters--;
+			}
+		}
+	}
+
+	/**
+	 * Return permit.
+	 */
+	public void release() {
+		inFlight.decrementAndGet();
+
+		if (waiters > 0) {
+			synchronized (this) {
+				notify();
+			}
+		}
+	}
+
+	/**
+	 * Adjust limit after successful command with current average latency in microseconds.
+	 */
+	public void onSuccess(double latencyMicros) {
+		double base = baseline;
+
+		if (base == 0.0 || latencyMicros < base) {
+			baseline = latencyMicros;
+		}
+		else {
+			// Let the baseline drift up slowly, so a permanent latency change is eventually accepted.
+			baseline = base + BASELINE_ALPHA * (latencyMicros - base);
+
+			if (latencyMicros > base * LATENCY_TOLERANCE) {
+				decrease();
+				return;
+			}
+		}
+		increase();
+	}
+
+	/**
+	 * Adjust limit after command timeout or network error.
+	 */
+	public void onError() {
+		decrease();
+	}
+
+	private void increase() {
+		while (true) {
+			long bits = limit.get();
+			double value = Double.longBitsToDouble(bits);
+
+			// Do not grow a limit that is not being used.
+			if (value >= maxLimit || inFlight.get() * 2 < value) {
+				return;
+			}
+
+			double newValue = Math.min(maxLimit, value + 1.0 / value);
+
+			if (limit.compareAndSet(bits, Double.doubleToRawLongBits(newValue))) {
+				return;
+			}
+		}
+	}
+
+	private void decrease() {
+		long now = System.nanoTime();
+		long last = lastDecrease.get();
+
+		if (now - last < DECREASE_INTERVAL || ! lastDecrease.compareAndSet(last, now)) {
+			return;
+		}
+
+		while (true) {
+			long bits = limit.get();
+			double value = Double.longBitsToDouble(bits);
+			double newValue = Math.max(minLimit, value * BACKOFF_RATIO);
+
+			if (limit.compareAndSet(bits, Double.doubleToRawLongBits(newValue))) {
+				return;
+			}
+		}
+	}
+
+	private double getLimitValue() {
+		return Double.longBitsToDouble(limit.get());
+	}
+
+	@Override
+	public String toString() {
+		return "limit=" + getLimit() + " inFlight=" + inFlight.get();
+	}
+}
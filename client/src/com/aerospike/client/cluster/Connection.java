@@ -33,7 +33,6 @@ import javax.naming.directory.Attribute;
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.Rdn;
 import javax.net.ssl.SSLSocket;
-import javax.net.ssl.SSLSocketFactory;
 import javax.security.auth.x500.X500Principal;
 
 import com.aerospike.client.AerospikeException;
@@ -48,18 +47,40 @@ public final class Connection implements Closeable {
 	private final Socket socket;
 	private final InputStream in;
 	private final OutputStream out;
+	private final SyncChannel channel;
 	private final long maxSocketIdleMillis;
 	private volatile long lastUsed;
+	private byte[] replayBuffer;
+	private int replayOffset;
+	private int replayLength;
 	
 	public Connection(InetSocketAddress address, int timeoutMillis) throws AerospikeException.Connection {
-		this(null, null, address, timeoutMillis, 55000);
+		this((TlsContext)null, null, address, timeoutMillis, 55000, false);
 	}
 
 	public Connection(TlsPolicy policy, String tlsName, InetSocketAddress address, int timeoutMillis, int maxSocketIdleMillis) throws AerospikeException.Connection {
+		this((policy != null)? TlsContext.getShared(policy) : null, tlsName, address, timeoutMillis, maxSocketIdleMillis, false);
+	}
+
+	/**
+	 * Create connection.  If useChannel is true and TLS is not enabled, the connection
+	 * uses a socket channel with direct buffers instead of socket streams.
+	 */
+	public Connection(TlsContext tls, String tlsName, InetSocketAddress address, int timeoutMillis, int maxSocketIdleMillis, boolean useChannel) throws AerospikeException.Connection {
 		this.maxSocketIdleMillis = maxSocketIdleMillis;
 
 		try {
-			if (policy == null) {
+			if (useChannel && tls == null) {
+				// Do not wait indefinitely on connection if no timeout is specified.
+				// Retry functionality will attempt to reconnect later.
+				channel = new SyncChannel(address, timeoutMillis, (timeoutMillis > 0)? timeoutMillis : 2000);
+				socket = channel.getSocket();
+				in = channel.getInputStream();
+				out = null;
+				lastUsed = System.currentTimeMillis();
+			}
+			else if (tls == null) {
+				channel = null;
 				socket = new Socket();
 			
 				try {
@@ -85,54 +106,43 @@ public final class Connection implements Closeable {
 				}
 			}
 			else {				
-	            SSLSocketFactory sslsocketfactory = (SSLSocketFactory)SSLSocketFactory.getDefault();
-	            SSLSocket sslSocket = (SSLSocket)sslsocketfactory.createSocket(address.getAddress(), address.getPort());
-				socket = sslSocket;
+				channel = null;
+				
+				// Connect plain socket first, so the connect timeout applies.
+				Socket plain = new Socket();
+				SSLSocket sslSocket = null;
 				
 				try {
-					socket.setTcpNoDelay(true);
+					plain.setTcpNoDelay(true);
 					
 					if (timeoutMillis > 0) {
-						socket.setSoTimeout(timeoutMillis);
+						plain.setSoTimeout(timeoutMillis);
 					}
 					else {				
 						// Do not wait indefinitely on connection if no timeout is specified.
 						// Retry functionality will attempt to reconnect later.
 						timeoutMillis = 2000;
 					}
+					plain.connect(address, timeoutMillis);
 					
-					/*
-					String[] protocols = sslSocket.getSupportedProtocols();
-					for (String protocol : protocols) {
-						Log.info("Protocol: " + protocol);
-					}
-					String[] ciphers = sslSocket.getSupportedCipherSuites();
-					for (String cipher : ciphers) {
-						Log.info("Cipher: " + cipher);
-					}
-					*/
-
-					if (policy.protocols != null) {
-						sslSocket.setEnabledProtocols(policy.protocols);
-					}
-					
-					if (policy.ciphers != null) {
-						sslSocket.setEnabledCipherSuites(policy.ciphers);
-					}
-					
-					if (! policy.encryptOnly) {
-						validateServerCertificateName(policy, sslSocket, tlsName);
-					}
-					
-					in = socket.getInputStream();
-					out = socket.getOutputStream();
+					// The node address identifies the session to resume.
+					sslSocket = tls.createSocket(plain, address);
+					tls.handshake(sslSocket, tlsName);
+					in = sslSocket.getInputStream();
+					out = sslSocket.getOutputStream();
 					lastUsed = System.currentTimeMillis();
 				}
 				catch (Exception e) {
-					// socket.close() will close input/output streams according to doc.
-					socket.close();
+					// Closing the TLS socket also closes the underlying socket.
+					if (sslSocket != null) {
+						sslSocket.close();
+					}
+					else {
+						plain.close();
+					}
 					throw e;
 				}
+				socket = sslSocket;
 			}
 		}
 		catch (AerospikeException.Connection ae) {
@@ -143,16 +153,15 @@ public final class Connection implements Closeable {
 		}
 	}
 	
-	private static void validateServerCertificateName(TlsPolicy policy, SSLSocket sslSocket, String tlsName) throws Exception {		
+	/**
+	 * Verify that the server certificate has not been revoked and that its subject common name
+	 * or a subject alternative DNS name matches tlsName.
+	 */
+	public static void validateServerCertificate(TlsPolicy policy, String tlsName, X509Certificate cert) throws Exception {
 		if (tlsName == null) {
 			throw new AerospikeException.Connection("Invalid TLS name: null");							
 		}
 		
-		sslSocket.setUseClientMode(true);
-		sslSocket.startHandshake();
-		
-		X509Certificate cert = (X509Certificate)sslSocket.getSession().getPeerCertificates()[0];
-		
 		// Exclude certificate serial numbers.
 		if (policy.revokeCertificates != null) {
 			BigInteger serialNumber = cert.getSerialNumber();
@@ -209,6 +218,11 @@ public final class Connection implements Closeable {
 	}
 	
 	public void write(byte[] buffer, int length) throws IOException {
+		if (channel != null) {
+			channel.write(buffer, length);
+			return;
+		}
+
 		// Never write more than 8 KB at a time.  Apparently, the jni socket write does an extra 
 		// malloc and free if buffer size > 8 KB.
 		final int max = length;
@@ -227,6 +241,16 @@ public final class Connection implements Closeable {
 	}
 	
 	public void readFully(byte[] buffer, int length) throws IOException {
+		if (replayOffset < replayLength) {
+			readReplay(buffer, length);
+			return;
+		}
+
+		if (channel != null) {
+			channel.readFully(buffer, length);
+			return;
+		}
+
 		int pos = 0;
 	
 		while (pos < length) {
@@ -239,6 +263,24 @@ public final class Connection implements Closeable {
 		}
 	}
 
+	/**
+	 * Return the given bytes on the next reads instead of reading the socket.  Used by
+	 * pipelines, which receive a response before it is parsed.
+	 */
+	void setReplay(byte[] buffer, int length) {
+		replayBuffer = buffer;
+		replayOffset = 0;
+		replayLength = length;
+	}
+
+	private void readReplay(byte[] buffer, int length) throws EOFException {
+		if (length > replayLength - replayOffset) {
+			throw new EOFException();
+		}
+		System.arraycopy(replayBuffer, replayOffset, buffer, 0, length);
+		replayOffset += length;
+	}
+
 	/**
 	 * Is socket connected and used within specified limits.
 	 */
@@ -254,6 +296,10 @@ public final class Connection implements Closeable {
 	}
 
 	public void setTimeout(int timeout) throws SocketException {
+		if (channel != null) {
+			channel.setTimeout(timeout);
+			return;
+		}
 		socket.setSoTimeout(timeout);
 	}
 	
@@ -272,6 +318,10 @@ public final class Connection implements Closeable {
 		lastUsed = 0;
 		
 		try {
+			if (channel != null) {
+				channel.close();
+				return;
+			}
 			in.close();
 			out.close();			
 			socket.close();
@@ -18,10 +18,13 @@ package com.aerospike.client.cluster;
 
 import java.io.Closeable;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Host;
@@ -30,6 +33,7 @@ import com.aerospike.client.Log;
 import com.aerospike.client.ResultCode;
 import com.aerospike.client.admin.AdminCommand;
 import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.LimitAction;
 import com.aerospike.client.util.ThreadLocalData;
 import com.aerospike.client.util.Util;
 
@@ -47,17 +51,43 @@ public class Node implements Closeable {
 	public static final int HAS_BATCH_INDEX	= (1 << 2);
 	public static final int HAS_REPLICAS_ALL = (1 << 3);
 	public static final int HAS_PEERS = (1 << 4);
+	
+	/**
+	 * Maximum number of connections opened to reach the minimum pool sizes on each cluster tend.
+	 */
+	private static final int MAX_CONNS_PER_TEND = 16;
 
 	protected final Cluster cluster;
 	private final String name;
 	private final Host host;
 	protected final List<Host> aliases;
 	protected final InetSocketAddress address;
-	private final ArrayBlockingQueue<Connection> connectionQueue;
+	private final Pool<Connection> connectionPool;
 	private final AtomicInteger connectionCount;
+	private final NodeStats stats;
+	private final CircuitBreaker circuitBreaker;
+	private final ConcurrencyLimiter limiter;
+	private final AtomicReferenceArray<Pipeline> pipelines;
+	private final AtomicInteger pipelineIndex;
+	private final AtomicBoolean warming;
 	private Connection tendConnection;
+	
+	// Info responses requested (possibly in parallel tend pool threads) and then
+	// processed sequentially by the cluster tend thread.
+	private HashMap<String,String> tendInfo;
+	private List<Peer> tendPeers;
+	private int tendPeersGeneration;
+	private byte[] tendPartitions;
+	private Exception tendException;
+	private volatile HashMap<String,Integer> racks;
 	protected int peersGeneration;
 	protected int partitionGeneration;
+	// Raw partition bitmaps from the last applied partition response, indexed by namespace.
+	protected byte[][] partitionSegments;
+	
+	// Number of partition replicas mapped to this node.  Only modified by the tend thread.
+	private volatile int partitionsOwned;
+	private volatile int masterPartitionsOwned;
 	protected int peersCount;
 	protected int referenceCount;
 	protected int failures;
@@ -80,38 +110,74 @@ public class Node implements Closeable {
 		this.tendConnection = nv.conn;
 		this.features = nv.features;
 				
-		connectionQueue = new ArrayBlockingQueue<Connection>(cluster.connectionQueueSize);
+		connectionPool = new Pool<Connection>();
 		connectionCount = new AtomicInteger();
+		stats = new NodeStats();
+		circuitBreaker = new CircuitBreaker(this, cluster);
+		limiter = cluster.adaptiveLimit ? new ConcurrencyLimiter(cluster.adaptiveLimitMin, cluster.getMaxCommandsPerNode()) : null;
+		pipelines = (cluster.pipelineDepth > 1)? new AtomicReferenceArray<Pipeline>(cluster.pipelineConnsPerNode) : null;
+		pipelineIndex = new AtomicInteger();
+		warming = new AtomicBoolean();
 		peersGeneration = -1;
 		partitionGeneration = -1;
 		active = true;
 	}
 	
 	/**
-	 * Request current status from server node.
+	 * Request current status from server node.  This method only modifies this node's
+	 * tend state, so it can be run in parallel with other nodes.  The response is 
+	 * processed by {@link #refresh(Peers)}.
 	 */
-	public final void refresh(Peers peers) {
+	protected final void requestRefresh(boolean usePeers) {
+		tendInfo = null;
+		tendException = null;
+		
 		if (! active) {
 			return;
 		}
 		
 		try {
 			if (tendConnection.isClosed()) {
-				tendConnection = new Connection(cluster.tlsPolicy, host.tlsName, address, cluster.getConnectionTimeout(), cluster.maxSocketIdleMillis);
+				tendConnection = new Connection(cluster.tlsContext, host.tlsName, address, cluster.getConnectionTimeout(), cluster.maxSocketIdleMillis, false);
 			}
 	
-			if (peers.usePeers) {
-				HashMap<String,String> infoMap = Info.request(tendConnection, "node", "peers-generation", "partition-generation");
-				verifyNodeName(infoMap);
-				verifyPeersGeneration(infoMap, peers);
-				verifyPartitionGeneration(infoMap);
+			if (usePeers) {
+				tendInfo = Info.request(tendConnection, "node", "peers-generation", "partition-generation");
 			}
 			else {
 				String[] commands = cluster.useServicesAlternate ? 
 					new String[] {"node", "partition-generation", "services-alternate"} :
 					new String[] {"node", "partition-generation", "services"};
 					
-				HashMap<String,String> infoMap = Info.request(tendConnection, commands);
+				tendInfo = Info.request(tendConnection, commands);
+			}
+		}
+		catch (Exception e) {
+			tendException = e;
+		}
+	}
+	
+	/**
+	 * Process server node status received by {@link #requestRefresh(boolean)}.
+	 */
+	public final void refresh(Peers peers) {
+		if (! active) {
+			return;
+		}
+		
+		try {
+			if (tendException != null) {
+				throw tendException;
+			}
+			
+			HashMap<String,String> infoMap = tendInfo;
+			
+			if (peers.usePeers) {
+				verifyNodeName(infoMap);
+				verifyPeersGeneration(infoMap, peers);
+				verifyPartitionGeneration(infoMap);
+			}
+			else {
 				verifyNodeName(infoMap);
 				verifyPartitionGeneration(infoMap);
 				addFriends(infoMap, peers);		
@@ -122,6 +188,10 @@ public class Node implements Closeable {
 		catch (Exception e) {
 			refreshFailed(e);
 		}
+		finally {
+			tendInfo = null;
+			tendException = null;
+		}
 	}
 	
 	private final void verifyNodeName(HashMap <String,String> infoMap) {
@@ -255,7 +325,10 @@ public class Node implements Closeable {
 		}
 	}
 
-	protected final void refreshPeers(Peers peers) {
+	protected final void requestPeers() {
+		tendPeers = null;
+		tendException = null;
+		
 		// Do not refresh peers when node connection has already failed during this cluster tend iteration.
 		if (failures > 0 || ! active) {
 			return;
@@ -265,11 +338,29 @@ public class Node implements Closeable {
 			if (Log.debugEnabled()) {
 				Log.debug("Update peers for node " + this);
 			}
-			PeerParser parser = new PeerParser(cluster, tendConnection, peers.peers);
-			peersGeneration = parser.generation;
-			peersCount = peers.peers.size();
+			List<Peer> list = new ArrayList<Peer>(peersCount + 1);
+			PeerParser parser = new PeerParser(cluster, tendConnection, list);
+			tendPeersGeneration = parser.generation;
+			tendPeers = list;
+		}
+		catch (Exception e) {
+			tendException = e;
+		}
+	}
+
+	protected final void refreshPeers(Peers peers) {
+		if (failures > 0 || ! active) {
+			return;
+		}
+		
+		try { 
+			if (tendException != null) {
+				throw tendException;
+			}
+			peersGeneration = tendPeersGeneration;
+			peersCount = tendPeers.size();
 		
-			for (Peer peer : peers.peers) {		
+			for (Peer peer : tendPeers) {		
 				if (findPeerNode(cluster, peers, peer.nodeName)) {
 					// Node already exists. Do not even try to connect to hosts.				
 					continue;
@@ -312,6 +403,10 @@ public class Node implements Closeable {
 		catch (Exception e) {
 			refreshFailed(e);			
 		}
+		finally {
+			tendPeers = null;
+			tendException = null;
+		}
 	}
 	
 	private static boolean findPeerNode(Cluster cluster, Peers peers, String nodeName) {		
@@ -333,7 +428,10 @@ public class Node implements Closeable {
 		return false;
 	}
 	
-	protected final void refreshPartitions(Peers peers) {
+	protected final void requestPartitions(Peers peers) {
+		tendPartitions = null;
+		tendException = null;
+		
 		// Do not refresh partitions when node connection has already failed during this cluster tend iteration.
 		// Also, avoid "split cluster" case where this node thinks it's a 1-node cluster.
 		// Unchecked, such a node can dominate the partition map and cause all other
@@ -346,16 +444,37 @@ public class Node implements Closeable {
 			if (Log.debugEnabled()) {
 				Log.debug("Update partition map for node " + this);
 			}
-			PartitionParser parser = new PartitionParser(tendConnection, this, cluster.partitionMap, Node.PARTITIONS, cluster.requestProleReplicas);			
+			tendPartitions = PartitionParser.request(tendConnection, cluster.requestProleReplicas, cluster.rackAware);
+		}
+		catch (Exception e) {
+			tendException = e;
+		}
+	}
 
-			if (parser.isPartitionMapCopied()) {		
-				cluster.partitionMap = parser.getPartitionMap();
+	protected final void refreshPartitions(Partitions.Builder partitions) {
+		try {
+			if (tendException != null) {
+				throw tendException;
 			}
+			
+			if (tendPartitions == null) {
+				// Partitions were not requested.
+				return;
+			}
+			PartitionParser parser = new PartitionParser(tendPartitions, this, partitions, Node.PARTITIONS, cluster.requestProleReplicas, cluster.rackAware);			
 			partitionGeneration = parser.getGeneration();
+			
+			if (cluster.rackAware) {
+				racks = parser.getRacks();
+			}
 		}
 		catch (Exception e) {
 			refreshFailed(e);
 		}
+		finally {
+			tendPartitions = null;
+			tendException = null;
+		}
 	}
 
 	private final void refreshFailed(Exception e) {		
@@ -381,7 +500,7 @@ public class Node implements Closeable {
 	public final Connection getConnection(int timeoutMillis) throws AerospikeException {
 		Connection conn;
 		
-		while ((conn = connectionQueue.poll()) != null) {		
+		while ((conn = connectionPool.poll()) != null) {		
 			if (conn.isValid()) {
 				try {
 					conn.setTimeout(timeoutMillis);
@@ -399,30 +518,12 @@ public class Node implements Closeable {
 		
 		if (connectionCount.getAndIncrement() < cluster.connectionQueueSize) {
 			try {
-				conn = new Connection(cluster.tlsPolicy, host.tlsName, address, timeoutMillis, cluster.maxSocketIdleMillis);
+				return createConnection(timeoutMillis);
 			}
 			catch (RuntimeException re) {
 				connectionCount.getAndDecrement();
 				throw re;
 			}
-			
-			if (cluster.user != null) {
-				try {
-					AdminCommand command = new AdminCommand(ThreadLocalData.getBuffer());
-					command.authenticate(conn, cluster.user, cluster.password);
-				}
-				catch (AerospikeException ae) {
-					// Socket not authenticated.  Do not put back into pool.
-					closeConnection(conn);
-					throw ae;
-				}
-				catch (Exception e) {
-					// Socket not authenticated.  Do not put back into pool.
-					closeConnection(conn);
-					throw new AerospikeException(e);
-				}
-			}
-			return conn;		
 		}
 		else {
 			connectionCount.getAndDecrement();
@@ -431,6 +532,161 @@ public class Node implements Closeable {
 		}
 	}
 	
+	/**
+	 * Return pipelined connection for single record commands or null if pipelining
+	 * is disabled.  Pipelines are chosen round-robin and replaced when closed or idle.
+	 */
+	public final Pipeline getPipeline(int timeoutMillis) throws AerospikeException {
+		if (pipelines == null) {
+			return null;
+		}
+		
+		if (! active) {
+			throw new AerospikeException.InvalidNode();
+		}
+
+		int index = (pipelineIndex.getAndIncrement() & Integer.MAX_VALUE) % pipelines.length();
+		Pipeline pipeline = pipelines.get(index);
+		
+		if (pipeline != null && pipeline.isValid()) {
+			return pipeline;
+		}
+
+		synchronized (pipelines) {
+			pipeline = pipelines.get(index);
+			
+			if (pipeline != null) {
+				if (pipeline.isValid()) {
+					return pipeline;
+				}
+				pipeline.close();
+			}
+			pipeline = new Pipeline(createConnection(timeoutMillis), cluster.pipelineDepth);
+			pipelines.set(index, pipeline);
+			return pipeline;
+		}
+	}
+
+	private final Connection createConnection(int timeoutMillis) throws AerospikeException {
+		Connection conn = new Connection(cluster.tlsContext, host.tlsName, address, timeoutMillis, cluster.maxSocketIdleMillis, cluster.useSocketChannel);
+		
+		if (cluster.user != null) {
+			try {
+				AdminCommand command = new AdminCommand(ThreadLocalData.getBuffer());
+				command.authenticate(conn, cluster.user, cluster.password);
+			}
+			catch (AerospikeException ae) {
+				// Socket not authenticated.  Do not put back into pool.
+				conn.close();
+				throw ae;
+			}
+			catch (Exception e) {
+				// Socket not authenticated.  Do not put back into pool.
+				conn.close();
+				throw new AerospikeException(e);
+			}
+		}
+		return conn;		
+	}
+	
+	/**
+	 * Close idle connections and start opening new connections until the minimum connection
+	 * count is reached.  This is called by the cluster tend thread, so the command path does
+	 * not pay for connection creation after node restarts or additions.  Connections are
+	 * opened in the client thread pool, so slow connects never delay the tend thread.
+	 */
+	protected void balanceConnections() {
+		if (! active) {
+			return;
+		}
+		
+		// Least recently used connections are located at the tail of each stripe.
+		int stripeCount = connectionPool.getStripeCount();
+		Connection conn;
+		
+		for (int i = 0; i < stripeCount; i++) {
+			while ((conn = connectionPool.pollTail(i)) != null) {
+				if (conn.isValid()) {
+					connectionPool.offerTail(i, conn);
+					break;
+				}
+				closeConnection(conn);
+			}
+		}
+		
+		if (! needsConnections() || ! warming.compareAndSet(false, true)) {
+			// Pools are full or the previous tend's connections are still being opened.
+			return;
+		}
+		
+		try {
+			cluster.getThreadPool().execute(new Runnable() {
+				public void run() {
+					try {
+						createConnections(MAX_CONNS_PER_TEND);
+					}
+					finally {
+						warming.set(false);
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException ree) {
+			// Cluster is closing.
+			warming.set(false);
+		}
+	}
+	
+	/**
+	 * Is the connection pool below its minimum size.
+	 */
+	protected boolean needsConnections() {
+		return connectionCount.get() < cluster.minConnsPerNode;
+	}
+	
+	/**
+	 * Open at most max connections until the minimum connection count is reached.
+	 * Return the number of connections that may still be opened.
+	 */
+	protected int createConnections(int max) {
+		int count = Math.min(cluster.minConnsPerNode - connectionCount.get(), max);
+		int stripeCount = connectionPool.getStripeCount();
+		
+		for (int i = 0; i < count; i++) {
+			if (! active) {
+				return 0;
+			}
+			
+			if (connectionCount.getAndIncrement() >= cluster.connectionQueueSize) {
+				connectionCount.getAndDecrement();
+				return 0;
+			}
+			
+			Connection conn;
+			
+			try {
+				conn = createConnection(cluster.getConnectionTimeout());
+			}
+			catch (Exception e) {
+				connectionCount.getAndDecrement();
+				
+				if (Log.debugEnabled()) {
+					Log.debug("Node " + this + " create connection failed: " + Util.getErrorMessage(e));
+				}
+				return 0;
+			}
+			
+			if (! active) {
+				// Node was closed while connecting.
+				closeConnection(conn);
+				return 0;
+			}
+			// Spread new connections across stripes.
+			connectionPool.offerTail(i % stripeCount, conn);
+		}
+		return max - Math.max(count, 0);
+	}
+	
 	/**
 	 * Put connection back into connection pool.
 	 * 
@@ -439,7 +695,11 @@ public class Node implements Closeable {
 	public final void putConnection(Connection conn) {
 		conn.updateLastUsed();
 		
-		if (! active || ! connectionQueue.offer(conn)) {
+		if (active) {
+			// Total connections are bounded by connectionCount, so the pool always has room.
+			connectionPool.offer(conn);
+		}
+		else {
 			closeConnection(conn);
 		}
 	}
@@ -505,6 +765,182 @@ public class Node implements Closeable {
 		return (features & HAS_REPLICAS_ALL) != 0;
 	}
 
+	/**
+	 * Return command latency and error rate averages.
+	 */
+	public final NodeStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Return node circuit breaker.
+	 */
+	public final CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Should commands avoid this node because its circuit breaker is open.
+	 */
+	public final boolean isCircuitOpen() {
+		return circuitBreaker.isOpen();
+	}
+
+	/**
+	 * Throw exception if node's circuit breaker does not allow a command.
+	 */
+	public final void checkCircuit() throws AerospikeException.CircuitOpen {
+		if (! circuitBreaker.allowCommand()) {
+			throw new AerospikeException.CircuitOpen(this);
+		}
+	}
+
+	/**
+	 * Return number of partition replicas (master and prole) mapped to this node
+	 * across all namespaces in the client's partition map.
+	 */
+	public final int getPartitionsOwned() {
+		return partitionsOwned;
+	}
+
+	/**
+	 * Return number of master partitions mapped to this node across all namespaces
+	 * in the client's partition map.
+	 */
+	public final int getMasterPartitionsOwned() {
+		return masterPartitionsOwned;
+	}
+
+	/**
+	 * Adjust partition ownership counts.  Called by the tend thread when the partition
+	 * map is modified.
+	 */
+	final void addPartitionsOwned(int replicaIndex, int delta) {
+		partitionsOwned += delta;
+
+		if (replicaIndex == 0) {
+			masterPartitionsOwned += delta;
+		}
+	}
+
+	/**
+	 * Return cluster that owns this node.
+	 */
+	public final Cluster getCluster() {
+		return cluster;
+	}
+
+	/**
+	 * Return adaptive concurrency limiter or null if adaptive limits are disabled.
+	 */
+	public final ConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	/**
+	 * Has node reached its adaptive concurrency limit.
+	 */
+	public final boolean isLimitReached() {
+		return limiter != null && limiter.isFull();
+	}
+
+	/**
+	 * Take adaptive concurrency permit for a synchronous command.  Each successful call must
+	 * be followed by {@link #releasePermit()}.  If the limit has been reached, block when the
+	 * limit action is {@link LimitAction#WAIT}.  Otherwise, reject the command.
+	 * 
+	 * @param timeoutMillis			maximum wait in milliseconds, zero waits indefinitely
+	 * @throws AerospikeException	if permit could not be taken
+	 */
+	public final void acquirePermit(int timeoutMillis) throws AerospikeException {
+		if (limiter == null || limiter.tryAcquire()) {
+			return;
+		}
+
+		if (cluster.adaptiveLimitAction == LimitAction.WAIT) {
+			if (limiter.acquire(timeoutMillis)) {
+				return;
+			}
+			throw new AerospikeException.Timeout(this, timeoutMillis, 0, 0, 0);
+		}
+		throw new AerospikeException.CommandRejected();
+	}
+
+	/**
+	 * Take adaptive concurrency permit only if one is immediately available.
+	 * Each successful call must be followed by {@link #releasePermit()}.
+	 */
+	public final boolean tryAcquirePermit() {
+		return limiter == null || limiter.tryAcquire();
+	}
+
+	/**
+	 * Return adaptive concurrency permit.
+	 */
+	public final void releasePermit() {
+		if (limiter != null) {
+			limiter.release();
+			onPermitRelease();
+		}
+	}
+
+	/**
+	 * Called after an adaptive concurrency permit has been returned.  Asynchronous nodes
+	 * use it to start commands waiting for a permit.
+	 */
+	protected void onPermitRelease() {
+	}
+
+	/**
+	 * Record successful single record command and its round trip latency in nanoseconds.
+	 */
+	public final void addLatency(long nanos) {
+		stats.addLatency(nanos);
+		circuitBreaker.onSuccess();
+		cluster.retryBudget.deposit();
+		
+		if (limiter != null) {
+			limiter.onSuccess(stats.getLatencyMicros());
+		}
+	}
+
+	/**
+	 * Record successful command without latency.
+	 */
+	public final void addSuccess() {
+		stats.addSuccess();
+		circuitBreaker.onSuccess();
+		cluster.retryBudget.deposit();
+	}
+
+	/**
+	 * Record command timeout or network error.
+	 */
+	public final void addError() {
+		stats.addError();
+		circuitBreaker.onError();
+		
+		if (limiter != null) {
+			limiter.onError();
+		}
+	}
+
+	/**
+	 * Does server node belong to given rack for given namespace.
+	 * Rack ids are only tracked when {@link com.aerospike.client.policy.ClientPolicy#rackAware} is enabled.
+	 */
+	public final boolean hasRack(String namespace, int rackId) {
+		// Must copy reference for copy on write semantics to work.
+		HashMap<String,Integer> map = racks;
+		
+		if (map == null) {
+			return false;
+		}
+		
+		Integer id = map.get(namespace);
+		return id != null && id == rackId;
+	}
+
 	/**
 	 * Does server support peers info command.
 	 */
@@ -553,8 +989,18 @@ public class Node implements Closeable {
 		conn.close();
 		
 		// Empty connection pool.
-		while ((conn = connectionQueue.poll()) != null) {			
+		while ((conn = connectionPool.poll()) != null) {			
 			conn.close();
-		}		
+		}
+		
+		if (pipelines != null) {
+			for (int i = 0; i < pipelines.length(); i++) {
+				Pipeline pipeline = pipelines.getAndSet(i, null);
+				
+				if (pipeline != null) {
+					pipeline.close();
+				}
+			}
+		}
 	}	
 }
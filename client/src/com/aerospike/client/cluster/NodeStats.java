@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exponentially weighted moving averages of command latency and error rate for a
+ * server node.  Averages are updated by command threads without locks.
+ */
+public final class NodeStats {
+	/**
+	 * Weight given to each new sample.
+	 */
+	private static final double ALPHA = 0.1;
+
+	/**
+	 * Each unit of error rate adds this multiple of the average latency to the score.
+	 */
+	private static final double ERROR_PENALTY = 10.0;
+
+	/**
+	 * Each unit of error rate also adds this fixed latency in microseconds to the score, so
+	 * a node that only fails (and therefore has no latency samples) is not treated as fast.
+	 */
+	private static final double ERROR_MICROS = 100000.0;
+
+	// Doubles stored as raw long bits.
+	private final AtomicLong latency = new AtomicLong(Double.doubleToRawLongBits(0.0));
+	private final AtomicLong errorRate = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+	/**
+	 * Add successful command round trip latency in nanoseconds.
+	 */
+	public void addLatency(long nanos) {
+		update(latency, nanos / 1000.0, true);
+		update(errorRate, 0.0, false);
+	}
+
+	/**
+	 * Add successful command that did not measure latency.
+	 */
+	public void addSuccess() {
+		update(errorRate, 0.0, false);
+	}
+
+	/**
+	 * Add timeout or network error.
+	 */
+	public void addError() {
+		update(errorRate, 1.0, false);
+	}
+
+	/**
+	 * Return average command latency in microseconds.
+	 */
+	public double getLatencyMicros() {
+		return Double.longBitsToDouble(latency.get());
+	}
+
+	/**
+	 * Return average error rate between 0.0 and 1.0.
+	 */
+	public double getErrorRate() {
+		return Double.longBitsToDouble(errorRate.get());
+	}
+
+	/**
+	 * Return node score used by adaptive replica selection.  Lower is better.
+	 * A node without samples has a score of zero.
+	 */
+	public double getScore() {
+		double errors = getErrorRate();
+		return getLatencyMicros() * (1.0 + ERROR_PENALTY * errors) + ERROR_MICROS * errors;
+	}
+
+	private static void update(AtomicLong average, double sample, boolean seed) {
+		while (true) {
+			long oldBits = average.get();
+			double old = Double.longBitsToDouble(oldBits);
+			
+			// Seed average with first sample, so a new node is not favored until its average converges.
+			double value = (seed && old == 0.0)? sample : old + ALPHA * (sample - old);
+
+			if (average.compareAndSet(oldBits, Double.doubleToRawLongBits(value))) {
+				return;
+			}
+		}
+	}
+}
@@ -16,71 +16,119 @@
  */
 package com.aerospike.client.cluster;
 
-import gnu.crypto.util.Base64;
-
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Info;
-import com.aerospike.client.Log;
 import com.aerospike.client.command.Buffer;
 
 /**
  * Parse node's master (and optionally prole) partitions.
+ * <p>
+ * The response is parsed in place.  Namespaces are matched and base64 bitmaps are decoded
+ * directly from the response bytes.  Each namespace's raw bitmaps are saved in the node, so
+ * namespaces whose bitmaps did not change since the node's previous response are skipped.
  */
 public final class PartitionParser {
 	static final String PartitionGeneration = "partition-generation";
 	static final String ReplicasMaster = "replicas-master";
 	static final String ReplicasAll = "replicas-all";
+	static final String RackIds = "rack-ids";
+
+	private static final byte[] Base64Values = new byte[128];
+
+	static {
+		String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		Arrays.fill(Base64Values, (byte)-1);
+
+		for (int i = 0; i < chars.length(); i++) {
+			Base64Values[chars.charAt(i)] = (byte)i;
+		}
+	}
 
-	private HashMap<String,AtomicReferenceArray<Node>[]> map;
+	private final Partitions.Builder partitions;
 	private final StringBuilder sb;
 	private final byte[] buffer;
+	private final Node node;
+	private final byte[][] oldSegments;
+	private byte[][] segments;
 	private final int partitionCount;
 	private final int generation;
+	private HashMap<String,Integer> racks;
 	private int length;
 	private int offset;
-	private boolean copied;
 	
-	public PartitionParser(Connection conn, Node node, HashMap<String,AtomicReferenceArray<Node>[]> map, int partitionCount, boolean requestProleReplicas) {
+	/**
+	 * Request partition generation and replicas from server node.  The response is copied
+	 * out of the thread local info buffer, so it can be parsed later in a different thread.
+	 */
+	public static byte[] request(Connection conn, boolean requestProleReplicas, boolean requestRackIds) {
 		// Send format 1:  partition-generation\nreplicas-master\n
 		// Send format 2:  partition-generation\nreplicas-all\n
-		this.partitionCount = partitionCount;
-		this.map = map;
-		
+		// Send format 3:  partition-generation\nreplicas-all\nrack-ids\n
 		String command = (requestProleReplicas)? ReplicasAll : ReplicasMaster;
-		Info info = new Info(conn, PartitionGeneration, command);
-		this.length = info.length;
+		Info info = (requestRackIds)?
+			new Info(conn, PartitionGeneration, command, RackIds) :
+			new Info(conn, PartitionGeneration, command);
 
-		if (length == 0) {
+		if (info.length == 0) {
 			throw new AerospikeException.Parse("Partition info is empty");
 		}
-		this.buffer = info.buffer;
+		return Arrays.copyOf(info.buffer, info.length);
+	}
+
+	/**
+	 * Parse partition response and apply node's partition ownership to the partition builder.
+	 * If node is null, partition ownership is parsed but not applied.
+	 */
+	public PartitionParser(byte[] buffer, Node node, Partitions.Builder partitions, int partitionCount, boolean requestProleReplicas, boolean requestRackIds) {
+		this.partitionCount = partitionCount;
+		this.partitions = partitions;
+		this.buffer = buffer;
+		this.length = buffer.length;
+		this.node = node;
 
 		// Create reusable StringBuilder for performance.
 		this.sb = new StringBuilder(32);  // Max namespace length
 		
+		if (node != null) {
+			// Discard saved bitmaps until this response has been fully applied.
+			this.oldSegments = node.partitionSegments;
+			node.partitionSegments = null;
+		}
+		else {
+			this.oldSegments = null;
+		}
+		this.segments = new byte[partitions.size() + 1][];
+
 		generation = parseGeneration();
 		
 		if (requestProleReplicas) {
-			parseReplicasAll(node);
+			parseReplicasAll();
 		}
 		else {
-			parseReplicasMaster(node);		
+			parseReplicasMaster();		
+		}
+		
+		if (node != null) {
+			node.partitionSegments = segments;
+		}
+
+		if (requestRackIds) {
+			racks = parseRackIds();
 		}
 	}
 	
 	public int getGeneration() {
 		return generation;
 	}
-	
-	public boolean isPartitionMapCopied() {
-		return copied;
-	}
-	
-	public HashMap<String,AtomicReferenceArray<Node>[]> getPartitionMap() {
-		return map;	
+
+	/**
+	 * Return rack id for each namespace or null if rack ids were not requested.
+	 */
+	public HashMap<String,Integer> getRacks() {
+		return racks;
 	}
 	
 	private int parseGeneration() {
@@ -90,17 +138,16 @@ public final class PartitionParser {
 		
 		while (offset < length) {
 			if (buffer[offset] == '\n') {
-				String s = Buffer.utf8ToString(buffer, begin, offset - begin, sb).trim();
+				int gen = parseInt(begin, offset);
 				offset++;
-				return Integer.parseInt(s);
+				return gen;
 			}
 			offset++;
 		}
 		throw new AerospikeException.Parse("Failed to find partition-generation value");
 	}
 
-	@SuppressWarnings("unchecked")
-	private void parseReplicasMaster(Node node) {
+	private void parseReplicasMaster() {
 		// Use low-level info methods and parse byte array directly for maximum performance.
 		// Receive format: replicas-master\t<ns1>:<base 64 encoded bitmap1>;<ns2>:<base 64 encoded bitmap2>...\n
 		expectName(ReplicasMaster);
@@ -110,13 +157,7 @@ public final class PartitionParser {
 		while (offset < length) {
 			if (buffer[offset] == ':') {
 				// Parse namespace.
-				String namespace = Buffer.utf8ToString(buffer, begin, offset - begin, sb).trim();
-				
-				if (namespace.length() <= 0 || namespace.length() >= 32) {
-					String response = getTruncatedResponse();
-					throw new AerospikeException.Parse("Invalid partition namespace " +
-						namespace + ". Response=" + response);
-				}
+				int index = parseNamespace(begin, 1, false);
 				begin = ++offset;
 				
 				// Parse partition bitmap.
@@ -130,32 +171,33 @@ public final class PartitionParser {
 				}
 				
 				if (offset == begin) {
-					String response = getTruncatedResponse();
 					throw new AerospikeException.Parse("Empty partition id for namespace " +
-						namespace + ". Response=" + response);										
+						partitions.getNamespace(index) + ". Response=" + getTruncatedResponse());
 				}
 
-				AtomicReferenceArray<Node>[] replicaArray = map.get(namespace);
-
-				if (replicaArray == null) {
-					replicaArray = new AtomicReferenceArray[1];
-					replicaArray[0] = new AtomicReferenceArray<Node>(partitionCount);
-					copyPartitionMap();
-					map.put(namespace, replicaArray);
+				if (! isSegmentUnchanged(index, begin)) {
+					// Log.info("Map: " + namespace + "[0] " + node);
+					decodeBitmap(index, 0, begin, offset);
+				}
+				
+				if (offset < length && buffer[offset] == '\n') {
+					offset++;
+					return;
 				}
-
-				// Log.info("Map: " + namespace + "[0] " + node);
-				decodeBitmap(node, replicaArray[0], begin);
 				begin = ++offset;
 			}
+			else if (buffer[offset] == '\n') {
+				// End of replicas line.
+				offset++;
+				return;
+			}
 			else {
 				offset++;
 			}
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private void parseReplicasAll(Node node) throws AerospikeException {
+	private void parseReplicasAll() throws AerospikeException {
 		// Use low-level info methods and parse byte array directly for maximum performance.
 		// Receive format: replicas-all\t
 		//                 <ns1>:<count>,<base 64 encoded bitmap1>,<base 64 encoded bitmap2>...;
@@ -166,14 +208,8 @@ public final class PartitionParser {
 		
 		while (offset < length) {
 			if (buffer[offset] == ':') {
-				// Parse namespace.
-				String namespace = Buffer.utf8ToString(buffer, begin, offset - begin, sb).trim();
-				
-				if (namespace.length() <= 0 || namespace.length() >= 32) {
-					String response = getTruncatedResponse();
-					throw new AerospikeException.Parse("Invalid partition namespace " +
-						namespace + ". Response=" + response);
-				}
+				int nsBegin = begin;
+				int nsEnd = offset;
 				begin = ++offset;
 				
 				// Parse replica count.
@@ -185,122 +221,268 @@ public final class PartitionParser {
 					}
 					offset++;
 				}
-				int replicaCount = Integer.parseInt(new String(buffer, begin, offset - begin));
-
-				// Ensure replicaArray is correct size.
-				AtomicReferenceArray<Node>[] replicaArray = map.get(namespace);
+				int replicaCount = parseInt(begin, offset);
 
-				if (replicaArray == null) {
-					// Create new replica array. 
-					replicaArray = new AtomicReferenceArray[replicaCount];
+				// Ensure replica count is correct size.
+				offset = nsEnd;
+				int index = parseNamespace(nsBegin, replicaCount, true);
+				
+				// Find end of namespace.  Bitmaps do not contain separators.
+				int segmentBegin = begin;
+				offset = begin;
+				
+				while (offset < length) {
+					byte b = buffer[offset];
 					
-					for (int i = 0; i < replicaCount; i++) {
-						replicaArray[i] = new AtomicReferenceArray<Node>(partitionCount);
+					if (b == ';' || b == '\n') {
+						break;
 					}
-
-					copyPartitionMap();
-					map.put(namespace, replicaArray);					
+					offset++;
 				}
-				else if (replicaArray.length != replicaCount) {
-					if (Log.infoEnabled()) {
-						Log.info("Namespace " + namespace + " replication factor changed from " + replicaArray.length + " to " + replicaCount);
-					}
-					
-					// Resize replica array. 
-					AtomicReferenceArray<Node>[] replicaTarget = new AtomicReferenceArray[replicaCount];
+				int segmentEnd = offset;
+				
+				if (isSegmentUnchanged(index, segmentBegin)) {
+					// Node's ownership of this namespace has not changed.
+					offset = segmentEnd;
+				}
+				else {
+					offset = segmentBegin;
 					
-					if (replicaArray.length < replicaCount) {
-						int i = 0;
-						
-						// Copy existing entries.
-						for (; i < replicaArray.length; i++) {
-							replicaTarget[i] = replicaArray[i];
-						}
+					while (offset < segmentEnd && buffer[offset] != ',') {
+						offset++;
+					}
+
+					// Parse partition bitmaps.
+					for (int i = 0; i < replicaCount; i++) {
+						begin = ++offset;
 
-						// Create new entries.
-						for (; i < replicaCount; i++) {
-							replicaTarget[i] = new AtomicReferenceArray<Node>(partitionCount);
+						// Find bitmap endpoint
+						while (offset < segmentEnd && buffer[offset] != ',') {
+							offset++;
 						}
-					}
-					else {
-						// Copy existing entries.
-						for (int i = 0; i < replicaCount; i++) {
-							replicaTarget[i] = replicaArray[i];
+						
+						if (offset == begin) {
+							throw new AerospikeException.Parse("Empty partition id for namespace " +
+								partitions.getNamespace(index) + ". Response=" + getTruncatedResponse());
 						}
+						
+						// Log.info("Map: " + namespace + '[' + i + "] " + node);
+						decodeBitmap(index, i, begin, offset);
 					}
-					
-					copyPartitionMap();
-					replicaArray = replicaTarget;
-					map.put(namespace, replicaArray);				
+					offset = segmentEnd;
 				}
 				
-				// Parse partition bitmaps.
-				for (int i = 0; i < replicaCount; i++) {
-					begin = ++offset;
+				if (offset < length && buffer[offset] == '\n') {
+					offset++;
+					return;
+				}
+				begin = ++offset;
+			}
+			else if (buffer[offset] == '\n') {
+				// End of replicas line.
+				offset++;
+				return;
+			}
+			else {
+				offset++;
+			}
+		}
+	}
 
-					// Find bitmap endpoint
-					while (offset < length) {
-						byte b = buffer[offset];
-						
-						if (b == ',' || b == ';') {
-							break;
-						}
-						offset++;
-					}
+	/**
+	 * Return builder namespace index of the namespace that ends at the current offset.
+	 */
+	private int parseNamespace(int begin, int replicaCount, boolean exact) {
+		int end = offset;
+
+		// Trim whitespace.
+		while (begin < end && buffer[begin] <= ' ' && buffer[begin] >= 0) {
+			begin++;
+		}
+
+		while (end > begin && buffer[end - 1] <= ' ' && buffer[end - 1] >= 0) {
+			end--;
+		}
+
+		int len = end - begin;
+
+		if (len <= 0 || len >= 32) {
+			String namespace = Buffer.utf8ToString(buffer, begin, len, sb);
+			throw new AerospikeException.Parse("Invalid partition namespace " +
+				namespace + ". Response=" + getTruncatedResponse());
+		}
+		return partitions.getNamespaceIndex(buffer, begin, len, replicaCount, exact, sb);
+	}
+
+	/**
+	 * Return if the namespace's response segment starting at begin and ending at the current
+	 * offset is the same as the segment applied on the node's previous response.
+	 * Save the segment for the next response.
+	 */
+	private boolean isSegmentUnchanged(int index, int begin) {
+		if (node == null) {
+			return false;
+		}
+
+		if (index >= segments.length) {
+			segments = Arrays.copyOf(segments, index + 1);
+		}
+
+		byte[] old = (oldSegments != null && index < oldSegments.length)? oldSegments[index] : null;
+		int len = offset - begin;
+
+		if (old != null && old.length == len) {
+			int i = 0;
+
+			while (i < len && old[i] == buffer[begin + i]) {
+				i++;
+			}
+
+			if (i == len) {
+				segments[index] = old;
+				return true;
+			}
+		}
+		segments[index] = Arrays.copyOfRange(buffer, begin, offset);
+		return false;
+	}
+
+	private HashMap<String,Integer> parseRackIds() {
+		// Receive format: rack-ids\t<ns1>:<rack id1>;<ns2>:<rack id2>...\n
+		HashMap<String,Integer> map = new HashMap<String,Integer>();
+		
+		if (offset >= length) {
+			// Server did not respond to rack-ids.  Node does not belong to any rack.
+			return map;
+		}
+		expectName(RackIds);
+		
+		int begin = offset;
+		
+		while (offset < length) {
+			if (buffer[offset] == ':') {
+				String namespace = Buffer.utf8ToString(buffer, begin, offset - begin, sb).trim();
+				begin = ++offset;
+				
+				while (offset < length) {
+					byte b = buffer[offset];
 					
-					if (offset == begin) {
-						String response = getTruncatedResponse();
-						throw new AerospikeException.Parse("Empty partition id for namespace " +
-							namespace + ". Response=" + response);										
+					if (b == ';' || b == '\n') {
+						break;
 					}
-					
-					// Log.info("Map: " + namespace + '[' + i + "] " + node);
-					decodeBitmap(node, replicaArray[i], begin);
+					offset++;
+				}
+				String value = Buffer.utf8ToString(buffer, begin, offset - begin, sb).trim();
+				
+				try {
+					map.put(namespace, Integer.parseInt(value));
+				}
+				catch (NumberFormatException nfe) {
+					String response = getTruncatedResponse();
+					throw new AerospikeException.Parse("Invalid rack id " + value + " for namespace " +
+						namespace + ". Response=" + response);										
 				}
 				begin = ++offset;
 			}
+			else if (buffer[offset] == '\n') {
+				break;
+			}
 			else {
 				offset++;
 			}
 		}
+		return map;
 	}
-	
-	private void decodeBitmap(Node node, AtomicReferenceArray<Node> nodeArray, int begin) {
-		byte[] restoreBuffer = Base64.decode(buffer, begin, offset - begin);
-	
-		for (int i = 0; i < partitionCount; i++) {
-			Node nodeOld = nodeArray.get(i);
-			
-			if ((restoreBuffer[i >> 3] & (0x80 >> (i & 7))) != 0) {
-				// Node owns this partition.
-				// Log.info("Map: " + i);
-				if (nodeOld != null && nodeOld != node) {
+
+	/**
+	 * Decode base64 partition bitmap in place and apply ownership of each partition.
+	 */
+	private void decodeBitmap(int namespaceIndex, int replicaIndex, int begin, int end) {
+		int partition = 0;
+
+		for (int i = begin; i < end && partition < partitionCount; i++) {
+			int ch = buffer[i];
+
+			if (ch == '=') {
+				break;
+			}
+
+			int value = (ch >= 0)? Base64Values[ch] : -1;
+
+			if (value < 0) {
+				throw new AerospikeException.Parse("Invalid partition bitmap for namespace " +
+					partitions.getNamespace(namespaceIndex) + ". Response=" + getTruncatedResponse());
+			}
+
+			// Each base64 character holds 6 bits, most significant bit first.
+			for (int bit = 0x20; bit != 0 && partition < partitionCount; bit >>= 1) {
+				applyOwnership(namespaceIndex, replicaIndex, partition++, (value & bit) != 0);
+			}
+		}
+
+		if (partition < partitionCount) {
+			throw new AerospikeException.Parse("Partition bitmap too short for namespace " +
+				partitions.getNamespace(namespaceIndex) + ". Response=" + getTruncatedResponse());
+		}
+	}
+
+	private void applyOwnership(int namespaceIndex, int replicaIndex, int partition, boolean owned) {
+		Node nodeOld = partitions.get(namespaceIndex, replicaIndex, partition);
+		
+		if (owned) {
+			// Node owns this partition.
+			// Log.info("Map: " + i);
+			if (nodeOld != node) {
+				if (nodeOld != null) {
 					// Force previously mapped node to refresh it's partition map on next cluster tend.
 					nodeOld.partitionGeneration = -1;
+					
+					byte[][] oldSegments = nodeOld.partitionSegments;
+					
+					if (oldSegments != null && namespaceIndex < oldSegments.length) {
+						// Previously mapped node must also apply this namespace again.
+						oldSegments[namespaceIndex] = null;
+					}
 				}
-				
-				// Use lazy set because there is only one producer thread. In addition,
-				// there is a one second delay due to the cluster tend polling interval.  
-				// An extra millisecond for a node change will not make a difference and 
-				// overall performance is improved.
-				nodeArray.lazySet(i, node);
+				partitions.set(namespaceIndex, replicaIndex, partition, node);
 			}
-			else {
-				// Node does not own partition.
-				if (node == nodeOld) {
-					// Must erase previous map.
-					nodeArray.lazySet(i, null);
-				}
+		}
+		else {
+			// Node does not own partition.
+			if (node == nodeOld) {
+				// Must erase previous map.
+				partitions.set(namespaceIndex, replicaIndex, partition, null);
 			}
 		}
 	}
 
-	private void copyPartitionMap() {
-		if (! copied) {
-			// Make shallow copy of map.
-			map = new HashMap<String,AtomicReferenceArray<Node>[]>(map);
-			copied = true;
+	private int parseInt(int begin, int end) {
+		// Trim whitespace.
+		while (begin < end && buffer[begin] == ' ') {
+			begin++;
 		}
+
+		while (end > begin && buffer[end - 1] == ' ') {
+			end--;
+		}
+
+		if (begin == end || end - begin > 9) {
+			throw new AerospikeException.Parse("Invalid number " + Buffer.utf8ToString(buffer, begin, end - begin, sb) +
+				". Response=" + getTruncatedResponse());
+		}
+
+		int value = 0;
+
+		for (int i = begin; i < end; i++) {
+			int digit = buffer[i] - '0';
+
+			if (digit < 0 || digit > 9) {
+				throw new AerospikeException.Parse("Invalid number " + Buffer.utf8ToString(buffer, begin, end - begin, sb) +
+					". Response=" + getTruncatedResponse());
+			}
+			value = value * 10 + digit;
+		}
+		return value;
 	}
 
 	private void expectName(String name) throws AerospikeException {
@@ -308,11 +490,19 @@ public final class PartitionParser {
 		
 		while (offset < length) {
 			if (buffer[offset] == '\t') {
-				String s = Buffer.utf8ToString(buffer, begin, offset - begin, sb).trim();
-				
-				if (name.equals(s)) {
-					offset++;
-					return;
+				int len = offset - begin;
+
+				if (len == name.length()) {
+					int i = 0;
+
+					while (i < len && buffer[begin + i] == name.charAt(i)) {
+						i++;
+					}
+
+					if (i == len) {
+						offset++;
+						return;
+					}
 				}
 				break;
 			}
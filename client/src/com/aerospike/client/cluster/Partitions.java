@@ -0,0 +1,294 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.ArrayList;
+
+import com.aerospike.client.Log;
+import com.aerospike.client.command.Buffer;
+
+/**
+ * Immutable snapshot of partition ownership for all namespaces.
+ * <p>
+ * Namespaces are interned and mapped to small array indexes.  Each namespace holds one
+ * flat node array per replica, indexed by partition id.  Node lookups therefore do not
+ * allocate.  A new snapshot is built by the cluster tend thread whenever ownership changes.
+ */
+public final class Partitions {
+	private final String[] namespaces;
+	private final Node[][][] replicas;
+
+	/**
+	 * Create empty snapshot.
+	 */
+	public Partitions() {
+		this.namespaces = new String[0];
+		this.replicas = new Node[0][][];
+	}
+
+	private Partitions(String[] namespaces, Node[][][] replicas) {
+		this.namespaces = namespaces;
+		this.replicas = replicas;
+	}
+
+	/**
+	 * Return namespace index or -1 if namespace does not exist.
+	 */
+	public int getNamespaceIndex(String namespace) {
+		String[] ns = namespaces;
+
+		// Namespaces are interned, so the reference comparison usually succeeds
+		// when the user's namespace is a string literal.
+		for (int i = 0; i < ns.length; i++) {
+			if (ns[i] == namespace) {
+				return i;
+			}
+		}
+
+		for (int i = 0; i < ns.length; i++) {
+			if (ns[i].equals(namespace)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return replica node arrays for namespace or null if namespace does not exist.
+	 * The first dimension is the replica index (0 = master) and the second dimension
+	 * is the partition id.  The arrays must not be modified.
+	 */
+	public Node[][] getReplicas(String namespace) {
+		int index = getNamespaceIndex(namespace);
+		return (index >= 0)? replicas[index] : null;
+	}
+
+	/**
+	 * Return replica node arrays for namespace index.
+	 */
+	public Node[][] getReplicas(int namespaceIndex) {
+		return replicas[namespaceIndex];
+	}
+
+	/**
+	 * Return namespace name for namespace index.
+	 */
+	public String getNamespace(int namespaceIndex) {
+		return namespaces[namespaceIndex];
+	}
+
+	/**
+	 * Return number of namespaces.
+	 */
+	public int size() {
+		return namespaces.length;
+	}
+
+	/**
+	 * Mutable copy of a partition snapshot used while parsing partition maps
+	 * in a cluster tend iteration.  Node arrays are only copied the first time they
+	 * are modified, so arrays that do not change are shared with the old snapshot.
+	 */
+	public static final class Builder {
+		private final ArrayList<String> namespaces;
+		private final ArrayList<Node[][]> replicas;
+		private final ArrayList<boolean[]> copied;
+		private final int partitionCount;
+		private boolean changed;
+
+		public Builder(Partitions source, int partitionCount) {
+			int size = source.namespaces.length;
+			this.namespaces = new ArrayList<String>(size + 1);
+			this.replicas = new ArrayList<Node[][]>(size + 1);
+			this.copied = new ArrayList<boolean[]>(size + 1);
+			this.partitionCount = partitionCount;
+
+			for (int i = 0; i < size; i++) {
+				Node[][] array = source.replicas[i];
+				namespaces.add(source.namespaces[i]);
+				replicas.add(array.clone());
+				copied.add(new boolean[array.length]);
+			}
+		}
+
+		/**
+		 * Return namespace index.  Add namespace if it does not exist.  If exact is true,
+		 * resize the namespace's replicas to replicaCount when the replication factor changed.
+		 */
+		public int getNamespaceIndex(String namespace, int replicaCount, boolean exact) {
+			int max = namespaces.size();
+
+			for (int i = 0; i < max; i++) {
+				if (namespaces.get(i).equals(namespace)) {
+					checkReplicaCount(i, replicaCount, exact);
+					return i;
+				}
+			}
+
+			Node[][] array = new Node[replicaCount][partitionCount];
+			boolean[] flags = new boolean[replicaCount];
+
+			for (int i = 0; i < replicaCount; i++) {
+				flags[i] = true;
+			}
+			namespaces.add(namespace.intern());
+			replicas.add(array);
+			copied.add(flags);
+			changed = true;
+			return max;
+		}
+
+		/**
+		 * Return index of namespace encoded as UTF-8 in a buffer.  Existing namespaces are
+		 * compared to the buffer directly, so a String is only created for a new namespace.
+		 */
+		public int getNamespaceIndex(byte[] buffer, int offset, int length, int replicaCount, boolean exact, StringBuilder sb) {
+			int max = namespaces.size();
+
+			for (int i = 0; i < max; i++) {
+				String ns = namespaces.get(i);
+
+				if (ns.length() == length && equals(ns, buffer, offset, length)) {
+					checkReplicaCount(i, replicaCount, exact);
+					return i;
+				}
+			}
+			return getNamespaceIndex(Buffer.utf8ToString(buffer, offset, length, sb), replicaCount, exact);
+		}
+
+		private static boolean equals(String ns, byte[] buffer, int offset, int length) {
+			// Non-ASCII namespaces never match and fall back to String comparison.
+			for (int i = 0; i < length; i++) {
+				if (buffer[offset + i] != ns.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void checkReplicaCount(int index, int replicaCount, boolean exact) {
+			Node[][] array = replicas.get(index);
+
+			if (exact && array.length != replicaCount) {
+				if (Log.infoEnabled()) {
+					Log.info("Namespace " + namespaces.get(index) + " replication factor changed from " + array.length + " to " + replicaCount);
+				}
+				resize(index, replicaCount);
+			}
+		}
+
+		private void resize(int index, int replicaCount) {
+			Node[][] source = replicas.get(index);
+			boolean[] sourceFlags = copied.get(index);
+			Node[][] target = new Node[replicaCount][];
+			boolean[] targetFlags = new boolean[replicaCount];
+			int i = 0;
+
+			// Copy existing entries.
+			for (; i < source.length && i < replicaCount; i++) {
+				target[i] = source[i];
+				targetFlags[i] = sourceFlags[i];
+			}
+
+			// Release ownership of dropped entries.
+			for (int j = i; j < source.length; j++) {
+				for (Node node : source[j]) {
+					if (node != null) {
+						node.addPartitionsOwned(j, -1);
+					}
+				}
+			}
+
+			// Create new entries.
+			for (; i < replicaCount; i++) {
+				target[i] = new Node[partitionCount];
+				targetFlags[i] = true;
+			}
+			replicas.set(index, target);
+			copied.set(index, targetFlags);
+			changed = true;
+		}
+
+		/**
+		 * Return number of namespaces.
+		 */
+		public int size() {
+			return namespaces.size();
+		}
+
+		/**
+		 * Return namespace name for namespace index.
+		 */
+		public String getNamespace(int namespaceIndex) {
+			return namespaces.get(namespaceIndex);
+		}
+
+		/**
+		 * Return number of replicas for namespace index.
+		 */
+		public int getReplicaCount(int namespaceIndex) {
+			return replicas.get(namespaceIndex).length;
+		}
+
+		public Node get(int namespaceIndex, int replicaIndex, int partitionId) {
+			return replicas.get(namespaceIndex)[replicaIndex][partitionId];
+		}
+
+		public void set(int namespaceIndex, int replicaIndex, int partitionId, Node node) {
+			Node[][] array = replicas.get(namespaceIndex);
+			boolean[] flags = copied.get(namespaceIndex);
+
+			Node old = array[replicaIndex][partitionId];
+
+			if (old == node) {
+				return;
+			}
+
+			if (! flags[replicaIndex]) {
+				// Copy on first write.
+				array[replicaIndex] = array[replicaIndex].clone();
+				flags[replicaIndex] = true;
+			}
+
+			// Maintain ownership counts, so they do not have to be computed from the map.
+			if (old != null) {
+				old.addPartitionsOwned(replicaIndex, -1);
+			}
+
+			if (node != null) {
+				node.addPartitionsOwned(replicaIndex, 1);
+			}
+			array[replicaIndex][partitionId] = node;
+			changed = true;
+		}
+
+		/**
+		 * Has partition ownership changed since this builder was created.
+		 */
+		public boolean isChanged() {
+			return changed;
+		}
+
+		/**
+		 * Create immutable snapshot.
+		 */
+		public Partitions build() {
+			int size = namespaces.size();
+			return new Partitions(namespaces.toArray(new String[size]), replicas.toArray(new Node[size][][]));
+		}
+	}
+}
@@ -36,7 +36,7 @@ public final class PeerParser {
 	public PeerParser(Cluster cluster, Connection conn, List<Peer> peers) {
 		this.cluster = cluster;
 		
-		String command = (cluster.tlsPolicy != null)? 
+		String command = (cluster.tlsContext != null)? 
 				cluster.useServicesAlternate ? "peers-tls-alt" : "peers-tls-std" :
 				cluster.useServicesAlternate ? "peers-clear-alt" : "peers-clear-std";
 			
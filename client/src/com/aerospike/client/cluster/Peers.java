@@ -16,22 +16,19 @@
  */
 package com.aerospike.client.cluster;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 
 import com.aerospike.client.Host;
 
 public final class Peers {
-	public final ArrayList<Peer> peers;
 	public final HashSet<Host> hosts;
 	public final HashMap<String,Node> nodes;
 	public int refreshCount;
 	public boolean usePeers;
 	public boolean genChanged;
 
-	public Peers(int peerCapacity, int addCapacity) {
-		peers = new ArrayList<Peer>(peerCapacity);
+	public Peers(int addCapacity) {
 		hosts = new HashSet<Host>(addCapacity);
 		nodes = new HashMap<String,Node>(addCapacity);
 		usePeers = true;
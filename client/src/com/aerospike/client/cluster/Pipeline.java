@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+
+import com.aerospike.client.command.Buffer;
+
+/**
+ * Connection shared by multiple synchronous single record commands.
+ * <p>
+ * Commands are written back to back without waiting for previous responses.  The server
+ * answers commands on a connection in the order they were received, so each command
+ * reads its response when all earlier responses have been read.  The pipeline reads each
+ * response in full before it is parsed and remembers how much of it has arrived.  A command
+ * that times out, either waiting for its turn or reading its response, abandons its slot
+ * and the next reader discards the rest of its response.  Other commands are not affected.
+ * Only IO errors close the pipeline and fail all outstanding commands with an IOException,
+ * so they can be retried on a new connection.
+ * <p>
+ * Responses are read through the connection's input stream with each reader's own
+ * timeout.  Writes never wait on that timeout, so a reader does not shorten the time
+ * a concurrent writer has to send a large command.
+ */
+public final class Pipeline {
+	private final Connection conn;
+	private final InputStream in;
+	private final int depth;
+	private final ArrayDeque<Ticket> pending = new ArrayDeque<Ticket>();
+	private final Object writeLock = new Object();
+	private byte[] response = new byte[8192];
+	private int responseOffset;
+	private int reserved;
+	private boolean reading;
+	private boolean closed;
+
+	public Pipeline(Connection conn, int depth) {
+		this.conn = conn;
+		this.in = conn.getInputStream();
+		this.depth = depth;
+	}
+
+	/**
+	 * Write command and return its place in the response order.  Wait for a free slot
+	 * if the maximum number of commands are already outstanding.  The timeout covers
+	 * both this call and {@link #awaitResponse(Ticket)}.
+	 */
+	public Ticket write(byte[] buffer, int length, int timeoutMillis) throws IOException {
+		Ticket ticket = new Ticket(timeoutMillis);
+
+		while (true) {
+			synchronized (this) {
+				checkClosed();
+
+				if (reserved < depth) {
+					reserved++;
+					break;
+				}
+
+				if (! canDiscard()) {
+					waitUntil(ticket);
+					continue;
+				}
+				reading = true;
+			}
+			// All slots may be held by abandoned commands.
+			discard(ticket);
+		}
+
+		try {
+			// Tickets must be queued in the same order as the commands are written.
+			synchronized (writeLock) {
+				synchronized (this) {
+					checkClosed();
+					pending.addLast(ticket);
+				}
+				conn.write(buffer, length);
+			}
+		}
+		catch (IOException ioe) {
+			close();
+			throw ioe;
+		}
+		return ticket;
+	}
+
+	/**
+	 * Wait until all earlier responses have been read, read this command's response and
+	 * return the connection to parse it.  {@link #complete()} must be called after
+	 * the response has been parsed.
+	 */
+	public Connection awaitResponse(Ticket ticket) throws IOException {
+		try {
+			while (true) {
+				synchronized (this) {
+					checkClosed();
+
+					if (! reading && pending.peekFirst() == ticket) {
+						reading = true;
+						break;
+					}
+
+					if (! canDiscard()) {
+						waitUntil(ticket);
+						continue;
+					}
+					reading = true;
+				}
+				discard(ticket);
+			}
+			readResponse(ticket);
+		}
+		catch (SocketTimeoutException ste) {
+			synchronized (this) {
+				// Response will be discarded by a later reader.
+				ticket.abandoned = true;
+
+				if (pending.peekFirst() == ticket) {
+					reading = false;
+				}
+				notifyAll();
+			}
+			throw ste;
+		}
+
+		// Response is parsed from memory, so parse errors never leave the socket out of sync.
+		conn.setReplay(response, responseOffset);
+		return conn;
+	}
+
+	/**
+	 * Release the command's slot after its response has been parsed.
+	 */
+	public void complete() {
+		conn.setReplay(null, 0);
+		conn.updateLastUsed();
+		next();
+	}
+
+	/**
+	 * Can the current thread discard the response of an abandoned command.
+	 */
+	private boolean canDiscard() {
+		Ticket head = pending.peekFirst();
+		return ! reading && head != null && head.abandoned;
+	}
+
+	/**
+	 * Read and drop the response of the abandoned command at the head of the pipeline.
+	 * The caller must have set reading.
+	 */
+	private void discard(Ticket ticket) throws IOException {
+		try {
+			readResponse(ticket);
+		}
+		catch (SocketTimeoutException ste) {
+			synchronized (this) {
+				reading = false;
+				notifyAll();
+			}
+			throw ste;
+		}
+		next();
+	}
+
+	/**
+	 * Remove the head command after its response has been read.
+	 */
+	private synchronized void next() {
+		pending.pollFirst();
+		reserved--;
+		responseOffset = 0;
+		reading = false;
+		notifyAll();
+	}
+
+	/**
+	 * Read response of the head command with the ticket's remaining time.  Resume where
+	 * a previous reader timed out.
+	 */
+	private void readResponse(Ticket ticket) throws IOException {
+		try {
+			readBytes(ticket, 8);
+
+			long size = Buffer.bytesToLong(response, 0) & 0xFFFFFFFFFFFFL;
+			int length = 8 + (int)size;
+
+			if (response.length < length) {
+				byte[] buf = new byte[length];
+				System.arraycopy(response, 0, buf, 0, responseOffset);
+				response = buf;
+			}
+			readBytes(ticket, length);
+		}
+		catch (SocketTimeoutException ste) {
+			throw ste;
+		}
+		catch (IOException ioe) {
+			close();
+			throw ioe;
+		}
+	}
+
+	private void readBytes(Ticket ticket, int length) throws IOException {
+		while (responseOffset < length) {
+			conn.setTimeout(ticket.getRemainingMillis());
+
+			int count = in.read(response, responseOffset, length - responseOffset);
+
+			if (count < 0) {
+				throw new EOFException();
+			}
+			responseOffset += count;
+		}
+	}
+
+	/**
+	 * Is pipeline usable.  An idle pipeline is not valid after the maximum socket idle time.
+	 */
+	synchronized boolean isValid() {
+		return ! closed && (reserved > 0 || conn.isValid());
+	}
+
+	/**
+	 * Return number of commands written or waiting to be written.
+	 */
+	public synchronized int getOutstanding() {
+		return reserved;
+	}
+
+	/**
+	 * Close connection and fail outstanding commands.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		conn.close();
+	}
+
+	private void checkClosed() throws IOException {
+		if (closed) {
+			throw new EOFException("Pipeline closed");
+		}
+	}
+
+	private void waitUntil(Ticket ticket) throws SocketTimeoutException {
+		long wait = ticket.getRemainingMillis();
+
+		try {
+			wait(wait);
+		}
+		catch (InterruptedException ie) {
+			throw new SocketTimeoutException("Pipeline wait interrupted");
+		}
+	}
+
+	/**
+	 * Position of a command in the pipeline response order.
+	 */
+	public static final class Ticket {
+		private final long deadline;
+		private final int timeoutMillis;
+		private boolean abandoned;
+
+		private Ticket(int timeoutMillis) {
+			this.deadline = (timeoutMillis > 0)? System.currentTimeMillis() + timeoutMillis : 0L;
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		/**
+		 * Return milliseconds left before the command times out, or zero if it has no timeout.
+		 */
+		private int getRemainingMillis() throws SocketTimeoutException {
+			if (deadline == 0) {
+				return 0;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+
+			if (remaining <= 0) {
+				throw new SocketTimeoutException("Pipeline timeout: " + timeoutMillis + "ms");
+			}
+			return (int)remaining;
+		}
+	}
+}
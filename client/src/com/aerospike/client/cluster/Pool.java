@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Lock-free, striped LIFO connection pool.
+ * <p>
+ * Each thread is assigned a home stripe by thread id.  Connections are returned to
+ * and taken from the head of the home stripe, so a thread usually reuses the same
+ * warm connection it used last.  Other stripes are only searched when the home
+ * stripe is empty.  The least recently used items collect at the tail of each stripe,
+ * where the cluster tend thread can reap them without disturbing warm connections.
+ * <p>
+ * The pool itself is unbounded.  The caller is expected to bound the total number
+ * of connections it creates (see {@link Node#getConnection(int)}).
+ */
+public final class Pool<T> {
+	private final ConcurrentLinkedDeque<T>[] stripes;
+	private final int mask;
+
+	/**
+	 * Create pool with one stripe per available processor.
+	 */
+	public Pool() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create pool with given number of stripes.  The stripe count is rounded up
+	 * to the next power of 2.
+	 */
+	@SuppressWarnings("unchecked")
+	public Pool(int stripeCount) {
+		int count = 1;
+
+		while (count < stripeCount) {
+			count <<= 1;
+		}
+
+		stripes = (ConcurrentLinkedDeque<T>[])new ConcurrentLinkedDeque<?>[count];
+		mask = count - 1;
+
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new ConcurrentLinkedDeque<T>();
+		}
+	}
+
+	/**
+	 * Take most recently used item from the current thread's stripe.  If that stripe
+	 * is empty, take from the other stripes.  Return null if the pool is empty.
+	 */
+	public T poll() {
+		int home = getStripeIndex();
+		T item = stripes[home].pollFirst();
+
+		if (item != null) {
+			return item;
+		}
+
+		for (int i = 1; i < stripes.length; i++) {
+			item = stripes[(home + i) & mask].pollFirst();
+
+			if (item != null) {
+				return item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return item to the head of the current thread's stripe.
+	 */
+	public void offer(T item) {
+		stripes[getStripeIndex()].offerFirst(item);
+	}
+
+	/**
+	 * Take least recently used item from the given stripe.
+	 * Return null if the stripe is empty.
+	 */
+	public T pollTail(int stripe) {
+		return stripes[stripe].pollLast();
+	}
+
+	/**
+	 * Put item on the tail of the given stripe.
+	 */
+	public void offerTail(int stripe, T item) {
+		stripes[stripe].offerLast(item);
+	}
+
+	/**
+	 * Return number of stripes.
+	 */
+	public int getStripeCount() {
+		return stripes.length;
+	}
+
+	private int getStripeIndex() {
+		// Thread ids are assigned sequentially, so neighboring threads land on different stripes.
+		return (int)Thread.currentThread().getId() & mask;
+	}
+}
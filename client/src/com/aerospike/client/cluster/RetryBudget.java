@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that limits retries to a percentage of successful commands.
+ * <p>
+ * Each successful command deposits a fraction of a token and each retry withdraws
+ * a whole token.  The bucket starts full, so a client can retry a short burst of
+ * failures before any traffic has succeeded.  When the bucket is empty, commands
+ * fail with their last error instead of retrying.
+ */
+public final class RetryBudget {
+	/**
+	 * Balance units per retry token.  Deposits are in percent of a token.
+	 */
+	private static final long TOKEN = 100;
+
+	private final int percent;
+	private final long maxBalance;
+	private final AtomicLong balance;
+
+	/**
+	 * Create retry budget.
+	 *
+	 * @param percent		retry tokens earned per 100 successful commands, zero disables budget
+	 * @param burst			maximum retry tokens that can be accumulated
+	 */
+	public RetryBudget(int percent, int burst) {
+		this.percent = percent;
+		this.maxBalance = Math.max(1, burst) * TOKEN;
+		this.balance = new AtomicLong(maxBalance);
+	}
+
+	/**
+	 * Is retry budget enforced.
+	 */
+	public boolean isEnabled() {
+		return percent > 0;
+	}
+
+	/**
+	 * Earn retry credit for a successful command.
+	 */
+	public void deposit() {
+		if (percent <= 0) {
+			return;
+		}
+
+		while (true) {
+			long current = balance.get();
+
+			// Avoid contended writes when the bucket is already full.
+			if (current >= maxBalance) {
+				return;
+			}
+
+			if (balance.compareAndSet(current, Math.min(current + percent, maxBalance))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Withdraw a retry token.  Return false if the budget is exhausted.
+	 */
+	public boolean tryWithdraw() {
+		if (percent <= 0) {
+			return true;
+		}
+
+		while (true) {
+			long current = balance.get();
+
+			if (current < TOKEN) {
+				return false;
+			}
+
+			if (balance.compareAndSet(current, current - TOKEN)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Return number of whole retry tokens available.
+	 */
+	public long getTokens() {
+		return balance.get() / TOKEN;
+	}
+}
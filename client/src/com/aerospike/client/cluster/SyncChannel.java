@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aerospike.client.util.ThreadLocalData;
+
+/**
+ * Blocking socket channel used by a synchronous connection.  Data is copied through
+ * thread local direct buffers, so the JVM does not allocate a temporary native buffer
+ * on each socket call.  {@link #readFully(byte[], int)} blocks in the socket read and
+ * {@link ChannelTimer} closes the channel when the read timeout expires, like a sync
+ * command closes its connection after a timeout.  The input stream used by pipelines
+ * and multi-record parsers applies the socket timeout instead, so the connection stays
+ * open after a timeout.  Writes block without a timeout, like socket stream writes.
+ * Timeouts are reported as {@link SocketTimeoutException}.
+ */
+final class SyncChannel {
+	private static final long TIMED_OUT = -1L;
+
+	private final SocketChannel channel;
+	private final Socket socket;
+	private final InputStream in;
+	private final AtomicLong readDeadline = new AtomicLong();
+	private int timeoutMillis;
+
+	SyncChannel(InetSocketAddress address, int timeoutMillis, int connectTimeoutMillis) throws IOException {
+		this.channel = SocketChannel.open();
+		this.socket = channel.socket();
+		this.timeoutMillis = timeoutMillis;
+
+		try {
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(timeoutMillis);
+			socket.connect(address, connectTimeoutMillis);
+			this.in = socket.getInputStream();
+		}
+		catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		ChannelTimer.add(this);
+	}
+
+	Socket getSocket() {
+		return socket;
+	}
+
+	InputStream getInputStream() {
+		return in;
+	}
+
+	void setTimeout(int timeoutMillis) throws SocketException {
+		this.timeoutMillis = timeoutMillis;
+		socket.setSoTimeout(timeoutMillis);
+	}
+
+	/**
+	 * Write buffer to socket.  Messages larger than one direct buffer are sent with a
+	 * gathering write.
+	 */
+	void write(byte[] buffer, int length) throws IOException {
+		ByteBuffer[] buffers = ThreadLocalData.getDirectBuffers(length);
+		int pos = 0;
+
+		while (pos < length) {
+			int count = 0;
+			int filled = 0;
+
+			while (count < buffers.length && buffers[count] != null && pos + filled < length) {
+				ByteBuffer bb = buffers[count++];
+				int len = Math.min(bb.capacity(), length - pos - filled);
+				bb.clear();
+				bb.put(buffer, pos + filled, len);
+				bb.flip();
+				filled += len;
+			}
+
+			long remaining = filled;
+
+			while (remaining > 0) {
+				long len = channel.write(buffers, 0, count);
+
+				if (len == 0) {
+					// Older JVMs switch the channel to non-blocking mode while a timed
+					// stream read is in progress on another thread.
+					Thread.yield();
+				}
+				remaining -= len;
+			}
+			pos += filled;
+		}
+	}
+
+	/**
+	 * Read exactly length bytes from socket.
+	 */
+	void readFully(byte[] buffer, int length) throws IOException {
+		ByteBuffer bb = ThreadLocalData.getDirectBuffers(length)[0];
+		int pos = 0;
+
+		while (pos < length) {
+			bb.clear();
+			bb.limit(Math.min(bb.capacity(), length - pos));
+
+			while (bb.hasRemaining()) {
+				read(bb);
+			}
+			bb.flip();
+
+			int len = bb.remaining();
+			bb.get(buffer, pos, len);
+			pos += len;
+		}
+	}
+
+	private void read(ByteBuffer bb) throws IOException {
+		long deadline = (timeoutMillis > 0)? System.currentTimeMillis() + timeoutMillis : 0L;
+		readDeadline.set(deadline);
+
+		int len;
+
+		try {
+			len = channel.read(bb);
+		}
+		catch (ClosedChannelException cce) {
+			if (readDeadline.get() == TIMED_OUT) {
+				throw new SocketTimeoutException("Timeout: " + timeoutMillis + "ms");
+			}
+			throw cce;
+		}
+
+		if (! readDeadline.compareAndSet(deadline, 0L)) {
+			// Timer closed the channel after the read returned.
+			throw new SocketTimeoutException("Timeout: " + timeoutMillis + "ms");
+		}
+
+		if (len < 0) {
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * Close channel if a read has passed its deadline.  Called by {@link ChannelTimer}.
+	 */
+	void checkTimeout(long now) {
+		long deadline = readDeadline.get();
+
+		if (deadline > 0 && now >= deadline && readDeadline.compareAndSet(deadline, TIMED_OUT)) {
+			try {
+				channel.close();
+			}
+			catch (Exception e) {
+			}
+		}
+	}
+
+	void close() throws IOException {
+		ChannelTimer.remove(this);
+		channel.close();
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.cluster;
+
+import java.io.FileInputStream;
+import java.lang.ref.SoftReference;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.policy.TlsPolicy;
+
+/**
+ * TLS settings shared by all connections of a cluster.
+ * <p>
+ * A single SSLContext is created per cluster, so its client session cache is shared by
+ * all connections.  Sockets and engines are created with the node address as the peer,
+ * which allows JSSE to resume a cached session on reconnect to the same node.
+ */
+public final class TlsContext {
+	// Contexts created for connections that are not owned by a cluster.
+	private static final Map<TlsPolicy,SoftReference<TlsContext>> SharedContexts = new WeakHashMap<TlsPolicy,SoftReference<TlsContext>>();
+
+	/**
+	 * Return context shared by all callers that use the same policy instance, so
+	 * connections created outside a cluster can still resume TLS sessions.
+	 */
+	public static TlsContext getShared(TlsPolicy policy) throws AerospikeException {
+		synchronized (SharedContexts) {
+			SoftReference<TlsContext> ref = SharedContexts.get(policy);
+			TlsContext context = (ref != null)? ref.get() : null;
+			
+			if (context == null) {
+				context = new TlsContext(policy, null);
+				SharedContexts.put(policy, new SoftReference<TlsContext>(context));
+			}
+			return context;
+		}
+	}
+
+	private final TlsPolicy policy;
+	private final SSLContext context;
+	private final ClusterStats stats;
+
+	/**
+	 * Create TLS context.
+	 *
+	 * @param policy		TLS policy
+	 * @param stats			handshake metrics destination, may be null
+	 */
+	public TlsContext(TlsPolicy policy, ClusterStats stats) throws AerospikeException {
+		this.policy = policy;
+		this.stats = stats;
+
+		try {
+			if (policy.context != null) {
+				context = policy.context;
+			}
+			else {
+				// Null trust managers use the JVM default trust store.  Key managers must
+				// be loaded explicitly, so a client certificate configured with the
+				// javax.net.ssl.keyStore properties is sent on mutual TLS.
+				context = SSLContext.getInstance("TLS");
+				context.init(getDefaultKeyManagers(), null, null);
+			}
+		}
+		catch (Exception e) {
+			throw new AerospikeException("Failed to create TLS context", e);
+		}
+
+		SSLSessionContext sessionContext = context.getClientSessionContext();
+
+		if (sessionContext != null) {
+			if (policy.sessionCacheSize > 0) {
+				sessionContext.setSessionCacheSize(policy.sessionCacheSize);
+			}
+
+			if (policy.sessionTimeout > 0) {
+				sessionContext.setSessionTimeout(policy.sessionTimeout);
+			}
+		}
+	}
+
+	/**
+	 * Return key managers for the keystore defined by the javax.net.ssl.keyStore system
+	 * properties, the same keystore used by the JVM default SSLContext.  Return null if
+	 * no keystore is defined.
+	 */
+	private static KeyManager[] getDefaultKeyManagers() throws Exception {
+		String path = System.getProperty("javax.net.ssl.keyStore", "");
+		
+		if (path.length() == 0) {
+			return null;
+		}
+		
+		String type = System.getProperty("javax.net.ssl.keyStoreType", KeyStore.getDefaultType());
+		String provider = System.getProperty("javax.net.ssl.keyStoreProvider", "");
+		String password = System.getProperty("javax.net.ssl.keyStorePassword");
+		char[] pass = (password != null)? password.toCharArray() : null;
+		
+		KeyStore keyStore = (provider.length() == 0)? KeyStore.getInstance(type) : KeyStore.getInstance(type, provider);
+		
+		if (path.equals("NONE")) {
+			// Keystore that is not file based, like PKCS11.
+			keyStore.load(null, pass);
+		}
+		else {
+			FileInputStream in = new FileInputStream(path);
+			
+			try {
+				keyStore.load(in, pass);
+			}
+			finally {
+				in.close();
+			}
+		}
+		
+		KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		factory.init(keyStore, pass);
+		return factory.getKeyManagers();
+	}
+
+	public TlsPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Layer TLS over a connected socket.  The handshake is not started.
+	 */
+	public SSLSocket createSocket(Socket socket, InetSocketAddress address) throws Exception {
+		SSLSocket sslSocket = (SSLSocket)context.getSocketFactory().createSocket(socket, address.getHostString(), address.getPort(), true);
+		sslSocket.setUseClientMode(true);
+
+		if (policy.protocols != null) {
+			sslSocket.setEnabledProtocols(policy.protocols);
+		}
+
+		if (policy.ciphers != null) {
+			sslSocket.setEnabledCipherSuites(policy.ciphers);
+		}
+		return sslSocket;
+	}
+
+	/**
+	 * Create client engine for a non-blocking connection.
+	 */
+	public SSLEngine createEngine(InetSocketAddress address) {
+		SSLEngine engine = context.createSSLEngine(address.getHostString(), address.getPort());
+		engine.setUseClientMode(true);
+
+		if (policy.protocols != null) {
+			engine.setEnabledProtocols(policy.protocols);
+		}
+
+		if (policy.ciphers != null) {
+			engine.setEnabledCipherSuites(policy.ciphers);
+		}
+		return engine;
+	}
+
+	/**
+	 * Run handshake on a blocking socket and validate the server certificate.
+	 */
+	public void handshake(SSLSocket sslSocket, String tlsName) throws Exception {
+		long beginMillis = System.currentTimeMillis();
+		long beginNanos = System.nanoTime();
+		sslSocket.startHandshake();
+		onHandshake(sslSocket.getSession(), tlsName, beginMillis, beginNanos);
+	}
+
+	/**
+	 * Record handshake metrics and validate the server certificate after a handshake
+	 * that started at the given times.
+	 */
+	public void onHandshake(SSLSession session, String tlsName, long beginMillis, long beginNanos) throws Exception {
+		if (stats != null) {
+			// A resumed session was created by an earlier handshake.
+			stats.addTlsHandshake(System.nanoTime() - beginNanos, session.getCreationTime() < beginMillis);
+		}
+
+		if (! policy.encryptOnly) {
+			X509Certificate cert = (X509Certificate)session.getPeerCertificates()[0];
+			Connection.validateServerCertificate(policy, tlsName, cert);
+		}
+	}
+}
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ObjectInputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.aerospike.client.AerospikeException;
@@ -84,6 +85,100 @@ public final class Buffer {
 			return null;
 		}
 	}
+
+	//-------------------------------------------------------
+	// ByteBuffer conversions.  These read directly from the buffer at absolute
+	// offsets, so a response does not have to be copied to a byte array first.
+	// The buffer position is changed when bytes are copied out.
+	//-------------------------------------------------------
+
+	public static Value bytesToKeyValue(int type, ByteBuffer buf, int offset, int len)
+		throws AerospikeException {
+		
+		switch (type) {
+		case ParticleType.STRING:
+			return Value.get(Buffer.utf8ToString(buf, offset, len));
+			
+		case ParticleType.INTEGER:
+			if (len == 8) {
+				return new Value.LongValue(buf.getLong(offset));
+			}
+			return bytesToLongValue(copyBytes(buf, offset, len), 0, len);
+		
+		case ParticleType.DOUBLE:
+			return new Value.DoubleValue(Double.longBitsToDouble(buf.getLong(offset)));
+
+		case ParticleType.BLOB:
+			return Value.get(copyBytes(buf, offset, len));
+		
+		default:
+			return null;
+		}
+	}
+
+	public static Object bytesToParticle(int type, ByteBuffer buf, int offset, int len)
+		throws AerospikeException {
+		
+		switch (type) {
+		case ParticleType.STRING:
+			return Buffer.utf8ToString(buf, offset, len);
+			
+		case ParticleType.INTEGER:
+			if (len == 8) {
+				return buf.getLong(offset);
+			}
+			break;
+		
+		case ParticleType.DOUBLE:
+			return Double.longBitsToDouble(buf.getLong(offset));
+
+		case ParticleType.BLOB:
+			return copyBytes(buf, offset, len);
+		}
+		
+		// Decode other types from a copy of the particle bytes.
+		return bytesToParticle(type, copyBytes(buf, offset, len), 0, len);
+	}
+
+	public static String utf8ToString(ByteBuffer buf, int offset, int length) {
+		if (length == 0) {
+			return "";
+		}
+		
+		char[] charBuffer = new char[length];
+		int charCount = 0;
+		int limit = offset + length;
+		int i = offset;
+		
+		while (i < limit) {
+			int b1 = buf.get(i);
+			
+			if (b1 >= 0) {
+				charBuffer[charCount++] = (char)b1;
+				i++;
+			}
+			else if ((b1 >> 5) == -2) {
+				int b2 = buf.get(i + 1);
+				charBuffer[charCount++] = (char) (((b1 << 6) ^ b2) ^ 0x0f80);
+				i += 2;
+			}
+			else {
+				// Encountered an UTF encoding which uses more than 2 bytes.
+				return utf8ToString(copyBytes(buf, offset, length), 0, length);
+			}
+		}
+		return new String(charBuffer, 0, charCount);
+	}
+
+	/**
+	 * Copy len bytes starting at offset to a new array.
+	 */
+	public static byte[] copyBytes(ByteBuffer buf, int offset, int len) {
+		byte[] bytes = new byte[len];
+		buf.position(offset);
+		buf.get(bytes);
+		return bytes;
+	}
 	
 	/*
 	private static Object parseList(byte[] buf, int offset, int len) throws AerospikeException {
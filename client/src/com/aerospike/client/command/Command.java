@@ -16,9 +16,8 @@
  */
 package com.aerospike.client.command;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.BatchRead;
@@ -856,7 +855,7 @@ public abstract class Command {
 		dataBuffer[13] = 0; // clear the result code
 		Buffer.intToBytes(generation, dataBuffer, 14);
 		Buffer.intToBytes(policy.expiration, dataBuffer, 18);
-		Buffer.intToBytes(policy.timeout, dataBuffer, 22);
+		Buffer.intToBytes(getServerTimeout(policy), dataBuffer, 22);
 		Buffer.shortToBytes(fieldCount, dataBuffer, 26);
 		Buffer.shortToBytes(operationCount, dataBuffer, 28);		
 		dataOffset = MSG_TOTAL_HEADER_SIZE;
@@ -878,12 +877,64 @@ public abstract class Command {
 		for (int i = 11; i < 22; i++) {
 			dataBuffer[i] = 0;
 		}
-		Buffer.intToBytes(policy.timeout, dataBuffer, 22);
+		Buffer.intToBytes(getServerTimeout(policy), dataBuffer, 22);
 		Buffer.shortToBytes(fieldCount, dataBuffer, 26);
 		Buffer.shortToBytes(operationCount, dataBuffer, 28);
 		dataOffset = MSG_TOTAL_HEADER_SIZE;
 	}
 
+	/**
+	 * Return total transaction timeout including retries.  Zero means no total timeout.
+	 */
+	protected static final int getTotalTimeout(Policy policy) {
+		if (policy.totalTimeout > 0 || policy.socketTimeout > 0) {
+			return policy.totalTimeout;
+		}
+		// Legacy timeout is reset on each retry when retryOnTimeout is enabled.
+		return policy.retryOnTimeout ? 0 : policy.timeout;
+	}
+
+	/**
+	 * Return socket timeout for each transaction attempt.  Zero means no socket timeout.
+	 */
+	protected static final int getSocketTimeout(Policy policy) {
+		int totalTimeout = getTotalTimeout(policy);
+		int socketTimeout = (policy.totalTimeout > 0 || policy.socketTimeout > 0)? policy.socketTimeout : policy.timeout;
+		
+		if (totalTimeout > 0 && (socketTimeout == 0 || socketTimeout > totalTimeout)) {
+			socketTimeout = totalTimeout;
+		}
+		return socketTimeout;
+	}
+
+	/**
+	 * Return milliseconds to sleep before the given retry, starting at one.
+	 */
+	protected static final int getRetrySleep(Policy policy, int retry) {
+		int sleep = policy.sleepBetweenRetries;
+		
+		if (sleep <= 0 || policy.sleepMultiplier <= 1.0) {
+			return sleep;
+		}
+		
+		// Exponential backoff with equal jitter.
+		double backoff = Math.min(sleep * Math.pow(policy.sleepMultiplier, retry - 1), Integer.MAX_VALUE);
+		
+		if (policy.maxSleepBetweenRetries > 0 && backoff > policy.maxSleepBetweenRetries) {
+			backoff = policy.maxSleepBetweenRetries;
+		}
+		int half = (int)(backoff / 2);
+		return half + ThreadLocalRandom.current().nextInt(half + 1);
+	}
+
+	/**
+	 * Return transaction timeout sent to the server on the first attempt.
+	 */
+	private static int getServerTimeout(Policy policy) {
+		int totalTimeout = getTotalTimeout(policy);
+		return (totalTimeout > 0)? totalTimeout : getSocketTimeout(policy);
+	}
+
 	private final void writeKey(Policy policy, Key key) {
 		// Write key into buffer.
 		if (key.namespace != null) {
@@ -999,6 +1050,21 @@ public abstract class Command {
 	}
 	
 	public final Node getReadNode(Cluster cluster, Partition partition, Replica replica)
+	{
+		Node node = getReplicaNode(cluster, partition, replica);
+		
+		if (node.isCircuitOpen() || (cluster.rerouteOnLimit() && node.isLimitReached())) {
+			// Route read to another replica if one is available.
+			Node other = cluster.getReplicaNode(partition, node);
+			
+			if (other != null) {
+				return other;
+			}
+		}
+		return node;
+	}
+
+	private final Node getReplicaNode(Cluster cluster, Partition partition, Replica replica)
 	{
 		switch (replica)
 		{
@@ -1011,6 +1077,12 @@ public abstract class Command {
 			case SEQUENCE:
 				return getSequenceNode(cluster, partition);
 
+			case PREFER_RACK:
+				return cluster.getRackNode(partition);
+
+			case ADAPTIVE:
+				return cluster.getAdaptiveNode(partition);
+
 			default:
 			case RANDOM:
 				return cluster.getRandomNode();
@@ -1019,15 +1091,14 @@ public abstract class Command {
 
 	public final Node getSequenceNode(Cluster cluster, Partition partition)
 	{
-		// Must copy hashmap reference for copy on write semantics to work.
-		HashMap<String,AtomicReferenceArray<Node>[]> map = cluster.partitionMap;
-		AtomicReferenceArray<Node>[] replicaArray = map.get(partition.namespace);
+		// Must copy reference for copy on write semantics to work.
+		Node[][] replicas = cluster.partitions.getReplicas(partition.namespace);
 		
-		if (replicaArray != null) {
-			for (int i = 0; i < replicaArray.length; i++) {
-				int index = Math.abs(sequence % replicaArray.length);						
+		if (replicas != null) {
+			for (int i = 0; i < replicas.length; i++) {
+				int index = Math.abs(sequence % replicas.length);						
 				sequence++;
-				Node node = replicaArray[index].get(partition.partitionId);
+				Node node = replicas[index][partition.partitionId];
 				
 				if (node != null && node.isActive()) {
 					return node;
@@ -1037,6 +1108,27 @@ public abstract class Command {
 		return cluster.getRandomNode();		
 	}
 	
+	/**
+	 * Add successful command to node statistics.  Latency is only added for
+	 * single record commands.
+	 */
+	protected final void addLatency(Node node, long begin) {
+		if (isSingleRecord()) {
+			node.addLatency(System.nanoTime() - begin);
+		}
+		else {
+			node.addSuccess();
+		}
+	}
+
+	/**
+	 * Does command access a single record.  Multi-record commands (batch, scan and query)
+	 * override this method because their latency depends on the number of records returned.
+	 */
+	protected boolean isSingleRecord() {
+		return true;
+	}
+
 	protected abstract Node getNode() throws AerospikeException.InvalidNode;
 	protected abstract void writeBuffer() throws AerospikeException;
 }
@@ -53,6 +53,11 @@ public abstract class MultiCommand extends SyncCommand {
 		return node;
 	}
 
+	@Override
+	protected final boolean isSingleRecord() {
+		return false;
+	}
+
 	protected final void parseResult(Connection conn) throws IOException {	
 		// Read socket into receive buffer one record at a time.  Do not read entire receive size
 		// because the thread local receive buffer would be too big.  Also, scan callbacks can nest 
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.command;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.cluster.Cluster;
+import com.aerospike.client.cluster.ClusterStats;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.Policy;
+
+/**
+ * Synchronous hedged read.  The read is run in the cluster thread pool.  If it has not
+ * completed within {@link Policy#hedgeDelay}, the same read is sent to another replica.
+ * The first successful response is returned.  The other read completes in the background
+ * and its response is discarded.
+ * <p>
+ * The primary read can not run in the calling thread, because a blocking socket read
+ * can not be abandoned when the hedge wins.
+ */
+public final class ReadHedgeExecutor {
+	public static Record execute(Cluster cluster, Policy policy, Key key, String[] binNames) {
+		ClusterStats stats = cluster.getStats();
+		stats.addHedgeRead();
+
+		ExecutorCompletionService<Record> service = new ExecutorCompletionService<Record>(cluster.getThreadPool());
+		HedgeCommand primary = new HedgeCommand(cluster, policy, key, binNames, null);
+		
+		// Resolve primary node before submitting, so the hedge can avoid it even when the
+		// primary has not started yet because the thread pool is busy.
+		primary.pinNode();
+		service.submit(primary);
+
+		Future<Record> hedgeFuture = null;
+		int pending = 1;
+		AerospikeException exception = null;
+
+		try {
+			Future<Record> future = service.poll(policy.hedgeDelay, TimeUnit.MILLISECONDS);
+
+			if (future == null) {
+				Node node = cluster.getReplicaNode(primary.partition, primary.node);
+
+				if (node != null) {
+					hedgeFuture = service.submit(new HedgeCommand(cluster, policy, key, binNames, node));
+					stats.addHedgeSent();
+					pending++;
+				}
+				future = service.take();
+			}
+
+			while (true) {
+				try {
+					Record record = future.get();
+
+					if (future == hedgeFuture) {
+						stats.addHedgeWin();
+					}
+					return record;
+				}
+				catch (ExecutionException ee) {
+					// Keep first failure.  Wait for other read if it exists.
+					if (exception == null) {
+						exception = toAerospikeException(ee.getCause());
+					}
+
+					if (--pending == 0) {
+						throw exception;
+					}
+				}
+				future = service.take();
+			}
+		}
+		catch (InterruptedException ie) {
+			throw new AerospikeException(ie);
+		}
+	}
+
+	private static AerospikeException toAerospikeException(Throwable t) {
+		if (t instanceof AerospikeException) {
+			return (AerospikeException)t;
+		}
+		return new AerospikeException(t);
+	}
+
+	private static final class HedgeCommand extends ReadCommand implements Callable<Record> {
+		private final Node hedgeNode;
+		private Node pinnedNode;
+		private volatile Node node;
+
+		private HedgeCommand(Cluster cluster, Policy policy, Key key, String[] binNames, Node hedgeNode) {
+			super(cluster, policy, key, binNames);
+			this.hedgeNode = hedgeNode;
+		}
+
+		/**
+		 * Resolve the node of the first attempt in the calling thread.  If no node is
+		 * available, the first attempt resolves its node in the normal retry loop.
+		 */
+		private void pinNode() {
+			try {
+				pinnedNode = node = super.getNode();
+			}
+			catch (AerospikeException.InvalidNode ine) {
+			}
+		}
+
+		@Override
+		protected Node getNode() {
+			// Remember node so the hedge read can be sent to a different node.
+			if (hedgeNode != null) {
+				node = hedgeNode;
+			}
+			else if (pinnedNode != null) {
+				node = pinnedNode;
+				pinnedNode = null;
+			}
+			else {
+				node = super.getNode();
+			}
+			return node;
+		}
+
+		@Override
+		public Record call() {
+			execute();
+			return getRecord();
+		}
+	}
+}
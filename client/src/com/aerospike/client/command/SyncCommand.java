@@ -22,6 +22,7 @@ import java.net.SocketTimeoutException;
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.cluster.Connection;
 import com.aerospike.client.cluster.Node;
+import com.aerospike.client.cluster.Pipeline;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.util.Util;
 
@@ -29,8 +30,11 @@ public abstract class SyncCommand extends Command {
 
 	public final void execute() {
 		Policy policy = getPolicy();        
-		int remainingMillis = policy.timeout;
-		long limit = System.currentTimeMillis() + remainingMillis;
+		int socketTimeout = getSocketTimeout(policy);
+		int totalTimeout = getTotalTimeout(policy);
+		long deadline = (totalTimeout > 0)? System.currentTimeMillis() + totalTimeout : 0L;
+		int attemptTimeout = socketTimeout;
+		int serverTimeout = (totalTimeout > 0)? totalTimeout : socketTimeout;
 		Node node = null;
 		Exception exception = null;
         int failedNodes = 0;
@@ -41,56 +45,98 @@ public abstract class SyncCommand extends Command {
 		while (true) {
 			try {		
 				node = getNode();
-				Connection conn = node.getConnection(remainingMillis);
+				node.checkCircuit();
+				node.acquirePermit(attemptTimeout);
 				
 				try {
-					// Set command buffer.
-					writeBuffer();
-
-					// Check if timeout needs to be changed in send buffer.
-					if (remainingMillis != policy.timeout) {
-						// Reset timeout in send buffer (destined for server) and socket.
-						Buffer.intToBytes(remainingMillis, dataBuffer, 22);
+					// Only single record commands read exactly one response and can share a pipeline.
+					Pipeline pipeline = isSingleRecord()? node.getPipeline(attemptTimeout) : null;
+					
+					if (pipeline != null) {
+						long begin = System.nanoTime();
+						
+						try {
+							writeBuffer();
+							Buffer.intToBytes(serverTimeout, dataBuffer, 22);
+							executePipeline(pipeline, attemptTimeout);
+							addLatency(node, begin);
+							return;
+						}
+						catch (AerospikeException ae) {
+							if (ae.keepConnection()) {
+								addLatency(node, begin);
+							}
+							throw ae;
+						}
+						catch (SocketTimeoutException ste) {
+							// Waiting for a pipeline slot or response timed out.  Retry if total timeout allows.
+							node.addError();
+							exception = ste;
+						}
+						catch (IOException ioe) {
+							// Pipeline has been closed.  Retry on a new pipeline.
+							node.addError();
+							exception = new AerospikeException(ioe);
+						}
 					}
+					else {
+						Connection conn = node.getConnection(attemptTimeout);
+						long begin = System.nanoTime();
+				
+						try {
+							// Set command buffer.
+							writeBuffer();
+
+							// Send remaining time to server, so it does not work past the client deadline.
+							Buffer.intToBytes(serverTimeout, dataBuffer, 22);
 					
-					// Send command.
-					conn.write(dataBuffer, dataOffset);
+							// Send command.
+							conn.write(dataBuffer, dataOffset);
 					
-					// Parse results.
-					parseResult(conn);
+							// Parse results.
+							parseResult(conn);
 					
-					// Put connection back in pool.
-					node.putConnection(conn);
+							// Put connection back in pool.
+							node.putConnection(conn);
+							addLatency(node, begin);
 					
-					// Command has completed successfully.  Exit method.
-					return;
-				}
-				catch (AerospikeException ae) {
-					if (ae.keepConnection()) {
-						// Put connection back in pool.
-						node.putConnection(conn);						
-					}
-					else {
-						// Close socket to flush out possible garbage.  Do not put back in pool.
-						node.closeConnection(conn);
+							// Command has completed successfully.  Exit method.
+							return;
+						}
+						catch (AerospikeException ae) {
+							if (ae.keepConnection()) {
+								// Put connection back in pool.
+								node.putConnection(conn);						
+								addLatency(node, begin);
+							}
+							else {
+								// Close socket to flush out possible garbage.  Do not put back in pool.
+								node.closeConnection(conn);
+							}
+							throw ae;
+						}
+						catch (RuntimeException re) {
+							// All runtime exceptions are considered fatal.  Do not retry.
+							// Close socket to flush out possible garbage.  Do not put back in pool.
+							node.closeConnection(conn);
+							throw re;
+						}
+						catch (SocketTimeoutException ste) {
+							// Socket timeout has been reached.  Retry if total timeout allows.
+							node.closeConnection(conn);
+							node.addError();
+							exception = ste;
+						}
+						catch (IOException ioe) {
+							// IO errors are considered temporary anomalies.  Retry.
+							node.closeConnection(conn);
+							node.addError();
+							exception = new AerospikeException(ioe);
+						}
 					}
-					throw ae;
-				}
-				catch (RuntimeException re) {
-					// All runtime exceptions are considered fatal.  Do not retry.
-					// Close socket to flush out possible garbage.  Do not put back in pool.
-					node.closeConnection(conn);
-					throw re;
-				}
-				catch (SocketTimeoutException ste) {
-					// Full timeout has been reached.
-					node.closeConnection(conn);
-					exception = ste;
 				}
-				catch (IOException ioe) {
-					// IO errors are considered temporary anomalies.  Retry.
-					node.closeConnection(conn);
-					exception = new AerospikeException(ioe);
+				finally {
+					node.releasePermit();
 				}
 			}
 			catch (AerospikeException.InvalidNode ine) {
@@ -100,6 +146,7 @@ public abstract class SyncCommand extends Command {
 			}
 			catch (AerospikeException.Connection ce) {
 				// Socket connection error has occurred. Retry.				
+				node.addError();
 				exception = ce;
 				failedConns++;
 			}
@@ -108,19 +155,28 @@ public abstract class SyncCommand extends Command {
 				break;
 			}
 			
+			int sleep = getRetrySleep(policy, iterations);
+
 			// Check for client timeout.
-			if (policy.timeout > 0 && ! policy.retryOnTimeout) {
-				// Timeout is absolute.  Stop if timeout has been reached.
-				remainingMillis = (int)(limit - System.currentTimeMillis() - policy.sleepBetweenRetries);
+			if (deadline > 0) {
+				// Total timeout is absolute.  Stop if timeout has been reached.
+				int remainingMillis = (int)(deadline - System.currentTimeMillis() - sleep);
 				
 				if (remainingMillis <= 0) {
 					break;
 				}
+				attemptTimeout = Math.min(socketTimeout, remainingMillis);
+				serverTimeout = remainingMillis;
 			}
 			
-			if (policy.sleepBetweenRetries > 0) {
+			// Stop if client wide retry budget has been exhausted.
+			if (node != null && ! node.getCluster().tryRetry()) {
+				break;
+			}
+			
+			if (sleep > 0) {
 				// Sleep before trying again.
-				Util.sleep(policy.sleepBetweenRetries);
+				Util.sleep(sleep);
 			}
 
 			// Reset node reference and try again.
@@ -129,11 +185,27 @@ public abstract class SyncCommand extends Command {
 		
 		// Retries have been exhausted.  Throw last exception.
 		if (exception instanceof SocketTimeoutException) {
-			throw new AerospikeException.Timeout(node, policy.timeout, iterations, failedNodes, failedConns);
+			throw new AerospikeException.Timeout(node, (totalTimeout > 0)? totalTimeout : socketTimeout, iterations, failedNodes, failedConns);
 		}
 		throw (RuntimeException)exception;
 	}
 
+	/**
+	 * Write command to pipeline and parse its response when all earlier responses
+	 * have been read.
+	 */
+	private void executePipeline(Pipeline pipeline, int timeoutMillis) throws IOException {
+		Pipeline.Ticket ticket = pipeline.write(dataBuffer, dataOffset, timeoutMillis);
+		Connection conn = pipeline.awaitResponse(ticket);
+
+		try {
+			parseResult(conn);
+		}
+		finally {
+			pipeline.complete();
+		}
+	}
+
 	protected final void emptySocket(Connection conn) throws IOException
 	{
 		// There should not be any more bytes.
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.listener;
+
+import com.aerospike.client.cluster.CircuitBreaker;
+import com.aerospike.client.cluster.Node;
+
+/**
+ * Node circuit breaker state change notifications.
+ */
+public interface CircuitBreakerListener {
+	/**
+	 * This method is called when a node's circuit breaker changes state.  It is called
+	 * in the command thread that caused the change, so it should return quickly.
+	 * 
+	 * @param node					server node
+	 * @param oldState				previous circuit breaker state
+	 * @param newState				new circuit breaker state
+	 */
+	public void onStateChange(Node node, CircuitBreaker.State oldState, CircuitBreaker.State newState);
+}
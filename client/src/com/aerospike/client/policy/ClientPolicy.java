@@ -19,6 +19,8 @@ package com.aerospike.client.policy;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
+import com.aerospike.client.listener.CircuitBreakerListener;
+
 /**
  * Container object for client policy Command.
  */
@@ -64,17 +66,34 @@ public class ClientPolicy {
 	 * Default: 300
 	 */
 	public int maxConnsPerNode = 300;
+
+	/**
+	 * Minimum number of synchronous connections allowed per server node.  On each cluster
+	 * tend, a task in {@link #threadPool} opens connections until this minimum is reached,
+	 * both when a node is added to the cluster and after idle connections have been closed.
+	 * At most 16 connections per node are opened on each tend.  This avoids a burst of
+	 * connection (and authentication) requests on the first commands after a node starts.
+	 * <p>
+	 * Must be less than or equal to maxConnsPerNode.
+	 * <p>
+	 * Default: 0
+	 */
+	public int minConnsPerNode;
 	
 	/**
 	 * Maximum socket idle in seconds.  Socket connection pools will discard sockets
-	 * that have been idle longer than the maximum.  The value is limited to 24 hours (86400).
+	 * that have been idle longer than the maximum.  The cluster tend thread also closes
+	 * these sockets in the background.  The value is limited to 24 hours (86400).
 	 * <p>
 	 * It's important to set this value to a few seconds less than the server's proto-fd-idle-ms
 	 * (default 60000 milliseconds or 1 minute), so the client does not attempt to use a socket 
 	 * that has already been reaped by the server.
 	 * <p>
-	 * This field is ignored by asynchronous transactions since these transactions use a 
-	 * non-blocking read to determine if the socket is active and empty.
+	 * Idle asynchronous connections stay registered with their selector, so a server close
+	 * or unexpected data marks the connection stale without a socket read.  Stale
+	 * connections are discarded when borrowed and closed by the cluster tend thread.
+	 * Pre-warmed connections that have not yet been used are still checked
+	 * with a non-blocking read.
 	 * <p>
 	 * Default: 55 seconds
 	 */
@@ -85,6 +104,18 @@ public class ClientPolicy {
 	 */
 	public int tendInterval = 1000;
 
+	/**
+	 * Number of threads used to send cluster tend info requests to server nodes in parallel.
+	 * Info responses are still processed by the single cluster tend thread, so node and
+	 * partition map updates keep their copy on write semantics.
+	 * <p>
+	 * Parallel requests keep a slow node from stretching the tend interval on large clusters.
+	 * If tendThreads is one or less, info requests are sent sequentially in the tend thread.
+	 * <p>
+	 * Default: 1
+	 */
+	public int tendThreads = 1;
+
 	/**
 	 * Throw exception if all seed connections fail on cluster instantiation.  Default: true
 	 */
@@ -122,7 +153,7 @@ public class ClientPolicy {
 
 	/**
 	 * TLS secure connection policy for TLS enabled servers.
-	 * TLS connections are only supported for AerospikeClient synchronous commands.
+	 * TLS is supported for both synchronous commands and AsyncClient commands.
 	 * Default: null (Use normal sockets)
 	 */
 	public TlsPolicy tlsPolicy;
@@ -177,6 +208,153 @@ public class ClientPolicy {
 	 * The default is false (only request master replicas and never prole replicas).
 	 */
 	public boolean requestProleReplicas;
+
+	/**
+	 * Track server rack data.  This option is required if reads should be directed to
+	 * replicas in the client's rack
+	 * ({@link com.aerospike.client.policy.Policy#replica} == {@link com.aerospike.client.policy.Replica#PREFER_RACK}).
+	 * <p>
+	 * When enabled, each node's rack ids are requested with the partition replicas in the
+	 * cluster tend thread and prole replicas are requested even if {@link #requestProleReplicas}
+	 * is false.  Server nodes that do not support the "rack-ids" info command are treated as
+	 * not belonging to any rack.
+	 * <p>
+	 * Default: false (do not track server rack data)
+	 */
+	public boolean rackAware;
+
+	/**
+	 * Rack where this client instance resides.  Reads with
+	 * {@link com.aerospike.client.policy.Replica#PREFER_RACK} are directed to a replica
+	 * on a server node in this rack when one exists.  {@link #rackAware} must also be enabled.
+	 * <p>
+	 * Default: 0
+	 */
+	public int rackId;
+
+	/**
+	 * Percentage of reads with {@link com.aerospike.client.policy.Replica#ADAPTIVE} that ignore
+	 * node latency averages and are distributed across replicas in round-robin fashion.
+	 * This exploration keeps the averages of replicas that are not currently preferred up to date,
+	 * so a node that has recovered is used again.
+	 * <p>
+	 * Default: 5
+	 */
+	public int adaptiveExplorePercent = 5;
+
+	/**
+	 * Percentage of timeouts and network errors to all commands on a node in a
+	 * {@link #circuitBreakerWindowMillis} window that opens the node's circuit breaker.
+	 * While the circuit is open, reads are routed to other replicas when possible and other
+	 * commands on the node fail immediately with {@link com.aerospike.client.AerospikeException.CircuitOpen}.
+	 * <p>
+	 * Default: 0 (circuit breaker disabled)
+	 */
+	public int circuitBreakerErrorPercent;
+
+	/**
+	 * Minimum number of commands on a node in a window before the circuit breaker can open.
+	 * <p>
+	 * Default: 20
+	 */
+	public int circuitBreakerMinCommands = 20;
+
+	/**
+	 * Circuit breaker error counting window in milliseconds.
+	 * <p>
+	 * Default: 1000
+	 */
+	public int circuitBreakerWindowMillis = 1000;
+
+	/**
+	 * Milliseconds a node's circuit breaker stays open before a single probe command
+	 * is allowed (half-open).  The circuit closes when the probe succeeds.
+	 * <p>
+	 * Default: 5000
+	 */
+	public int circuitBreakerOpenMillis = 5000;
+
+	/**
+	 * Optional listener notified on node circuit breaker state changes.
+	 * <p>
+	 * Default: null
+	 */
+	public CircuitBreakerListener circuitBreakerListener;
+
+	/**
+	 * Limit concurrent commands on each node with an adaptive limit.  The limit starts at
+	 * {@link #maxConnsPerNode} (or {@link com.aerospike.client.async.AsyncClientPolicy#asyncMaxCommands}
+	 * if larger), grows while node latency is stable and shrinks when latency rises or commands
+	 * time out.  {@link #adaptiveLimitAction} determines what happens when the limit is reached.
+	 * <p>
+	 * Default: false (only use static connection limits)
+	 */
+	public boolean adaptiveLimit;
+
+	/**
+	 * Lower bound of each node's adaptive concurrency limit.
+	 * <p>
+	 * Default: 4
+	 */
+	public int adaptiveLimitMin = 4;
+
+	/**
+	 * How to handle commands when a node's adaptive concurrency limit has been reached.
+	 * <p>
+	 * Default: {@link LimitAction#WAIT}
+	 */
+	public LimitAction adaptiveLimitAction = LimitAction.WAIT;
+
+	/**
+	 * Limit client wide retries to this percentage of successful commands.  Each successful
+	 * command earns a fraction of a retry and each retry spends one.  When the budget is
+	 * exhausted, commands fail with their last error instead of retrying.  This prevents
+	 * retries from multiplying the load on surviving nodes during a partial outage.
+	 * <p>
+	 * Retry and exhaustion counters are available from
+	 * {@link com.aerospike.client.AerospikeClient#getClusterStats()}.
+	 * <p>
+	 * Default: 0 (retries are only limited by each command's policy)
+	 */
+	public int retryBudgetPercent;
+
+	/**
+	 * Maximum number of retries that can be accumulated in the retry budget.
+	 * The budget starts full.
+	 * <p>
+	 * Default: 100
+	 */
+	public int retryBudgetBurst = 100;
+
+	/**
+	 * Use socket channels with pooled direct buffers for synchronous command connections
+	 * instead of socket streams.  Channels avoid a temporary native buffer copy on each
+	 * write and send large commands with a single gathering write.
+	 * Timeouts and retries behave the same in both modes.  This setting is ignored when
+	 * TLS is enabled.
+	 * <p>
+	 * Default: false (use socket streams)
+	 */
+	public boolean useSocketChannel;
+
+	/**
+	 * Maximum number of synchronous single record commands outstanding on one pipelined
+	 * connection.  When greater than one, single record commands are written back to back
+	 * on a few shared connections per node instead of owning a pooled connection for the
+	 * full round trip.  Responses are matched to commands in order.  Scan, query and batch
+	 * commands always use pooled connections.  Asynchronous commands are not pipelined.
+	 * Zero or one disables pipelining.
+	 * <p>
+	 * Default: 0
+	 */
+	public int pipelineDepth;
+
+	/**
+	 * Number of pipelined connections per node when {@link #pipelineDepth} is enabled.
+	 * <p>
+	 * Default: 2
+	 */
+	public int pipelineConnsPerNode = 2;
 	
 	/**
 	 * Should use "services-alternate" instead of "services" in info request during cluster
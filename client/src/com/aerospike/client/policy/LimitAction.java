@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.policy;
+
+/**
+ * How to handle commands when a node's adaptive concurrency limit has been reached.
+ */
+public enum LimitAction {
+	/**
+	 * Wait until a command on the node completes or the command's timeout is reached.
+	 * Synchronous commands block the calling thread.  Asynchronous commands never block;
+	 * they keep their buffer and wait in a per node list, and are started by the thread
+	 * that completes a command on the node.
+	 * <p>
+	 * This differs from {@link com.aerospike.client.async.MaxCommandAction#QUEUE}, which
+	 * queues asynchronous commands until a client wide command slot is available.
+	 */
+	WAIT,
+
+	/**
+	 * Reject command with {@link com.aerospike.client.AerospikeException.CommandRejected}.
+	 */
+	REJECT,
+
+	/**
+	 * Send reads to another node containing the key's replica that is below its limit.
+	 * Reject command if no such node exists or the command is not a single record read.
+	 */
+	REROUTE
+}
@@ -51,9 +51,34 @@ public class Policy {
 	 * as well.
 	 * <p>
 	 * The timeout is also used as a socket timeout.
+	 * <p>
+	 * This timeout is only used when {@link #socketTimeout} and {@link #totalTimeout}
+	 * are not set.
 	 * Default: 0 (no timeout).
 	 */
 	public int timeout;
+
+	/**
+	 * Socket idle timeout in milliseconds for each attempt of a transaction.  If a socket
+	 * timeout occurs before {@link #totalTimeout} has been reached, the transaction is
+	 * retried (up to {@link #maxRetries}) with the remaining time.
+	 * <p>
+	 * If zero or greater than totalTimeout, totalTimeout is used instead.
+	 * If both this field and totalTimeout are zero, {@link #timeout} is used.
+	 * Default: 0
+	 */
+	public int socketTimeout;
+
+	/**
+	 * Total transaction timeout in milliseconds, including all retries.  The deadline is
+	 * tracked on the client and the remaining time is sent to the server with each attempt,
+	 * so the server does not keep working on a transaction the client has given up on.
+	 * <p>
+	 * If zero, there is no total timeout and retries are only limited by {@link #maxRetries}.
+	 * If both this field and socketTimeout are zero, {@link #timeout} is used.
+	 * Default: 0
+	 */
+	public int totalTimeout;
 	
 	/**
 	 * Delay milliseconds after transaction timeout before closing socket in async mode only.
@@ -89,14 +114,38 @@ public class Policy {
 
 	/**
 	 * Milliseconds to sleep between retries.  Enter zero to skip sleep.
-	 * This field is ignored in async mode.
+	 * This field is ignored in async mode unless {@link #sleepMultiplier} is greater than 1.0.
 	 * <p>
 	 * Default: 500ms
 	 */
 	public int sleepBetweenRetries = 500;
+
+	/**
+	 * Multiply the sleep between retries by this factor after each retry.  When greater
+	 * than 1.0, the sleep grows exponentially from {@link #sleepBetweenRetries} and is
+	 * randomized between half and all of the computed value, so clients that failed at the
+	 * same time do not retry in lockstep.  Async retries are then scheduled on the selector
+	 * thread after the sleep, without blocking it.
+	 * <p>
+	 * Retries are never delayed past {@link #totalTimeout}.
+	 * <p>
+	 * Default: 1.0 (fixed sleep in sync mode, no sleep in async mode)
+	 */
+	public double sleepMultiplier = 1.0;
+
+	/**
+	 * Maximum milliseconds to sleep between retries when {@link #sleepMultiplier} is greater
+	 * than 1.0.  The exponential backoff is limited to this value before it is randomized.
+	 * Zero means no limit.
+	 * <p>
+	 * Default: 10000ms
+	 */
+	public int maxSleepBetweenRetries = 10000;
 	
 	/**
-	 * Should the client retry a command if the timeout is reached.
+	 * Should the client retry a command if the timeout is reached.  This field only
+	 * applies to {@link #timeout}.  Use {@link #socketTimeout} and {@link #totalTimeout}
+	 * to retry on socket timeouts within a fixed total time.
 	 * <p>
 	 * If false, throw timeout exception when the timeout has been reached.  Note that
 	 * retries can still occur if a command fails on a network error before the timeout
@@ -117,6 +166,25 @@ public class Policy {
 	 * Default: false (do not send the user defined key)
 	 */
 	public boolean sendKey;
+
+	/**
+	 * Milliseconds to wait for a single record read response before sending the same read
+	 * to another node containing the key's partition replica.  The first response is returned
+	 * and the other response is discarded.  A value near the observed 95th percentile latency
+	 * limits the extra load to roughly 5% of reads.
+	 * <p>
+	 * Hedging applies to get() commands only.  It requires
+	 * {@link ClientPolicy#requestProleReplicas} to be enabled, so a second replica is known.
+	 * Synchronous hedged reads are run in the cluster thread pool
+	 * ({@link ClientPolicy#threadPool}).  Asynchronous hedged reads are sent when the selector
+	 * checks timeouts, so {@link com.aerospike.client.async.AsyncClientPolicy#asyncSelectorTimeout}
+	 * should be less than or equal to this delay.
+	 * <p>
+	 * Hedge counters are available from {@link com.aerospike.client.AerospikeClient#getClusterStats()}.
+	 * <p>
+	 * Default: 0 (do not hedge reads)
+	 */
+	public int hedgeDelay;
 	
 	/**
 	 * Copy policy from another policy.
@@ -126,11 +194,16 @@ public class Policy {
 		this.consistencyLevel = other.consistencyLevel;
 		this.replica = other.replica;
 		this.timeout = other.timeout;
+		this.socketTimeout = other.socketTimeout;
+		this.totalTimeout = other.totalTimeout;
 		this.timeoutDelay = other.timeoutDelay;
 		this.maxRetries = other.maxRetries;
 		this.sleepBetweenRetries = other.sleepBetweenRetries;
+		this.sleepMultiplier = other.sleepMultiplier;
+		this.maxSleepBetweenRetries = other.maxSleepBetweenRetries;
 		this.retryOnTimeout = other.retryOnTimeout;
 		this.sendKey = other.sendKey;
+		this.hedgeDelay = other.hedgeDelay;
 	}
 	
 	/**
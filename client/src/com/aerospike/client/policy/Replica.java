@@ -45,5 +45,21 @@ public enum Replica {
 	 * This option is useful when the replication factor equals the number
 	 * of nodes in the cluster and the overhead of requesting proles is not desired.
 	 */
-	RANDOM;
+	RANDOM,
+
+	/**
+	 * Try node containing key's partition in the client's rack ({@link ClientPolicy#rackId}) first.
+	 * If no replica is in that rack, read from node containing master partition.  This option
+	 * requires {@link ClientPolicy#rackAware} to be enabled in order to function properly.
+	 */
+	PREFER_RACK,
+
+	/**
+	 * Read from the node containing key's master or replicated partition with the best
+	 * average latency and error rate.  A small percentage of reads
+	 * ({@link ClientPolicy#adaptiveExplorePercent}) are distributed in round-robin fashion
+	 * instead, so the averages of other replicas stay current.  This option requires
+	 * {@link ClientPolicy#requestProleReplicas} to be enabled in order to function properly.
+	 */
+	ADAPTIVE;
 }
@@ -18,9 +18,11 @@ package com.aerospike.client.policy;
 
 import java.math.BigInteger;
 
+import javax.net.ssl.SSLContext;
+
 /**
  * TLS connection policy.
- * Secure TLS connections are only supported for AerospikeClient synchronous commands.
+ * Secure TLS connections are supported for both AerospikeClient and AsyncClient commands.
  */
 public final class TlsPolicy {
 	/**
@@ -64,4 +66,25 @@ public final class TlsPolicy {
 	 * Default: false
 	 */
 	public boolean encryptOnly;
+
+	/**
+	 * SSL context used to create TLS connections.  If null, the client creates a context per
+	 * cluster with the JVM default key and trust managers (javax.net.ssl system properties).
+	 * Default: null
+	 */
+	public SSLContext context;
+
+	/**
+	 * Maximum number of client TLS sessions cached for resumption.  Sessions are cached per
+	 * server node, so reconnects after a node restart or idle socket close can use an
+	 * abbreviated handshake.  Zero means no limit.
+	 * Default: 0 (use JVM default)
+	 */
+	public int sessionCacheSize;
+
+	/**
+	 * Maximum time in seconds a cached TLS session can be resumed.
+	 * Default: 0 (use JVM default)
+	 */
+	public int sessionTimeout;
 }
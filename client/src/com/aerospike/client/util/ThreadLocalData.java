@@ -16,6 +16,8 @@
  */
 package com.aerospike.client.util;
 
+import java.nio.ByteBuffer;
+
 import com.aerospike.client.Log;
 
 public final class ThreadLocalData {
@@ -28,6 +30,15 @@ public final class ThreadLocalData {
 		}
 	};
 		
+	private static final int DIRECT_BUFFER_SIZE = 1024 * 64;  // 64 KB
+	private static final int DIRECT_BUFFER_COUNT = 4;
+	
+	private static final ThreadLocal<ByteBuffer[]> DirectThreadLocal = new ThreadLocal<ByteBuffer[]>() {
+		@Override protected ByteBuffer[] initialValue() {
+			return new ByteBuffer[DIRECT_BUFFER_COUNT];
+		}
+	};
+
 	public static byte[] getBuffer() {
 		return BufferThreadLocal.get();
 	}
@@ -52,4 +63,28 @@ public final class ThreadLocalData {
 		BufferThreadLocal.set(new byte[size]);
 		return BufferThreadLocal.get();
 	}	
+
+	/**
+	 * Return thread local direct buffers used for socket channel I/O.  Buffers are allocated
+	 * on first use until their total capacity covers size (up to 256 KB).  Unallocated
+	 * entries are null.  Buffers must not be held across calls that may nest other commands.
+	 */
+	public static ByteBuffer[] getDirectBuffers(int size) {
+		ByteBuffer[] buffers = DirectThreadLocal.get();
+		int count = (size + DIRECT_BUFFER_SIZE - 1) / DIRECT_BUFFER_SIZE;
+		
+		if (count < 1) {
+			count = 1;
+		}
+		else if (count > DIRECT_BUFFER_COUNT) {
+			count = DIRECT_BUFFER_COUNT;
+		}
+		
+		for (int i = 0; i < count; i++) {
+			if (buffers[i] == null) {
+				buffers[i] = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+			}
+		}
+		return buffers;
+	}
 }
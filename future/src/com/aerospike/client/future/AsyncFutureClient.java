@@ -0,0 +1,605 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.future;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchRead;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.Value;
+import com.aerospike.client.async.IAsyncClient;
+import com.aerospike.client.listener.BatchListListener;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.ExecuteListener;
+import com.aerospike.client.listener.ExistsArrayListener;
+import com.aerospike.client.listener.ExistsListener;
+import com.aerospike.client.listener.RecordArrayListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * Asynchronous client that returns {@link CompletableFuture} results instead of
+ * notifying listeners.  Commands are run by the wrapped {@link IAsyncClient}.
+ * <p>
+ * Each returned future is also the command's listener, so a future costs no more
+ * than a listener.  Futures are completed by the thread that would have called the
+ * listener: the selector thread, or an asyncTaskThreadPool thread when one is
+ * defined in {@link com.aerospike.client.async.AsyncClientPolicy}.  Dependent stages
+ * added without an executor run on that thread and must not block.  Use the
+ * <code>*Async</code> stage methods to run them elsewhere.
+ * <p>
+ * If a command can not be started, for example because the command queue is full,
+ * the returned future is completed exceptionally instead of throwing.
+ * <p>
+ * This client is thread-safe.
+ */
+public final class AsyncFutureClient {
+	private final IAsyncClient client;
+
+	/**
+	 * Create future client that runs commands with the given asynchronous client.
+	 *
+	 * @param client				asynchronous client
+	 */
+	public AsyncFutureClient(IAsyncClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Return wrapped asynchronous client.
+	 */
+	public IAsyncClient getAsyncClient() {
+		return client;
+	}
+
+	//-------------------------------------------------------
+	// Write Record Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously write record bin(s).
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param bins					array of bin name/value pairs
+	 * @return						future completed with key when the write succeeds
+	 */
+	public CompletableFuture<Key> put(WritePolicy policy, Key key, Bin... bins) {
+		WriteFuture future = new WriteFuture();
+
+		try {
+			client.put(policy, future, key, bins);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously write multiple records.  The commands are handed to the channel
+	 * selector in one batch.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param keys					unique record identifiers
+	 * @param bins					bin name/value pairs for each key, bins[i] is written to keys[i]
+	 * @return						future completed when all writes succeed, or with the first failure
+	 */
+	public CompletableFuture<Void> put(WritePolicy policy, Key[] keys, Bin[][] bins) {
+		WriteAllFuture future = new WriteAllFuture(keys.length);
+
+		try {
+			client.put(policy, future, keys, bins);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// String Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously append bin string values to existing record bin values.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param bins					array of bin name/value pairs
+	 * @return						future completed with key when the append succeeds
+	 */
+	public CompletableFuture<Key> append(WritePolicy policy, Key key, Bin... bins) {
+		WriteFuture future = new WriteFuture();
+
+		try {
+			client.append(policy, future, key, bins);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously prepend bin string values to existing record bin values.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param bins					array of bin name/value pairs
+	 * @return						future completed with key when the prepend succeeds
+	 */
+	public CompletableFuture<Key> prepend(WritePolicy policy, Key key, Bin... bins) {
+		WriteFuture future = new WriteFuture();
+
+		try {
+			client.prepend(policy, future, key, bins);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Arithmetic Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously add integer bin values to existing record bin values.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param bins					array of bin name/value pairs
+	 * @return						future completed with key when the add succeeds
+	 */
+	public CompletableFuture<Key> add(WritePolicy policy, Key key, Bin... bins) {
+		WriteFuture future = new WriteFuture();
+
+		try {
+			client.add(policy, future, key, bins);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Delete Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously delete record for specified key.
+	 *
+	 * @param policy				delete configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @return						future completed with whether the record existed
+	 */
+	public CompletableFuture<Boolean> delete(WritePolicy policy, Key key) {
+		DeleteFuture future = new DeleteFuture();
+
+		try {
+			client.delete(policy, future, key);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Touch Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously reset record's time to expiration using the policy's expiration.
+	 * Fail if the record does not exist.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @return						future completed with key when the touch succeeds
+	 */
+	public CompletableFuture<Key> touch(WritePolicy policy, Key key) {
+		WriteFuture future = new WriteFuture();
+
+		try {
+			client.touch(policy, future, key);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Existence-Check Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously determine if a record key exists.
+	 *
+	 * @param policy				generic configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @return						future completed with whether the record exists
+	 */
+	public CompletableFuture<Boolean> exists(Policy policy, Key key) {
+		ExistsFuture future = new ExistsFuture();
+
+		try {
+			client.exists(policy, future, key);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously check if multiple record keys exist in one batch call.
+	 *
+	 * @param policy				batch configuration parameters, pass in null for defaults
+	 * @param keys					array of unique record identifiers
+	 * @return						future completed with existence flags in key order
+	 */
+	public CompletableFuture<boolean[]> exists(BatchPolicy policy, Key[] keys) {
+		ExistsArrayFuture future = new ExistsArrayFuture();
+
+		try {
+			client.exists(policy, future, keys);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Read Record Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously read entire record for specified key.
+	 *
+	 * @param policy				generic configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @return						future completed with record, or null if not found
+	 */
+	public CompletableFuture<Record> get(Policy policy, Key key) {
+		RecordFuture future = new RecordFuture();
+
+		try {
+			client.get(policy, future, key);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously read record header and bins for specified key.
+	 *
+	 * @param policy				generic configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param binNames				bins to retrieve
+	 * @return						future completed with record, or null if not found
+	 */
+	public CompletableFuture<Record> get(Policy policy, Key key, String... binNames) {
+		RecordFuture future = new RecordFuture();
+
+		try {
+			client.get(policy, future, key, binNames);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously read record generation and expiration only for specified key.
+	 * Bins are not read.
+	 *
+	 * @param policy				generic configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @return						future completed with record, or null if not found
+	 */
+	public CompletableFuture<Record> getHeader(Policy policy, Key key) {
+		RecordFuture future = new RecordFuture();
+
+		try {
+			client.getHeader(policy, future, key);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Batch Read Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously read multiple records for specified batch keys in one batch call.
+	 * This method allows different namespaces/bins to be requested for each key in the
+	 * batch.  Each record result is stored in {@link BatchRead#record}.
+	 *
+	 * @param policy				batch configuration parameters, pass in null for defaults
+	 * @param records				list of unique record identifiers and the bins to retrieve
+	 * @return						future completed with the given records list
+	 */
+	public CompletableFuture<List<BatchRead>> get(BatchPolicy policy, List<BatchRead> records) {
+		BatchListFuture future = new BatchListFuture();
+
+		try {
+			client.get(policy, future, records);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously read multiple records for specified keys in one batch call.
+	 *
+	 * @param policy				batch configuration parameters, pass in null for defaults
+	 * @param keys					array of unique record identifiers
+	 * @return						future completed with records in key order, null if not found
+	 */
+	public CompletableFuture<Record[]> get(BatchPolicy policy, Key[] keys) {
+		RecordArrayFuture future = new RecordArrayFuture();
+
+		try {
+			client.get(policy, future, keys);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously read multiple record headers and bins for specified keys in one batch call.
+	 *
+	 * @param policy				batch configuration parameters, pass in null for defaults
+	 * @param keys					array of unique record identifiers
+	 * @param binNames				array of bins to retrieve
+	 * @return						future completed with records in key order, null if not found
+	 */
+	public CompletableFuture<Record[]> get(BatchPolicy policy, Key[] keys, String... binNames) {
+		RecordArrayFuture future = new RecordArrayFuture();
+
+		try {
+			client.get(policy, future, keys, binNames);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously read multiple record header data for specified keys in one batch call.
+	 *
+	 * @param policy				batch configuration parameters, pass in null for defaults
+	 * @param keys					array of unique record identifiers
+	 * @return						future completed with records in key order, null if not found
+	 */
+	public CompletableFuture<Record[]> getHeader(BatchPolicy policy, Key[] keys) {
+		RecordArrayFuture future = new RecordArrayFuture();
+
+		try {
+			client.getHeader(policy, future, keys);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Generic Database Operations
+	//-------------------------------------------------------
+
+	/**
+	 * Asynchronously perform multiple read/write operations on a single key in one batch call.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param operations			database operations to perform
+	 * @return						future completed with record containing read results
+	 */
+	public CompletableFuture<Record> operate(WritePolicy policy, Key key, Operation... operations) {
+		RecordFuture future = new RecordFuture();
+
+		try {
+			client.operate(policy, future, key, operations);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//---------------------------------------------------------------
+	// User defined functions
+	//---------------------------------------------------------------
+
+	/**
+	 * Asynchronously execute user defined function on server for a single record.
+	 *
+	 * @param policy				write configuration parameters, pass in null for defaults
+	 * @param key					unique record identifier
+	 * @param packageName			server package name where user defined function resides
+	 * @param functionName			user defined function
+	 * @param functionArgs			arguments passed in to user defined function
+	 * @return						future completed with the function's return value
+	 */
+	public CompletableFuture<Object> execute(
+		WritePolicy policy,
+		Key key,
+		String packageName,
+		String functionName,
+		Value... functionArgs
+	) {
+		ExecuteFuture future = new ExecuteFuture();
+
+		try {
+			client.execute(policy, future, key, packageName, functionName, functionArgs);
+		}
+		catch (AerospikeException ae) {
+			future.onFailure(ae);
+		}
+		return future;
+	}
+
+	//-------------------------------------------------------
+	// Listener Futures
+	//-------------------------------------------------------
+
+	private static final class WriteFuture extends CompletableFuture<Key> implements WriteListener {
+		@Override
+		public void onSuccess(Key key) {
+			complete(key);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class WriteAllFuture extends CompletableFuture<Void> implements WriteListener {
+		private final AtomicInteger pending;
+
+		private WriteAllFuture(int count) {
+			pending = new AtomicInteger(count);
+
+			if (count == 0) {
+				complete(null);
+			}
+		}
+
+		@Override
+		public void onSuccess(Key key) {
+			if (pending.decrementAndGet() == 0) {
+				complete(null);
+			}
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class DeleteFuture extends CompletableFuture<Boolean> implements DeleteListener {
+		@Override
+		public void onSuccess(Key key, boolean existed) {
+			complete(existed);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class ExistsFuture extends CompletableFuture<Boolean> implements ExistsListener {
+		@Override
+		public void onSuccess(Key key, boolean exists) {
+			complete(exists);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class ExistsArrayFuture extends CompletableFuture<boolean[]> implements ExistsArrayListener {
+		@Override
+		public void onSuccess(Key[] keys, boolean[] exists) {
+			complete(exists);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class RecordFuture extends CompletableFuture<Record> implements RecordListener {
+		@Override
+		public void onSuccess(Key key, Record record) {
+			complete(record);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class RecordArrayFuture extends CompletableFuture<Record[]> implements RecordArrayListener {
+		@Override
+		public void onSuccess(Key[] keys, Record[] records) {
+			complete(records);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class BatchListFuture extends CompletableFuture<List<BatchRead>> implements BatchListListener {
+		@Override
+		public void onSuccess(List<BatchRead> records) {
+			complete(records);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+
+	private static final class ExecuteFuture extends CompletableFuture<Object> implements ExecuteListener {
+		@Override
+		public void onSuccess(Key key, Object obj) {
+			complete(obj);
+		}
+
+		@Override
+		public void onFailure(AerospikeException exception) {
+			completeExceptionally(exception);
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.Policy;
+
+/**
+ * Add commands to a command ring from multiple producers and poll them from one consumer.
+ * A server is not required.  This test is in the client's package because the ring is
+ * package private.
+ */
+public class TestCommandRing {
+	@Test
+	public void fullRing() {
+		CommandRing ring = new CommandRing(4);
+		Producer producer = new Producer(0);
+
+		for (int i = 0; i < 4; i++) {
+			ring.add(producer.next());
+		}
+
+		// The ring is full, so the next command overflows.
+		ring.add(producer.next());
+		Consumer consumer = new Consumer(1);
+		consumer.poll(ring, 2);
+
+		// Slots are free again, but commands must stay behind the overflow command.
+		ring.add(producer.next());
+		ring.add(producer.nextBatch(3), 0, 3);
+		consumer.poll(ring, 7);
+		assertNull(ring.poll());
+
+		// The overflow queue is drained, so the ring is used again.
+		ring.add(producer.nextBatch(4), 0, 4);
+		ring.add(producer.next());
+		consumer.poll(ring, 5);
+		assertNull(ring.poll());
+	}
+
+	@Test
+	public void batchLargerThanCapacity() {
+		CommandRing ring = new CommandRing(8);
+		Producer producer = new Producer(0);
+		Consumer consumer = new Consumer(1);
+
+		ring.add(producer.nextBatch(20), 0, 20);
+		ring.add(producer.next());
+		consumer.poll(ring, 21);
+		assertNull(ring.poll());
+
+		// A batch with an offset that exactly fills the ring.
+		AsyncCommand[] list = new AsyncCommand[10];
+		System.arraycopy(producer.nextBatch(8), 0, list, 2, 8);
+		ring.add(list, 2, 8);
+		consumer.poll(ring, 8);
+		assertNull(ring.poll());
+	}
+
+	@Test
+	public void multipleProducers() throws Exception {
+		// A small ring and a slow consumer make producers overflow often.
+		final CommandRing ring = new CommandRing(64);
+		final int producerCount = 4;
+		final int commandCount = 50000;
+		final CountDownLatch start = new CountDownLatch(1);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+
+		for (int p = 0; p < producerCount; p++) {
+			final Producer producer = new Producer(p);
+
+			Thread thread = new Thread() {
+				public void run() {
+					Random random = new Random(producer.id);
+
+					try {
+						start.await();
+					}
+					catch (InterruptedException ie) {
+						return;
+					}
+
+					while (producer.count < commandCount) {
+						int length = Math.min(1 + random.nextInt(200), commandCount - producer.count);
+
+						if (length < 100) {
+							for (int i = 0; i < length; i++) {
+								ring.add(producer.next());
+							}
+						}
+						else {
+							// Batches are sometimes larger than the ring.
+							AsyncCommand[] list = new AsyncCommand[length + 1];
+							System.arraycopy(producer.nextBatch(length), 0, list, 1, length);
+							ring.add(list, 1, length);
+						}
+					}
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+
+		Consumer consumer = new Consumer(producerCount);
+		long limit = System.currentTimeMillis() + 30000;
+		int total = producerCount * commandCount;
+		int received = 0;
+		start.countDown();
+
+		while (received < total) {
+			assertTrue("Received " + received + " of " + total, System.currentTimeMillis() < limit);
+
+			TestCommand command = (TestCommand)ring.poll();
+
+			if (command == null) {
+				Thread.yield();
+				continue;
+			}
+			consumer.accept(command);
+			received++;
+
+			if (received % 5000 == 0) {
+				Thread.sleep(1);
+			}
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(ring.poll());
+
+		for (int p = 0; p < producerCount; p++) {
+			assertEquals(commandCount, consumer.next[p]);
+		}
+	}
+
+	/**
+	 * Create numbered commands for one producer.
+	 */
+	private static final class Producer {
+		private final int id;
+		private int count;
+
+		private Producer(int id) {
+			this.id = id;
+		}
+
+		private AsyncCommand next() {
+			return new TestCommand(id, count++);
+		}
+
+		private AsyncCommand[] nextBatch(int length) {
+			AsyncCommand[] list = new AsyncCommand[length];
+
+			for (int i = 0; i < length; i++) {
+				list[i] = next();
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Check that each producer's commands are received once and in order.
+	 */
+	private static final class Consumer {
+		private final int[] next;
+
+		private Consumer(int producerCount) {
+			next = new int[producerCount];
+		}
+
+		private void poll(CommandRing ring, int count) {
+			for (int i = 0; i < count; i++) {
+				AsyncCommand command = ring.poll();
+				assertTrue("Missing command " + i + " of " + count, command != null);
+				accept((TestCommand)command);
+			}
+		}
+
+		private void accept(TestCommand command) {
+			assertEquals("Producer " + command.producer, next[command.producer], command.index);
+			next[command.producer]++;
+		}
+	}
+
+	/**
+	 * Command that is only queued.  It is never executed.
+	 */
+	private static final class TestCommand extends AsyncCommand {
+		private final int producer;
+		private final int index;
+
+		private TestCommand(int producer, int index) {
+			super(null, new Policy());
+			this.producer = producer;
+			this.index = index;
+		}
+
+		@Override
+		protected Node getNode() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void writeBuffer() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected AsyncCommand cloneCommand() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void read() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void onSuccess() {
+		}
+
+		@Override
+		protected void onFailure(AerospikeException ae) {
+		}
+	}
+}
@@ -21,6 +21,7 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+	SuiteUnit.class,
 	SuiteSync.class,
 	SuiteAsync.class
 })
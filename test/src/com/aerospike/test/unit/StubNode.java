@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.test.unit;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.aerospike.client.command.Buffer;
+
+/**
+ * Server node that only answers info requests.  Names without a value are not returned.
+ * Used by unit tests that do not require a server.
+ */
+final class StubNode implements Runnable {
+	private static final String Base64Chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+	private final HashMap<String,String> info = new HashMap<String,String>();
+	private final ServerSocket serverSocket;
+
+	StubNode(String name) throws IOException {
+		put("node", name);
+		put("features", "replicas-all");
+		put("partition-generation", "1");
+		serverSocket = new ServerSocket(0);
+
+		Thread thread = new Thread(this);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Return base64 bitmap of 4096 partitions with all or no partitions set.  The ownership
+	 * of the given partitions is reversed.
+	 */
+	static String bitmap(boolean owned, int... reversed) {
+		byte[] bytes = new byte[512];
+
+		if (owned) {
+			Arrays.fill(bytes, (byte)0xFF);
+		}
+
+		for (int partitionId : reversed) {
+			bytes[partitionId >> 3] ^= (byte)(0x80 >> (partitionId & 7));
+		}
+
+		StringBuilder sb = new StringBuilder(684);
+
+		for (int i = 0; i < bytes.length; i += 3) {
+			int b0 = bytes[i] & 0xFF;
+			int b1 = (i + 1 < bytes.length)? bytes[i + 1] & 0xFF : 0;
+			int b2 = (i + 2 < bytes.length)? bytes[i + 2] & 0xFF : 0;
+			sb.append(Base64Chars.charAt(b0 >> 2));
+			sb.append(Base64Chars.charAt(((b0 & 0x3) << 4) | (b1 >> 4)));
+			sb.append((i + 1 < bytes.length)? Base64Chars.charAt(((b1 & 0xF) << 2) | (b2 >> 6)) : '=');
+			sb.append((i + 2 < bytes.length)? Base64Chars.charAt(b2 & 0x3F) : '=');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Set info value.  Values are read by connection threads.
+	 */
+	void put(String name, String value) {
+		synchronized (info) {
+			info.put(name, value);
+		}
+	}
+
+	public void run() {
+		try {
+			while (true) {
+				final Socket socket = serverSocket.accept();
+
+				Thread thread = new Thread() {
+					public void run() {
+						serve(socket);
+					}
+				};
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		catch (IOException ioe) {
+			// Server closed.
+		}
+	}
+
+	private void serve(Socket socket) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			OutputStream out = socket.getOutputStream();
+
+			while (true) {
+				long proto = in.readLong();
+				byte[] request = new byte[(int)(proto & 0xFFFFFFFFFFFFL)];
+				in.readFully(request);
+
+				StringBuilder sb = new StringBuilder();
+
+				for (String name : new String(request, "UTF-8").split("\n")) {
+					String value;
+
+					synchronized (info) {
+						value = info.get(name);
+					}
+
+					if (value != null) {
+						sb.append(name).append('\t').append(value).append('\n');
+					}
+				}
+
+				byte[] body = sb.toString().getBytes("UTF-8");
+				byte[] response = new byte[8 + body.length];
+				Buffer.longToBytes(body.length | (2L << 56) | (1L << 48), response, 0);
+				System.arraycopy(body, 0, response, 8, body.length);
+				out.write(response);
+				out.flush();
+			}
+		}
+		catch (IOException ioe) {
+			// Client closed connection.
+		}
+		finally {
+			try {
+				socket.close();
+			}
+			catch (IOException ioe) {
+			}
+		}
+	}
+
+	void close() throws IOException {
+		serverSocket.close();
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Host;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.util.Util;
+
+/**
+ * Apply partition map changes served by stub server nodes.  A server is not required.
+ * Node 1 starts as master and node 2 as prole for all partitions of namespace "test".
+ */
+public class TestPartitionMap {
+	private static final String Name1 = "BB9000000000001";
+	private static final String Name2 = "BB9000000000002";
+	private static final int Moved = 5;
+	private static final int TendInterval = 20;
+
+	private StubNode stub1;
+	private StubNode stub2;
+	private AerospikeClient client;
+	private Node node1;
+	private Node node2;
+	private int generation = 1;
+
+	@Before
+	public void open() throws IOException {
+		stub1 = new StubNode(Name1);
+		stub2 = new StubNode(Name2);
+
+		// Nodes without peers do not report partitions in a multi-node cluster.
+		stub1.put("services", "127.0.0.1:" + stub2.getPort());
+		stub2.put("services", "127.0.0.1:" + stub1.getPort());
+		stub1.put("replicas-all", "test:2," + StubNode.bitmap(true) + "," + StubNode.bitmap(false));
+		stub2.put("replicas-all", "test:2," + StubNode.bitmap(false) + "," + StubNode.bitmap(true));
+
+		ClientPolicy policy = new ClientPolicy();
+		policy.requestProleReplicas = true;
+		policy.tendInterval = TendInterval;
+		client = new AerospikeClient(policy, new Host("127.0.0.1", stub1.getPort()), new Host("127.0.0.1", stub2.getPort()));
+		node1 = client.getNode(Name1);
+		node2 = client.getNode(Name2);
+	}
+
+	@After
+	public void close() throws IOException {
+		client.close();
+		stub1.close();
+		stub2.close();
+	}
+
+	@Test
+	public void movePartition() {
+		assertCounts(4096, 4096, 4096, 0);
+		assertReplicas(node1, node2);
+
+		// Node 2 becomes master of one partition and node 1 becomes its prole.
+		update(
+			"test:2," + StubNode.bitmap(true, Moved) + "," + StubNode.bitmap(false, Moved),
+			"test:2," + StubNode.bitmap(false, Moved) + "," + StubNode.bitmap(true, Moved));
+		awaitCounts(4096, 4095, 4096, 1);
+		assertReplicas(node2, node1);
+
+		// A new generation with unchanged bitmaps must not change the map.
+		update(null, null);
+		Util.sleep(TendInterval * 10);
+		assertCounts(4096, 4095, 4096, 1);
+		assertReplicas(node2, node1);
+
+		// Partition moves back to node 1.
+		update(
+			"test:2," + StubNode.bitmap(true) + "," + StubNode.bitmap(false),
+			"test:2," + StubNode.bitmap(false) + "," + StubNode.bitmap(true));
+		awaitCounts(4096, 4096, 4096, 0);
+		assertReplicas(node1, node2);
+
+		// Ownership must stay the same on later tends.
+		Util.sleep(TendInterval * 10);
+		assertCounts(4096, 4096, 4096, 0);
+		assertReplicas(node1, node2);
+	}
+
+	@Test
+	public void partitionClaimedByOtherNode() {
+		// Node 2 also claims master of one partition.  Node 1's response does not change.
+		stub2.put("replicas-all", "test:2," + StubNode.bitmap(false, Moved) + "," + StubNode.bitmap(true));
+		stub2.put("partition-generation", "2");
+		Util.sleep(TendInterval * 10);
+
+		// Node 2 releases the partition.  Node 1 must apply its unchanged bitmaps again,
+		// because its ownership was overwritten by node 2.
+		stub2.put("replicas-all", "test:2," + StubNode.bitmap(false) + "," + StubNode.bitmap(true));
+		stub2.put("partition-generation", "3");
+		awaitCounts(4096, 4096, 4096, 0);
+		assertReplicas(node1, node2);
+	}
+
+	@Test
+	public void shrinkReplicationFactor() {
+		assertCounts(4096, 4096, 4096, 0);
+
+		// Replication factor drops to one.  Node 2 no longer holds a replica.
+		update("test:1," + StubNode.bitmap(true), "test:1," + StubNode.bitmap(false));
+		awaitCounts(4096, 4096, 0, 0);
+
+		Node[][] replicas = node1.getCluster().partitions.getReplicas("test");
+		assertEquals(1, replicas.length);
+		assertSame(node1, replicas[0][Moved]);
+
+		// Node 2 takes one partition as master.
+		update("test:1," + StubNode.bitmap(true, Moved), "test:1," + StubNode.bitmap(false, Moved));
+		awaitCounts(4095, 4095, 1, 1);
+
+		replicas = node1.getCluster().partitions.getReplicas("test");
+		assertSame(node2, replicas[0][Moved]);
+		assertSame(node1, replicas[0][Moved + 1]);
+	}
+
+	/**
+	 * Serve new replicas-all values and a new partition generation on both nodes.  A null
+	 * value keeps the node's current bitmaps.
+	 */
+	private void update(String replicas1, String replicas2) {
+		generation++;
+
+		if (replicas1 != null) {
+			stub1.put("replicas-all", replicas1);
+		}
+
+		if (replicas2 != null) {
+			stub2.put("replicas-all", replicas2);
+		}
+		stub1.put("partition-generation", Integer.toString(generation));
+		stub2.put("partition-generation", Integer.toString(generation));
+	}
+
+	/**
+	 * Wait for tends to apply the expected partition counts.  Node counts are updated
+	 * while a tend parses partition maps, so also wait for the tend to publish the map.
+	 */
+	private void awaitCounts(int owned1, int masters1, int owned2, int masters2) {
+		long limit = System.currentTimeMillis() + 2000;
+
+		while (System.currentTimeMillis() < limit) {
+			if (countsMatch(node1, owned1, masters1) && countsMatch(node2, owned2, masters2)) {
+				break;
+			}
+			Util.sleep(TendInterval);
+		}
+		assertCounts(owned1, masters1, owned2, masters2);
+	}
+
+	private boolean countsMatch(Node node, int owned, int masters) {
+		return node.getPartitionsOwned() == owned && node.getMasterPartitionsOwned() == masters &&
+			countMapped(node, false) == owned && countMapped(node, true) == masters;
+	}
+
+	private void assertCounts(int owned1, int masters1, int owned2, int masters2) {
+		assertEquals(owned1, node1.getPartitionsOwned());
+		assertEquals(masters1, node1.getMasterPartitionsOwned());
+		assertEquals(owned2, node2.getPartitionsOwned());
+		assertEquals(masters2, node2.getMasterPartitionsOwned());
+		assertEquals(owned1, countMapped(node1, false));
+		assertEquals(masters1, countMapped(node1, true));
+		assertEquals(owned2, countMapped(node2, false));
+		assertEquals(masters2, countMapped(node2, true));
+	}
+
+	/**
+	 * Count partitions mapped to node in the published partition map.
+	 */
+	private int countMapped(Node node, boolean mastersOnly) {
+		Node[][] replicas = node1.getCluster().partitions.getReplicas("test");
+		int max = mastersOnly? 1 : replicas.length;
+		int count = 0;
+
+		for (int i = 0; i < max; i++) {
+			for (Node n : replicas[i]) {
+				if (n == node) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Check the moved partition's master and prole.  Other partitions stay on node 1
+	 * as master and node 2 as prole.
+	 */
+	private void assertReplicas(Node master, Node prole) {
+		Node[][] replicas = node1.getCluster().partitions.getReplicas("test");
+		assertEquals(2, replicas.length);
+		assertSame(master, replicas[0][Moved]);
+		assertSame(prole, replicas[1][Moved]);
+		assertSame(node1, replicas[0][Moved + 1]);
+		assertSame(node2, replicas[1][Moved + 1]);
+	}
+}
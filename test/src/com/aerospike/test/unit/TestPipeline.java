@@ -0,0 +1,301 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.cluster.Connection;
+import com.aerospike.client.cluster.Pipeline;
+import com.aerospike.client.cluster.TlsContext;
+import com.aerospike.client.command.Buffer;
+
+/**
+ * Run pipelined commands against a stub server.  A server is not required.
+ */
+public class TestPipeline {
+	private StubServer server;
+	private Pipeline pipeline;
+	private ExecutorService executor;
+
+	@Before
+	public void open() throws IOException {
+		open(false);
+	}
+
+	private void open(boolean useChannel) throws IOException {
+		server = new StubServer();
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+		Connection conn = new Connection((TlsContext)null, null, address, 1000, 55000, useChannel);
+		pipeline = new Pipeline(conn, 8);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void close() throws IOException {
+		executor.shutdownNow();
+		pipeline.close();
+		server.close();
+	}
+
+	@Test
+	public void responsesInOrder() throws Exception {
+		Future<?>[] futures = new Future<?>[8];
+
+		for (int i = 0; i < futures.length; i++) {
+			final int base = i * 1000;
+
+			futures[i] = executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					for (int id = base; id < base + 50; id++) {
+						assertEquals(id, execute(id, 0, 0, 1000));
+					}
+					return null;
+				}
+			});
+		}
+
+		for (Future<?> future : futures) {
+			future.get();
+		}
+	}
+
+	@Test
+	public void timeoutWaitingForTurn() throws Exception {
+		// The first command is answered after 200ms.  The second command waits for its
+		// turn and must time out at its own deadline.
+		Future<Integer> first = submit(1, 200, 0, 1000);
+		Thread.sleep(20);
+
+		long begin = System.currentTimeMillis();
+		assertTimeout(2, 0, 0, 100);
+		long elapsed = System.currentTimeMillis() - begin;
+		assertTrue("elapsed " + elapsed, elapsed < 180);
+
+		assertEquals(1, (int)first.get());
+		assertEquals(3, execute(3, 0, 0, 1000));
+	}
+
+	@Test
+	public void timeoutDoesNotFailOthers() throws Exception {
+		// The first command times out before its response arrives.  The second command
+		// discards that response and reads its own.
+		Future<Void> first = submitTimeout(1, 300, 0, 100);
+		Thread.sleep(20);
+		Future<Integer> second = submit(2, 0, 0, 1000);
+
+		first.get();
+		assertEquals(2, (int)second.get());
+		assertEquals(3, execute(3, 0, 0, 1000));
+	}
+
+	@Test
+	public void timeoutReadingResponse() throws Exception {
+		// The first response is split with a 300ms pause, so the first command times out
+		// with part of its response read.  The rest is discarded by the next command.
+		Future<Void> first = submitTimeout(1, 0, 300, 100);
+		Thread.sleep(20);
+		Future<Integer> second = submit(2, 0, 0, 1000);
+
+		first.get();
+		assertEquals(2, (int)second.get());
+		assertEquals(3, execute(3, 0, 0, 1000));
+	}
+
+	@Test
+	public void socketChannel() throws Exception {
+		// The server answers the first command after 500ms and does not read the large
+		// second command before then, so the writer waits on the socket channel while the
+		// first command reads with a 150ms timeout.  The reader's timeout must not apply
+		// to the writer.
+		close();
+		open(true);
+
+		Future<Void> first = submitTimeout(1, 500, 0, 150);
+		Thread.sleep(20);
+		assertEquals(2, execute(2, 0, 0, 2000, 16 * 1024 * 1024));
+		first.get();
+
+		responsesInOrder();
+		timeoutReadingResponse();
+	}
+
+	private Future<Integer> submit(final int id, final int delay, final int pause, final int timeout) {
+		return executor.submit(new Callable<Integer>() {
+			public Integer call() throws Exception {
+				return execute(id, delay, pause, timeout);
+			}
+		});
+	}
+
+	private Future<Void> submitTimeout(final int id, final int delay, final int pause, final int timeout) {
+		return executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				assertTimeout(id, delay, pause, timeout);
+				return null;
+			}
+		});
+	}
+
+	private void assertTimeout(int id, int delay, int pause, int timeout) throws IOException {
+		try {
+			execute(id, delay, pause, timeout);
+			fail("Command " + id + " did not time out");
+		}
+		catch (SocketTimeoutException ste) {
+		}
+	}
+
+	/**
+	 * Send request and return the id in its response.
+	 */
+	private int execute(int id, int delay, int pause, int timeout) throws IOException {
+		return execute(id, delay, pause, timeout, 0);
+	}
+
+	/**
+	 * Send request padded with extra bytes and return the id in its response.
+	 */
+	private int execute(int id, int delay, int pause, int timeout, int padding) throws IOException {
+		byte[] request = new byte[20 + padding];
+		Buffer.longToBytes((12L + padding) | (2L << 56) | (3L << 48), request, 0);
+		Buffer.intToBytes(id, request, 8);
+		Buffer.intToBytes(delay, request, 12);
+		Buffer.intToBytes(pause, request, 16);
+
+		Pipeline.Ticket ticket = pipeline.write(request, request.length, timeout);
+		Connection conn = pipeline.awaitResponse(ticket);
+
+		try {
+			byte[] response = new byte[12];
+			conn.readFully(response, 12);
+			return Buffer.bytesToInt(response, 8);
+		}
+		finally {
+			pipeline.complete();
+		}
+	}
+
+	/**
+	 * Answer requests on one connection in order.  Each request holds its id, the delay
+	 * before it is answered and a pause in the middle of its response, followed by
+	 * optional padding.
+	 */
+	private static final class StubServer implements Runnable {
+		private final ServerSocket serverSocket;
+		private final Thread thread;
+		private volatile Socket socket;
+
+		private StubServer() throws IOException {
+			serverSocket = new ServerSocket(0);
+			thread = new Thread(this);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		public void run() {
+			try {
+				socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				InputStream in = socket.getInputStream();
+				OutputStream out = socket.getOutputStream();
+				byte[] request = new byte[20];
+				byte[] response = new byte[12];
+
+				while (true) {
+					readFully(in, request);
+					skip(in, (Buffer.bytesToLong(request, 0) & 0xFFFFFFFFFFFFL) - 12);
+					int delay = Buffer.bytesToInt(request, 12);
+					int pause = Buffer.bytesToInt(request, 16);
+
+					if (delay > 0) {
+						Thread.sleep(delay);
+					}
+					Buffer.longToBytes(4L | (2L << 56) | (3L << 48), response, 0);
+					System.arraycopy(request, 8, response, 8, 4);
+
+					if (pause > 0) {
+						out.write(response, 0, 6);
+						out.flush();
+						Thread.sleep(pause);
+						out.write(response, 6, 6);
+					}
+					else {
+						out.write(response);
+					}
+					out.flush();
+				}
+			}
+			catch (Exception e) {
+				// Server closed.
+			}
+		}
+
+		private static void readFully(InputStream in, byte[] buffer) throws IOException {
+			int pos = 0;
+
+			while (pos < buffer.length) {
+				int count = in.read(buffer, pos, buffer.length - pos);
+
+				if (count < 0) {
+					throw new IOException("Connection closed");
+				}
+				pos += count;
+			}
+		}
+
+		private static void skip(InputStream in, long length) throws IOException {
+			while (length > 0) {
+				long count = in.skip(length);
+
+				if (count <= 0) {
+					throw new IOException("Connection closed");
+				}
+				length -= count;
+			}
+		}
+
+		private void close() throws IOException {
+			serverSocket.close();
+
+			if (socket != null) {
+				socket.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.test.unit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Host;
+import com.aerospike.client.cluster.Cluster;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.cluster.Partition;
+import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.policy.Replica;
+
+/**
+ * Route reads to the replica in the client's rack.  Partition maps and rack ids are
+ * served by stub server nodes, so a server is not required.
+ * Node 1 is master for all partitions and node 2 is prole for namespace "test".
+ * Namespace "bar" has one replica on node 1.
+ */
+public class TestRackAware {
+	private static final String Name1 = "BB9000000000001";
+	private static final String Name2 = "BB9000000000002";
+
+	private StubNode stub1;
+	private StubNode stub2;
+	private AerospikeClient client;
+
+	@Before
+	public void open() throws IOException {
+		stub1 = new StubNode(Name1);
+		stub2 = new StubNode(Name2);
+
+		// Nodes without peers do not report partitions in a multi-node cluster.
+		stub1.put("services", "127.0.0.1:" + stub2.getPort());
+		stub2.put("services", "127.0.0.1:" + stub1.getPort());
+		stub1.put("replicas-all", "test:2," + StubNode.bitmap(true) + "," + StubNode.bitmap(false) + ";bar:1," + StubNode.bitmap(true));
+		stub2.put("replicas-all", "test:2," + StubNode.bitmap(false) + "," + StubNode.bitmap(true) + ";bar:1," + StubNode.bitmap(false));
+	}
+
+	@After
+	public void close() throws IOException {
+		if (client != null) {
+			client.close();
+		}
+		stub1.close();
+		stub2.close();
+	}
+
+	@Test
+	public void preferRack() {
+		stub1.put("rack-ids", "test:1;bar:1");
+		stub2.put("rack-ids", "test:2;bar:2");
+		connect(2);
+
+		Node node1 = client.getNode(Name1);
+		Node node2 = client.getNode(Name2);
+		assertTrue(node1.hasRack("test", 1));
+		assertTrue(node2.hasRack("test", 2));
+		assertTrue(node2.hasRack("bar", 2));
+
+		Cluster cluster = node1.getCluster();
+
+		for (int partitionId : new int[] {0, 2049, 4095}) {
+			Partition test = new Partition("test", partitionId);
+			assertSame(node1, cluster.getMasterNode(test));
+			assertSame(node2, cluster.getRackNode(test));
+			assertSame(node2, cluster.getReadNode(test, Replica.PREFER_RACK));
+
+			// Node 2 is in the client's rack, but does not hold a "bar" replica.
+			Partition bar = new Partition("bar", partitionId);
+			assertSame(node1, cluster.getMasterNode(bar));
+			assertSame(node1, cluster.getRackNode(bar));
+		}
+	}
+
+	@Test
+	public void preferRackNoMatch() {
+		stub1.put("rack-ids", "test:1;bar:1");
+		stub2.put("rack-ids", "test:2;bar:2");
+		connect(3);
+
+		// No replica is in the client's rack, so the master is used.
+		Node node1 = client.getNode(Name1);
+		assertSame(node1, node1.getCluster().getRackNode(new Partition("test", 7)));
+	}
+
+	@Test
+	public void rackIdsMissing() {
+		// Servers that do not support rack-ids do not return a rack-ids line.
+		connect(2);
+
+		Node node1 = client.getNode(Name1);
+		Node node2 = client.getNode(Name2);
+		assertFalse(node1.hasRack("test", 1));
+		assertFalse(node2.hasRack("test", 2));
+		assertSame(node1, node1.getCluster().getRackNode(new Partition("test", 7)));
+	}
+
+	private void connect(int rackId) {
+		ClientPolicy policy = new ClientPolicy();
+		policy.rackAware = true;
+		policy.rackId = rackId;
+		client = new AerospikeClient(policy, new Host("127.0.0.1", stub1.getPort()), new Host("127.0.0.1", stub2.getPort()));
+	}
+}